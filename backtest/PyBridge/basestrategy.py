@@ -1,9 +1,49 @@
-import sys
-sys.path.append('../PyLimitBook')
-
-# Import PyLimitBook
-from pylimitbook import researchBook
-from pylimitbook import tick
+# Actions go back to Java as a long[] when running inside jpy
+try:
+    import jpy
+except ImportError:
+    jpy = None
+
+# Shared event records are read through numpy when it is installed
+try:
+    import numpy
+except ImportError:
+    numpy = None
+
+# Action codes and order types, must match PythonStrategy.java
+ACTION_NEW_ORDER = 1
+ACTION_CANCEL = 2
+ACTION_CANCEL_REPLACE = 3
+ACTION_CANCEL_ALL = 4
+ACTION_TIMER_AT = 5
+ACTION_TIMER_CANCEL = 6
+ORDER_TYPES = {'buy': 0, 'sell': 1, 'cover': 2, 'short': 3}
+NO_ORDER_TYPE = -1
+
+# Where log_signal writes unless Java gives the run its own file
+DEFAULT_LOG_LOCATION = "./signals_log.csv"
+
+# Event sides passed to on_batch
+BATCH_BID = 0
+BATCH_ASK = 1
+BATCH_TRADE = 2
+
+# Shared event buffer layout, must match SharedEventBuffer.java. Each event
+# is EVENT_FIELDS longs: type, client_order_id, orig_client_order_id, side,
+# price, qty, remaining_qty and timestamp.
+EVENT_FIELDS = 8
+EVENT_BID = 0
+EVENT_ASK = 1
+EVENT_TRADE = 2
+EVENT_FILL = 3
+EVENT_ORDER_ACCEPTED = 4
+EVENT_ORDER_REJECTED = 5
+EVENT_CANCEL_ACCEPTED = 6
+EVENT_CANCEL_REJECTED = 7
+EVENT_CANCEL_ALL_ACCEPTED = 8
+EVENT_REPLACE_ACCEPTED = 9
+EVENT_REPLACE_REJECTED = 10
+EVENT_TIMER = 11
 
 class Order(object):
     def __init__(self, client_order_id, price, qty, order_type, placed_time):
@@ -17,6 +57,88 @@ class Order(object):
     def got_fill(self, qty):
         self.remaining_qty -= qty
 
+class Tick(object):
+    def __init__(self, symbol, id_num, qty, price, timestamp):
+        self.symbol = symbol
+        self.id_num = id_num                # None for trades
+        self.qty = qty
+        self.price = price
+        self.timestamp = timestamp
+
+class BookAheadError(Exception):
+    pass
+
+class Book(object):
+    # Read-only view of the quote book kept by the Java strategy. Prices are
+    # in dollars_multiplier units and None when a side is empty.
+    #
+    # The Java book is always up to date with the market, so while _drain
+    # replays buffered events it is ahead of them and reading it raises
+    # BookAheadError. Read it in on_drain, once every event was replayed.
+    millis_in_second = 1000
+    open_time = (9 * 60 + 30) * 60 * 1000   # 09:30 in millis since midnight
+    close_time = 16 * 60 * 60 * 1000        # 16:00 in millis since midnight
+
+    # Values per level and per trade in the arrays returned below, must
+    # match BookView.java
+    LEVEL_FIELDS = 3                        # price, volume, order count
+    TRADE_FIELDS = 3                        # price, size, timestamp
+
+    def __init__(self, book_view):
+        self._view = book_view
+        self._ahead = False
+
+    def _live_view(self):
+        if self._ahead:
+            raise BookAheadError("The book is ahead of the events replayed by _drain, read it in on_drain")
+        return self._view
+
+    @staticmethod
+    def _price(price):
+        # BookView returns 0 for an empty side
+        return price if price != 0 else None
+
+    @property
+    def top_bid_price(self):
+        return self._price(self._live_view().getBestBidPrice())
+
+    @property
+    def top_ask_price(self):
+        return self._price(self._live_view().getBestAskPrice())
+
+    @property
+    def top_bid_qty(self):
+        return self._live_view().getBestBidQuantity()
+
+    @property
+    def top_ask_qty(self):
+        return self._live_view().getBestAskQuantity()
+
+    @property
+    def midpoint_price(self):
+        # None unless both sides have quotes
+        return self._price(self._live_view().getMidpointPrice())
+
+    @property
+    def bid_volume(self):
+        return self._live_view().getBidVolume()
+
+    @property
+    def ask_volume(self):
+        return self._live_view().getAskVolume()
+
+    def bid_levels(self, max_levels):
+        # Best level first, LEVEL_FIELDS values per level
+        return self._live_view().getBidLevels(max_levels)
+
+    def ask_levels(self, max_levels):
+        # Best level first, LEVEL_FIELDS values per level
+        return self._live_view().getAskLevels(max_levels)
+
+    def recent_trades(self, max_trades):
+        # Oldest trade first, TRADE_FIELDS values per trade
+        return self._live_view().getRecentTrades(max_trades)
+
 class Fill(object):
     def __init__(self, client_order_id, qty, remaining_qty, price, timestamp):
         self.client_order_id = client_order_id
@@ -28,12 +150,41 @@ class Fill(object):
 class BaseStrategy(object):
     def __init__(self):
         self._log_signals = True
-        self._log_location = "./signals_log.csv"
+        self._log_location = DEFAULT_LOG_LOCATION
+        self._log = None
+
+        # Events to receive, e.g. "events=bid,ask,fill,order;levels=1;min_interval=250"
+        # Event types: bid, ask, trade, fill, order, cancel, replace, timer.
+        # Bids, asks and trades are filtered on the Java side before calling
+        # into Python. The other events always arrive so open orders and
+        # shares held stay right, only their on_* handlers are skipped.
+        # The book is kept in Java and always has every entry.
+        # Set it in the plugin's __init__, an empty string subscribes to everything.
+        self.subscription = ""
+        self._subscribed_events = None      # None for every event type
+
+        # Deliver bids, asks and trade ticks to on_batch in runs of up to
+        # batch_size events instead of calling on_bid, on_ask and on_trade
+        # once per event. A run ends early before every fill, order event
+        # and timer, so orders can only be placed once the run is over.
+        # 0 delivers every event on its own.
+        self.batch_size = 0
+
+        # Receive every event through one buffer of event_buffer_size events
+        # shared with Java and processed by _drain, instead of one call per
+        # event. The usual on_* handlers are still called for each event and
+        # on_drain gets the whole run. The book can only be read in on_drain,
+        # see Book. Takes precedence over batch_size. 0 turns it off.
+        self.event_buffer_size = 0
+        self._event_records = None
+        self._event_ids = None
+        self._draining = False
+        self._book = Book(None)
+
         self._reset_state()
 
     def __del__(self):
-        if self._log_signals:
-            self._log.close()
+        self._close_log()
 
     def _reset_state(self):
         self.cents_multiplier = 1000
@@ -41,7 +192,6 @@ class BaseStrategy(object):
 
         # State Tracking
         self._actions = []
-        self._book = researchBook.ResearchBook()
         self._client_order_id = 0
         self._last_ask = None
         self._last_bid = None
@@ -62,14 +212,16 @@ class BaseStrategy(object):
         self._max_drawdown = 0
         self._current_pnl = 0
 
-        # Signal Log
-        if self._log_signals:
-            self._log = open(self._log_location, 'w')
-            self._log.write("timestamp,signal\n")
+        # Signal Log, opened by the first signal of the run
+        self._close_log()
 
     # --- Handlers ---
 
     def _config(self, config_str):
+        # Start from the defaults, the instance is reused across runs
+        for key, value in getattr(self, 'all_configs', {}).iteritems():
+            setattr(self, key, value)
+
         # Parse the config string
         # e.g. "var1=1.0;var2=5.0"
         config_dict = {}
@@ -90,50 +242,145 @@ class BaseStrategy(object):
                     value = value.split(".")[0]
                 setattr(self, key, t(value))
 
-    def _bid(self, symbol, id_num, qty, price_str, timestamp):
+    def _subscribe(self, event_types):
+        # Called once with the event types parsed from subscription
+        self._subscribed_events = set(event_types)
+
+    def _wants(self, event_type):
+        return self._subscribed_events is None or event_type in self._subscribed_events
+
+    def _attach_book(self, book_view):
+        # Called once with the Java strategy's BookView
+        self._book = Book(book_view)
+
+    def _bid(self, symbol, id_num, qty, price, timestamp):
         # Internal state updates
-        self._last_bid = self._book.bid_split(symbol, id_num, qty, price_str, timestamp)
+        self._last_bid = Tick(symbol, id_num, qty, price, timestamp)
         self._last_time = timestamp
 
         # Call strategy
         self.on_bid()
 
         # Check for actions
-        actions = self._actions
-        self._actions = []
-        return actions
+        return self._take_actions()
 
-    def _ask(self, symbol, id_num, qty, price_str, timestamp):
+    def _ask(self, symbol, id_num, qty, price, timestamp):
         # Internal state updates
-        self._last_ask = self._book.ask_split(symbol, id_num, qty, price_str, timestamp)
+        self._last_ask = Tick(symbol, id_num, qty, price, timestamp)
         self._last_time = timestamp
 
         # Call strategy
         self.on_ask()
 
         # Check for actions
-        actions = self._actions
-        self._actions = []
-        return actions
+        return self._take_actions()
 
-    def _trade_tick(self, symbol, qty, price_str, timestamp):
+    def _trade_tick(self, symbol, qty, price, timestamp):
         # Internal state updates
-        self._last_trade = self._book.trade_split(symbol, qty, price_str, timestamp)
+        self._last_trade = Tick(symbol, None, qty, price, timestamp)
         self._last_time = timestamp
 
         # Call strategy
         self.on_trade()
 
         # Check for actions
-        actions = self._actions
-        self._actions = []
-        return actions
+        return self._take_actions()
+
+    def _on_batch(self, symbol, count, sides, id_nums, qtys, prices, timestamps):
+        # Parallel Java arrays, only the first count entries are valid.
+        # sides are BATCH_BID, BATCH_ASK or BATCH_TRADE, id_nums are None for
+        # trades and prices are in dollars_multiplier units. The numeric
+        # arrays can be wrapped without copying; sides is a Java int[] and
+        # needs numpy.int32, qtys, prices and timestamps are long[], e.g.
+        # numpy.frombuffer(sides, dtype=numpy.int32, count=count)
+        # numpy.frombuffer(prices, dtype=numpy.int64, count=count)
+
+        # Internal state updates, the book already has every event of the run
+        last = {}
+        for i in xrange(count - 1, -1, -1):
+            if sides[i] not in last:
+                last[sides[i]] = Tick(symbol, id_nums[i], qtys[i], prices[i], timestamps[i])
+                if len(last) == 3:
+                    break
+        self._last_bid = last.get(BATCH_BID, self._last_bid)
+        self._last_ask = last.get(BATCH_ASK, self._last_ask)
+        self._last_trade = last.get(BATCH_TRADE, self._last_trade)
+        self._last_time = timestamps[count - 1]
+
+        # Call strategy
+        self.on_batch(count, sides, id_nums, qtys, prices, timestamps)
 
-    def _fill(self, symbol, client_order_id, qty, remaining_qty, price_str, timestamp):
+        # Check for actions
+        return self._take_actions()
+
+    def _attach_events(self, records, id_nums):
+        # Called once with the Java arrays of the shared event buffer
+        self._event_records = records
+        self._event_ids = id_nums
+
+    def _drain(self, symbol, count):
+        # Handles the first count events of the shared buffer in order. The
+        # buffer is overwritten after this call, so views of it must not be
+        # kept.
+        if numpy is not None:
+            events = numpy.frombuffer(self._event_records, dtype=numpy.int64, count=count * EVENT_FIELDS).reshape(count, EVENT_FIELDS)
+            rows = events.tolist()
+        else:
+            events = None
+            records = self._event_records
+            rows = [[records[i * EVENT_FIELDS + j] for j in xrange(EVENT_FIELDS)] for i in xrange(count)]
+        id_nums = self._event_ids
+
+        # Handlers leave their actions queued, the whole run goes back at once.
+        # The book already has every event of the run, so the replayed
+        # handlers must not read it.
+        self._draining = True
+        self._book._ahead = True
+        try:
+            for i in xrange(count):
+                event_type, client_order_id, orig_client_order_id, side, price, qty, remaining_qty, timestamp = rows[i]
+                if event_type == EVENT_BID:
+                    self._bid(symbol, id_nums[i], qty, price, timestamp)
+                elif event_type == EVENT_ASK:
+                    self._ask(symbol, id_nums[i], qty, price, timestamp)
+                elif event_type == EVENT_TRADE:
+                    self._trade_tick(symbol, qty, price, timestamp)
+                elif event_type == EVENT_FILL:
+                    self._fill(symbol, client_order_id, qty, remaining_qty, price, timestamp)
+                elif event_type == EVENT_ORDER_ACCEPTED:
+                    self._new_order_accepted(client_order_id)
+                elif event_type == EVENT_ORDER_REJECTED:
+                    self._new_order_rejected(client_order_id)
+                elif event_type == EVENT_CANCEL_ACCEPTED:
+                    self._cancel_accepted(client_order_id, orig_client_order_id)
+                elif event_type == EVENT_CANCEL_REJECTED:
+                    self._cancel_rejected(client_order_id)
+                elif event_type == EVENT_CANCEL_ALL_ACCEPTED:
+                    self._cancel_all_accepted(client_order_id, [orig_client_order_id])
+                elif event_type == EVENT_REPLACE_ACCEPTED:
+                    self._cancel_replace_accepted(client_order_id, orig_client_order_id)
+                elif event_type == EVENT_REPLACE_REJECTED:
+                    self._cancel_replace_rejected(client_order_id)
+                elif event_type == EVENT_TIMER:
+                    self._timer(client_order_id, timestamp)
+
+            # The book is in step with the events again
+            self._book._ahead = False
+            self._update_unrealized_pnl()
+
+            # Call strategy with the whole run, events is None without numpy
+            self.on_drain(events, count)
+        finally:
+            self._draining = False
+            self._book._ahead = False
+
+        return self._take_actions()
+
+    def _fill(self, symbol, client_order_id, qty, remaining_qty, price, timestamp):
+        # price is in dollars_multiplier units
         # Internal state updates
         self._last_time = timestamp
         self._shares_held += qty
-        price = tick.convert_price(price_str, False)
 
         # Fix the fact that remaining_qty is always positive
         if qty > 0:
@@ -154,7 +401,9 @@ class BaseStrategy(object):
             self._running_avg_price = ((self._running_qty * self._running_avg_price) + \
                 (qty * price)) / float(qty + self._running_qty)
             self._running_qty += qty
-            self._unrealized_pnl = long(round(self._shares_held * (self.midpoint_price - self._running_avg_price), 4))
+            if not self._draining:
+                # _drain updates it once the book is in step again
+                self._update_unrealized_pnl()
 
         # Update metrics
         if self._metrics_enabled:
@@ -186,33 +435,50 @@ class BaseStrategy(object):
                 self._max_drawdown = self._current_pnl
 
         # Call strategy
-        self.on_fill()
+        if self._wants('fill'):
+            self.on_fill()
 
         # Check for actions
-        actions = self._actions
-        self._actions = []
-        return actions
+        return self._take_actions()
+
+    def _update_unrealized_pnl(self):
+        if self._shares_held == 0:
+            return
+        midpoint_price = self.midpoint_price
+        if midpoint_price is not None:
+            self._unrealized_pnl = long(round(self._shares_held * (midpoint_price - self._running_avg_price), 4))
 
     def _cancel_accepted(self, client_order_id, orig_client_order_id):
         # Internal state updates
         self._open_orders.pop(orig_client_order_id, None)
 
         # Call strategy
-        self.on_cancel_accepted()
+        if self._wants('cancel'):
+            self.on_cancel_accepted()
 
         # Check for actions
-        actions = self._actions
-        self._actions = []
-        return actions
+        return self._take_actions()
+
+    def _cancel_all_accepted(self, client_order_id, orig_client_order_ids):
+        # Internal state updates
+        for orig_client_order_id in orig_client_order_ids:
+            self._open_orders.pop(orig_client_order_id, None)
+
+        # Call strategy once per canceled order
+        if self._wants('cancel'):
+            for orig_client_order_id in orig_client_order_ids:
+                self.on_cancel_accepted()
+
+        # Check for actions
+        return self._take_actions()
 
     def _cancel_rejected(self, client_order_id):
         # Call strategy
-        self.on_cancel_rejected()
+        if self._wants('cancel'):
+            self.on_cancel_rejected()
 
         # Check for actions
-        actions = self._actions
-        self._actions = []
-        return actions
+        return self._take_actions()
 
     def _cancel_replace_accepted(self, client_order_id, orig_client_order_id):
         # Internal state updates
@@ -221,36 +487,33 @@ class BaseStrategy(object):
         self._open_orders[client_order_id] = order
 
         # Call strategy
-        self.on_cancel_replace_accepted()
+        if self._wants('replace'):
+            self.on_cancel_replace_accepted()
 
         # Check for actions
-        actions = self._actions
-        self._actions = []
-        return actions
+        return self._take_actions()
 
     def _cancel_replace_rejected(self, client_order_id):
         # Internal state updates
         self._pending_cr.pop(client_order_id, None)
 
         # Call strategy
-        self.on_cancel_replace_rejected(client_order_id)
+        if self._wants('replace'):
+            self.on_cancel_replace_rejected(client_order_id)
 
         # Check for actions
-        actions = self._actions
-        self._actions = []
-        return actions
+        return self._take_actions()
 
     def _new_order_rejected(self, client_order_id):
         # Internal state updates
         self._pending_orders.pop(client_order_id, None)
 
         # Call strategy
-        self.on_new_order_rejected(client_order_id)
+        if self._wants('order'):
+            self.on_new_order_rejected(client_order_id)
 
         # Check for actions
-        actions = self._actions
-        self._actions = []
-        return actions
+        return self._take_actions()
 
     def _new_order_accepted(self, client_order_id):
         # Internal state updates
@@ -261,20 +524,34 @@ class BaseStrategy(object):
         self._orders_placed += 1
 
         # Call strategy
-        self.on_new_order_accepted(client_order_id)
+        if self._wants('order'):
+            self.on_new_order_accepted(client_order_id)
 
         # Check for actions
-        actions = self._actions
-        self._actions = []
-        return actions
+        return self._take_actions()
+
+    def _timer(self, timer_id, timestamp):
+        # Internal state updates
+        self._last_time = timestamp
+
+        # Call strategy
+        if self._wants('timer'):
+            self.on_timer(timer_id)
+
+        # Check for actions
+        return self._take_actions()
 
     def _playback_end(self):
         if self._metrics_enabled:
             self.print_metrics();
 
+    def _set_log_location(self, log_location):
+        # Called by Java for every run, runs in parallel must not share a
+        # file. None restores the default.
+        self._close_log()
+        self._log_location = log_location or DEFAULT_LOG_LOCATION
+
     def _reset(self):
-        if self._log_signals:
-            self._log.close()
         self._reset_state()
         self.reset()
 
@@ -283,7 +560,7 @@ class BaseStrategy(object):
 
     def new_order(self, price, qty, order_type):
         # Order types: ['buy', 'sell', 'cover', 'short']
-        client_order_id = self.act("NO", "", self.format_price(price), qty, order_type)
+        client_order_id = self.act(ACTION_NEW_ORDER, 0, price, qty, order_type)
         self._pending_orders[client_order_id] = Order(client_order_id, price, qty, order_type, self._last_time)
         return client_order_id
 
@@ -292,19 +569,33 @@ class BaseStrategy(object):
         return self.new_order(0, qty, order_type)
 
     def cancel(self, orig_client_order_id):
-        client_order_id = self.act("CO", orig_client_order_id, "", "", "")
+        client_order_id = self.act(ACTION_CANCEL, orig_client_order_id, 0, 0, None)
         return client_order_id
 
     def cancel_replace(self, orig_client_order_id, price, qty, order_type):
         # Order type: [buy, sell, cover, short]
-        client_order_id = self.act("CR", orig_client_order_id, self.format_price(price), qty, order_type)
+        client_order_id = self.act(ACTION_CANCEL_REPLACE, orig_client_order_id, price, qty, order_type)
         self._pending_cr[client_order_id] = Order(client_order_id, price, qty, order_type, self._last_time)
         return client_order_id
 
     def cancel_all(self):
-        client_order_id = self.act("CA", "", "", "", "")
+        client_order_id = self.act(ACTION_CANCEL_ALL, 0, 0, 0, None)
         return client_order_id
 
+    def set_timer(self, timestamp):
+        # Calls on_timer(timer_id) once the simulated time reaches timestamp,
+        # instead of checking last_time on every event
+        timer_id = self.act(ACTION_TIMER_AT, 0, timestamp, 0, None)
+        return timer_id
+
+    def set_timer_after(self, delay):
+        # Before the first event the clock is at the start of the trading day
+        last_time = self._last_time if self._last_time is not None else 0
+        return self.set_timer(last_time + delay)
+
+    def cancel_timer(self, timer_id):
+        self.act(ACTION_TIMER_CANCEL, timer_id, 0, 0, None)
+
 
     # --- Properties ---
 
@@ -358,8 +649,16 @@ class BaseStrategy(object):
 
     def log_signal(self, signal):
         if self._log_signals:
+            if self._log is None:
+                self._log = open(self._log_location, 'w')
+                self._log.write("timestamp,signal\n")
             self._log.write("%s,%s\n" % (self.format_time(self.last_time), str(signal)))
 
+    def _close_log(self):
+        if self._log is not None:
+            self._log.close()
+            self._log = None
+
     def print_metrics(self):
         if self._metrics_enabled == False:
             print "Metrics disabled."
@@ -431,6 +730,15 @@ class BaseStrategy(object):
     def on_new_order_accepted(self, client_order_id):
     	pass
 
+    def on_timer(self, timer_id):
+    	pass
+
+    def on_batch(self, count, sides, id_nums, qtys, prices, timestamps):
+    	pass
+
+    def on_drain(self, events, count):
+    	pass
+
     def reset(self):
     	pass
 
@@ -442,14 +750,24 @@ class BaseStrategy(object):
         return x[:-4] + '.' + x[-4:]
 
     def act(self, action, orig_client_order_id, price, qty, order_type):
+        # Six numbers per action, see PythonStrategy.handleActions
         client_order_id = self.get_next_client_order_id()
         self._actions.extend([action, client_order_id, orig_client_order_id,
-                              str(price), str(qty), order_type])
+                              price, qty, ORDER_TYPES.get(order_type, NO_ORDER_TYPE)])
         return client_order_id
 
+    def _take_actions(self):
+        if self._draining:
+            return None
+        actions = self._actions
+        self._actions = []
+        if jpy is None:
+            return actions
+        return jpy.array('long', actions)
+
     def get_next_client_order_id(self):
         self._client_order_id = self._client_order_id + 1
-        return str(self._client_order_id)
+        return self._client_order_id
 
     def format_time(self, t):
         x = t / 1000
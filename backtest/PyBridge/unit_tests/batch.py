@@ -0,0 +1,43 @@
+#!/usr/bin/python
+
+from array import array
+from basestrategy import BaseStrategy, BATCH_BID, BATCH_ASK, BATCH_TRADE
+
+class BatchStrategy(BaseStrategy):
+    def __init__(self):
+        BaseStrategy.__init__(self)
+        self.batches = 0
+        self.client_order_id = None
+
+    def on_batch(self, count, sides, id_nums, qtys, prices, timestamps):
+        self.batches += 1
+        self.client_order_id = self.new_order(prices[count - 1], 100, 'buy')
+
+def check(test_num, description, result, expected):
+    if result != expected:
+        print "FAILED: #%s %s (expected %s but got %s)" % (str(test_num), description, str(expected), str(result))
+    else:
+        print "PASSED: #%s %s" % (str(test_num), description)
+
+# The last event of each side wins, entries past count are ignored
+b = BatchStrategy()
+sides = array('i', [BATCH_BID, BATCH_ASK, BATCH_BID, BATCH_TRADE, BATCH_ASK])
+id_nums = ['1', '2', '3', None, '5']
+qtys = array('l', [100, 200, 300, 400, 500])
+prices = array('l', [1500000, 1500100, 1500050, 1500100, 1499900])
+timestamps = array('l', [34200000, 34200001, 34200002, 34200003, 34200004])
+actions = b._on_batch("SPY", 4, sides, id_nums, qtys, prices, timestamps)
+check(1, "on_batch called", b.batches, 1)
+check(2, "last bid", (b.last_bid.id_num, b.last_bid.qty, b.last_bid.price, b.last_bid.timestamp), ('3', 300, 1500050, 34200002))
+check(3, "last ask", (b.last_ask.id_num, b.last_ask.qty, b.last_ask.price, b.last_ask.timestamp), ('2', 200, 1500100, 34200001))
+check(4, "last trade", (b.last_trade.id_num, b.last_trade.qty, b.last_trade.price), (None, 400, 1500100))
+check(5, "last time", b.last_time, 34200003)
+check(6, "order placed at the batch time", b._pending_orders[b.client_order_id].placed_time, 34200003)
+check(7, "actions returned", len(actions) > 0, True)
+check(8, "actions taken once", b._take_actions(), [])
+
+# A batch without some side keeps the earlier tick of that side
+b._on_batch("SPY", 1, array('i', [BATCH_TRADE]), [None], array('l', [10]), array('l', [1500200]), array('l', [34200010]))
+check(9, "bid kept", b.last_bid.id_num, '3')
+check(10, "trade updated", b.last_trade.price, 1500200)
+check(11, "time updated", b.last_time, 34200010)
@@ -0,0 +1,62 @@
+#!/usr/bin/python
+
+from array import array
+from basestrategy import BaseStrategy, BookAheadError, EVENT_FIELDS, EVENT_BID
+
+class StubBookView(object):
+    def __init__(self, bid_price, ask_price):
+        self.bid_price = bid_price
+        self.ask_price = ask_price
+
+    def getBestBidPrice(self):
+        return self.bid_price
+
+    def getBestAskPrice(self):
+        return self.ask_price
+
+    def getMidpointPrice(self):
+        if self.bid_price == 0 or self.ask_price == 0:
+            return 0
+        return (self.bid_price + self.ask_price + 1) / 2
+
+class BookReadingStrategy(BaseStrategy):
+    def __init__(self):
+        BaseStrategy.__init__(self)
+        self.errors = 0
+        self.drain_bid_price = None
+
+    def on_bid(self):
+        try:
+            self.book.top_bid_price
+        except BookAheadError:
+            self.errors += 1
+
+    def on_drain(self, events, count):
+        self.drain_bid_price = self.book.top_bid_price
+
+def check(test_num, description, result, expected):
+    if result != expected:
+        print "FAILED: #%s %s (expected %s but got %s)" % (str(test_num), description, str(expected), str(result))
+    else:
+        print "PASSED: #%s %s" % (str(test_num), description)
+
+# An empty side has no price
+b = BaseStrategy()
+b._attach_book(StubBookView(100000, 0))
+check(1, "bid price", b.book.top_bid_price, 100000)
+check(2, "empty ask side", b.book.top_ask_price, None)
+check(3, "no midpoint with an empty side", b.book.midpoint_price, None)
+
+# Handlers replayed by _drain can't read the book, on_drain can
+b = BookReadingStrategy()
+b._attach_book(StubBookView(100000, 100100))
+records = array('l', [0] * (2 * EVENT_FIELDS))
+for i in range(2):
+    records[i * EVENT_FIELDS] = EVENT_BID
+    records[i * EVENT_FIELDS + 4] = 100000
+    records[i * EVENT_FIELDS + 5] = 100
+b._attach_events(records, ['1', '2'])
+b._drain("GOOG", 2)
+check(4, "book blocked in replayed handlers", b.errors, 2)
+check(5, "book readable in on_drain", b.drain_bid_price, 100000)
+check(6, "book readable after _drain", b.book.top_bid_price, 100000)
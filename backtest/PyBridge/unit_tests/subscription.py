@@ -0,0 +1,50 @@
+#!/usr/bin/python
+
+from basestrategy import BaseStrategy
+
+class StubBookView(object):
+    def getMidpointPrice(self):
+        return 100000
+
+class CountingStrategy(BaseStrategy):
+    def __init__(self):
+        BaseStrategy.__init__(self)
+        self._attach_book(StubBookView())
+        self.fills = 0
+        self.accepts = 0
+
+    def on_fill(self):
+        self.fills += 1
+
+    def on_new_order_accepted(self, client_order_id):
+        self.accepts += 1
+
+def check(test_num, description, result, expected):
+    if result != expected:
+        print "FAILED: #%s %s (expected %s but got %s)" % (str(test_num), description, str(expected), str(result))
+    else:
+        print "PASSED: #%s %s" % (str(test_num), description)
+
+# Subscribed without order events: the ack still opens the order, so the fill
+# that follows is booked, but only on_fill is called
+b = CountingStrategy()
+b._subscribe(['bid', 'ask', 'fill'])
+client_order_id = b.new_order(100000, 100, 'buy')
+b._take_actions()
+b._new_order_accepted(client_order_id)
+b._fill("GOOG", client_order_id, 60, 40, 100000, 10000000)
+check(1, "order opened without on_new_order_accepted", b.accepts, 0)
+check(2, "partial fill booked", b.open_orders[client_order_id].remaining_qty, 40)
+check(3, "shares held", b.shares_held, 60)
+check(4, "on_fill called", b.fills, 1)
+
+# Subscribed without fills: shares held stay right
+b = CountingStrategy()
+b._subscribe(['bid', 'ask', 'order'])
+client_order_id = b.new_order(100000, 100, 'buy')
+b._new_order_accepted(client_order_id)
+b._fill("GOOG", client_order_id, 100, 0, 100000, 10000000)
+check(5, "filled order closed", client_order_id in b.open_orders, False)
+check(6, "shares held", b.shares_held, 100)
+check(7, "on_fill skipped", b.fills, 0)
+check(8, "on_new_order_accepted called", b.accepts, 1)
@@ -13,9 +13,9 @@ def run_test(fills, midpoint, expected, test_num):
     with Replacer() as replace:
         m = replace('basestrategy.BaseStrategy.midpoint_price', PropertyMock(return_value=midpoint*10000))
         for qty, price in fills:
-            client_order_id = str(random.randrange(1, 10000000))
+            client_order_id = random.randrange(1, 10000000)
             b._open_orders[client_order_id] = Order(client_order_id, 0, 0, None, None)
-            b._fill("GOOG", client_order_id, qty, 0, str(price) + ".0000", 10000000)
+            b._fill("GOOG", client_order_id, qty, 0, price * 10000, 10000000)
         result = b._unrealized_pnl
 
     if result != expected * 10000:
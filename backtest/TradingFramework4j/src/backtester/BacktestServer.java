@@ -0,0 +1,197 @@
+package backtester;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import backtester.common.SimpleLogger;
+import backtester.quote.RecordedQuotes;
+import backtester.strategy.BaseStrategy;
+import backtester.strategy.PrimitiveStrategyAdapter;
+import backtester.strategy.PythonStrategy;
+import backtester.update.STATS_UPDATE_TYPE;
+
+/**
+ * Runs backtests for clients on the same machine, so an optimizer pays for JVM startup, JIT warmup, parsing the quote file and importing
+ * the python strategy once instead of once per evaluation.  The server listens on the loopback interface only and reads one job per
+ * line, fields separated by tabs:
+ *
+ * quoteFile \t pythonStrategyFile \t pythonConfig
+ *
+ * The strategy file and the configuration may be empty.  Paths are resolved against the working directory, like for Backtester.  Every
+ * job is answered with one line, either OK followed by NAME=value for each of today's statistics, e.g.
+ *
+ * OK \t ORDER_COUNT=12 \t ... \t CLOSED_PL=10.5000 \t TOTAL_TRANSACTION_COST=1.2000 \t ...
+ *
+ * or ERROR \t message.  A connection may send any number of jobs.  Each connection is served by one of a fixed number of workers and
+ * further connections wait for a free worker, one by default.  Python strategies of different workers take turns in the one embedded
+ * interpreter, see PythonRuntime.  Every worker thread writes python signals to its own file,
+ * signals_log.worker0.csv for the first one.  The parsed quotes of the backtester.serverCachedQuoteFiles most recently used files are
+ * kept in memory, a file is parsed again once it changed.
+ */
+public class BacktestServer {
+	private static final SimpleLogger _log = SimpleLogger.getLogger(BacktestServer.class);
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final String FIELD_SEPARATOR = "\t";
+
+	private final Backtester backtester;
+	private final Map<String, RecordedQuotes> quoteCache;
+	// Jobs running at the same time must not share a signal log
+	private final AtomicInteger workerCount = new AtomicInteger();
+	private final ThreadLocal<String> workerSignalLog = new ThreadLocal<String>() {
+		@Override
+		protected String initialValue() {
+			return "signals_log.worker" + workerCount.getAndIncrement() + ".csv";
+		}
+	};
+
+	public BacktestServer(final Backtester backtester, final int cachedQuoteFiles) {
+		if (backtester == null) {
+			throw new IllegalArgumentException("Backtester can't be null");
+		}
+		if (cachedQuoteFiles < 1) {
+			throw new IllegalArgumentException("At least one quote file must be cached: " + cachedQuoteFiles);
+		}
+		this.backtester = backtester;
+		quoteCache = new LinkedHashMap<String, RecordedQuotes>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, RecordedQuotes> eldest) {
+				return size() > cachedQuoteFiles;
+			}
+		};
+	}
+
+	/**
+	 * Accepts connections until the thread is interrupted or the server socket fails.
+	 */
+	public void serve(final ServerSocket serverSocket, final int workers) throws IOException {
+		final ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				final Socket socket = serverSocket.accept();
+				executor.execute(new Connection(socket));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the reply to one job line, without the line separator
+	 */
+	public String runJob(final String job) {
+		final String[] fields = job.split(FIELD_SEPARATOR, -1);
+		if (fields.length < 1 || fields.length > 3 || fields[0].isEmpty()) {
+			return "ERROR" + FIELD_SEPARATOR + "Expected quoteFile\\tpythonStrategyFile\\tpythonConfig";
+		}
+		final String pythonStrategyFile = fields.length > 1 && !fields[1].isEmpty() ? fields[1] : null;
+		final String pythonConfig = fields.length > 2 && !fields[2].isEmpty() ? fields[2] : null;
+
+		BaseStrategy strategy = null;
+		try {
+			strategy = backtester.testStrategy(getQuotes(new File(fields[0])), pythonStrategyFile, pythonConfig, workerSignalLog.get());
+			final StringBuilder sb = new StringBuilder("OK");
+			for (final STATS_UPDATE_TYPE type : STATS_UPDATE_TYPE.getTodaysEnums()) {
+				final Object value = strategy.getStatisticValue(type);
+				sb.append(FIELD_SEPARATOR).append(type.name()).append('=');
+				sb.append(value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : String.valueOf(value));
+			}
+			return sb.toString();
+		} catch (final Exception e) {
+			_log.error(e);
+			return "ERROR" + FIELD_SEPARATOR + String.valueOf(e).replaceAll("\\s+", " ");
+		} finally {
+			if (strategy != null) {
+				strategy.close();
+			}
+		}
+	}
+
+	/**
+	 * Parsing happens while holding the cache, so concurrent jobs for a new file wait for one parse instead of each parsing it.
+	 */
+	private synchronized RecordedQuotes getQuotes(final File quoteFile) throws Exception {
+		final String key = quoteFile.getCanonicalPath() + "@" + quoteFile.lastModified();
+		RecordedQuotes quotes = quoteCache.get(key);
+		if (quotes == null) {
+			if (!quoteFile.isFile()) {
+				throw new IOException("No such quote file: " + quoteFile);
+			}
+			_log.info("Loading quotes from " + quoteFile);
+			quotes = RecordedQuotes.record(quoteFile);
+			quoteCache.put(key, quotes);
+		}
+		return quotes;
+	}
+
+	private class Connection implements Runnable {
+		private final Socket socket;
+
+		public Connection(final Socket socket) {
+			this.socket = socket;
+		}
+
+		@Override
+		public void run() {
+			try {
+				try {
+					final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), CHARSET));
+					final PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), CHARSET));
+					String line;
+					while ((line = reader.readLine()) != null) {
+						if (line.trim().isEmpty()) {
+							continue;
+						}
+						writer.print(runJob(line));
+						writer.print('\n');
+						writer.flush();
+					}
+				} finally {
+					socket.close();
+				}
+			} catch (final IOException e) {
+				_log.error(e);
+			}
+		}
+	}
+
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 1 || args.length > 2) {
+			System.out.println("Usage: BacktestServer port <optional number of workers>");
+			System.exit(0);
+		}
+		final int port = Integer.parseInt(args[0]);
+		final int workers = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+		final Backtester backtester;
+		if (System.getProperty("backtester.primitiveStrategy") != null) {
+			backtester = new Backtester(null, PrimitiveStrategyAdapter.class, null);
+		} else {
+			backtester = new Backtester(null, PythonStrategy.class, null);
+		}
+		final BacktestServer server = new BacktestServer(backtester, Integer.getInteger("backtester.serverCachedQuoteFiles", 2));
+
+		final ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+		_log.info("Backtest server listening on " + serverSocket.getLocalSocketAddress() + " with " + workers + " workers");
+		try {
+			server.serve(serverSocket, workers);
+		} finally {
+			serverSocket.close();
+		}
+	}
+}
@@ -1,25 +1,41 @@
 package backtester;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import backtester.common.SimpleLogger;
+import backtester.quote.FanOutQuoteListener;
 import backtester.quote.QuoteSource;
+import backtester.quote.RecordedQuotes;
 import backtester.quote.sources.FileDumpQuoteSource;
 import backtester.quote.sources.FileDumpQuoteSourceUtil;
 import backtester.simulation.DefaultLatencyProfile;
 import backtester.simulation.DefaultSimulationMarket;
+import backtester.simulation.LatencyProfile;
+import backtester.simulation.LatencyTable;
 import backtester.simulation.SimulationMarket;
 import backtester.simulation.SimulationMarketLatencyProxy;
+import backtester.simulation.ZeroLatencyProfile;
+import backtester.simulation.journal.EventJournalRecorder;
 import backtester.strategy.BaseStrategy;
+import backtester.strategy.PrimitiveStrategyAdapter;
 import backtester.strategy.PythonStrategy;
 import backtester.strategy.StrategyConfiguration;
 
 public class Backtester implements Observer {
 	private static SimpleLogger _log = SimpleLogger.getLogger(Backtester.class);
+	private static final int FAN_OUT_BATCH_SIZE = 4096;
 	private Constructor<? extends BaseStrategy> strategyConstructor;
 	
 	private SimulationMarket simulationMarket;
@@ -69,34 +85,223 @@ public class Backtester implements Observer {
 
 		innerMarket = new DefaultSimulationMarket(innerMarket) ;
 		
-		simulationMarket = SimulationMarketLatencyProxy.createSimulationMarketLatencyProxy(innerMarket, new DefaultLatencyProfile());
-		final StrategyConfiguration strategyConfiguration = new StrategyConfiguration(simulationMarket, tradingDate);
-		
-		if (pythonStrategy != null) {
-			strategyConfiguration.setVariable("pythonStrategy", pythonStrategy);
-		}
-		
-		if (presetConfiguration != null) {
-			strategyConfiguration.setVariable("pythonConfig", presetConfiguration);
+		simulationMarket = SimulationMarketLatencyProxy.createSimulationMarketLatencyProxy(innerMarket, createLatencyProfile());
+		final EventJournalRecorder journalRecorder = createJournalRecorder();
+		try {
+			// With a journal the strategy trades through the recorder, so its orders are journaled too
+			final SimulationMarket strategyMarket = journalRecorder != null ? journalRecorder.recordOrders(simulationMarket)
+					: simulationMarket;
+			final StrategyConfiguration strategyConfiguration = createStrategyConfiguration(strategyMarket, tradingDate, pythonStrategy,
+					presetConfiguration);
+
+			// The previous day's strategy only hands over its position
+			if (strategy != null) {
+				strategy.close();
+			}
+			strategy = strategyConstructor.newInstance(strategy, strategyConfiguration);
+
+			quoteSource.setQuoteListener(simulationMarket);
+			if (journalRecorder != null) {
+				journalRecorder.setQuoteListener(strategy);
+				journalRecorder.setTradeListener(strategy);
+				simulationMarket.setQuoteListener(journalRecorder);
+				simulationMarket.setTradeListener(journalRecorder);
+			} else {
+				simulationMarket.setQuoteListener(strategy);
+				simulationMarket.setTradeListener(strategy);
+			}
+			quoteSource.initialize();
+			quoteSource.playAll();
+			quoteSource.stop();
+			quoteSource.plugMemoryLeak();
+		} finally {
+			if (journalRecorder != null) {
+				journalRecorder.close();
+			}
 		}
 		
-		strategy = strategyConstructor.newInstance(strategy, strategyConfiguration);
-		
-		quoteSource.setQuoteListener(simulationMarket);
-		simulationMarket.setQuoteListener(strategy);
-		simulationMarket.setTradeListener(strategy);
-		quoteSource.initialize();
-		quoteSource.playAll();
-		quoteSource.stop();
-		quoteSource.plugMemoryLeak();
-		
 		_log.info(strategy.getEndOfDayReport());
 		strategy.onPlaybackEnd();
 	}
 
+	/**
+	 * Runs one strategy per configuration from a single pass over the quote file.  Every strategy trades against its own simulation
+	 * market and clock, only the parsed quotes are shared.  With more than one thread the runs are replayed in parallel in batches of
+	 * quotes, see FanOutQuoteListener.  Python strategies share one interpreter and take turns in it, see PythonRuntime.  Run i writes
+	 * its python signal log to signals_log.i.csv.
+	 *
+	 * @param pythonConfigs
+	 *            the pythonConfig variable of each run, e.g. "var1=1.0;var2=5.0"
+	 * @return the end of day report of each run, in the order of the configurations
+	 */
+	public List<String> testStrategies(final List<String> pythonConfigs, final int threads) throws Exception {
+		_log.info("Starting fan-out test run of " + pythonConfigs.size() + " configurations at " + new Date());
+
+		final File quoteSourceFile = new File(quoteFile);
+		final Date tradingDate = FileDumpQuoteSourceUtil.parseDateFromFilename(quoteSourceFile.getName());
+		quoteSource = new FileDumpQuoteSource(quoteSourceFile);
+
+		final List<BaseStrategy> strategies = new ArrayList<BaseStrategy>(pythonConfigs.size());
+		final List<SimulationMarket> markets = new ArrayList<SimulationMarket>(pythonConfigs.size());
+		for (final String pythonConfig : pythonConfigs) {
+			final SimulationMarket market = SimulationMarketLatencyProxy.createSimulationMarketLatencyProxy(new DefaultSimulationMarket(null),
+					createLatencyProfile());
+			final StrategyConfiguration strategyConfiguration = createStrategyConfiguration(market, tradingDate, pythonStrategy, pythonConfig);
+			// Runs may be replayed in parallel, each needs its own file
+			strategyConfiguration.setVariable("signalLog", "signals_log." + strategies.size() + ".csv");
+			final BaseStrategy runStrategy = strategyConstructor.newInstance(null, strategyConfiguration);
+			market.setQuoteListener(runStrategy);
+			market.setTradeListener(runStrategy);
+			markets.add(market);
+			strategies.add(runStrategy);
+		}
+
+		final ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		try {
+			final FanOutQuoteListener fanOut = new FanOutQuoteListener(markets, executor, FAN_OUT_BATCH_SIZE);
+			quoteSource.setQuoteListener(fanOut);
+			quoteSource.initialize();
+			quoteSource.playAll();
+			fanOut.flush();
+			quoteSource.stop();
+			quoteSource.plugMemoryLeak();
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+
+		final List<String> reports = new ArrayList<String>(strategies.size());
+		for (final BaseStrategy runStrategy : strategies) {
+			reports.add(runStrategy.getEndOfDayReport());
+			runStrategy.onPlaybackEnd();
+			runStrategy.close();
+		}
+		return reports;
+	}
+
+	/**
+	 * Runs a new strategy over quotes that were already parsed, against its own simulation market.  Only local state is used, so
+	 * several runs may share one Backtester from different threads, as long as runs at the same time use different signal logs.  The
+	 * caller closes the returned strategy once it read the results, a run that fails is closed here.
+	 *
+	 * @param pythonStrategyFile
+	 *            the python strategy file, null for the default
+	 * @param pythonConfig
+	 *            the pythonConfig variable of the run, e.g. "var1=1.0;var2=5.0"
+	 * @param signalLog
+	 *            the file the python strategy logs its signals to, null for the default
+	 */
+	public BaseStrategy testStrategy(final RecordedQuotes quotes, final String pythonStrategyFile, final String pythonConfig,
+			final String signalLog) throws Exception {
+		final SimulationMarket market = SimulationMarketLatencyProxy.createSimulationMarketLatencyProxy(new DefaultSimulationMarket(null),
+				createLatencyProfile());
+		final StrategyConfiguration strategyConfiguration = createStrategyConfiguration(market, quotes.getTradingDate(), pythonStrategyFile,
+				pythonConfig);
+		if (signalLog != null) {
+			strategyConfiguration.setVariable("signalLog", signalLog);
+		}
+		final BaseStrategy runStrategy = strategyConstructor.newInstance(null, strategyConfiguration);
+		boolean succeeded = false;
+		try {
+			market.setQuoteListener(runStrategy);
+			market.setTradeListener(runStrategy);
+			quotes.replay(market);
+			runStrategy.onPlaybackEnd();
+			succeeded = true;
+			return runStrategy;
+		} finally {
+			// The caller only gets the strategy to close when the run succeeded
+			if (!succeeded) {
+				runStrategy.close();
+			}
+		}
+	}
+
+	private static StrategyConfiguration createStrategyConfiguration(final SimulationMarket market, final Date tradingDate,
+			final String pythonStrategyFile, final String pythonConfig) {
+		final StrategyConfiguration strategyConfiguration = new StrategyConfiguration(market, tradingDate);
+
+		if (pythonStrategyFile != null) {
+			strategyConfiguration.setVariable("pythonStrategy", pythonStrategyFile);
+		}
+
+		if (pythonConfig != null) {
+			strategyConfiguration.setVariable("pythonConfig", pythonConfig);
+		}
+
+		final String primitiveStrategy = System.getProperty("backtester.primitiveStrategy");
+		if (primitiveStrategy != null) {
+			strategyConfiguration.setVariable("primitiveStrategy", primitiveStrategy);
+		}
+		return strategyConfiguration;
+	}
+
+	/**
+	 * Reads one pythonConfig per line, blank lines are skipped.
+	 */
+	private static List<String> readConfigurations(final String configurationFile) throws IOException {
+		final List<String> configurations = new ArrayList<String>();
+		final BufferedReader reader = new BufferedReader(new FileReader(configurationFile));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.trim().isEmpty()) {
+					configurations.add(line.trim());
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return configurations;
+	}
+
+	/**
+	 * Uses the latency config file named by the backtester.latencyProfile system property, if there is one.  "zero" runs without any
+	 * latency, which skips the latency proxy.
+	 */
+	private static LatencyProfile createLatencyProfile() throws IOException {
+		final String latencyProfileFile = System.getProperty("backtester.latencyProfile");
+		if (latencyProfileFile == null) {
+			return new DefaultLatencyProfile();
+		}
+		if ("zero".equals(latencyProfileFile)) {
+			return new ZeroLatencyProfile();
+		}
+		_log.info("Loading latency profile from " + latencyProfileFile);
+		return LatencyTable.load(new File(latencyProfileFile));
+	}
+
+	/**
+	 * Records the callbacks to the strategy and its orders to the journal file named by the backtester.journal system property, if
+	 * there is one.  The listeners of the recorder are set once the strategy exists.
+	 */
+	private EventJournalRecorder createJournalRecorder() throws IOException {
+		final String journalFile = System.getProperty("backtester.journal");
+		if (journalFile == null) {
+			return null;
+		}
+		_log.info("Recording event journal to " + journalFile);
+		final FileOutputStream out = new FileOutputStream(journalFile);
+		boolean created = false;
+		try {
+			final EventJournalRecorder journalRecorder = new EventJournalRecorder(out, simulationMarket.getSimulationContext()
+					.getMarketTime());
+			created = true;
+			return journalRecorder;
+		} finally {
+			if (!created) {
+				out.close();
+			}
+		}
+	}
+
 	public static void main(final String[] args) throws Exception {
 		Backtester backtester = null;
-		if (args.length == 1) {
+		if (args.length == 1 && System.getProperty("backtester.primitiveStrategy") != null) {
+			// A Java strategy named by class, e.g. -Dbacktester.primitiveStrategy=com.example.FastSignal
+			backtester = new Backtester(null, PrimitiveStrategyAdapter.class, args[0]);
+		} else if (args.length == 1) {
 			backtester = new Backtester(null, PythonStrategy.class, args[0]);
 		} else if (args.length == 2) {
 			pythonStrategy = args[1];
@@ -110,6 +315,17 @@ public class Backtester implements Observer {
 			System.exit(0);
 		}
 		
+		// One run per line of the file named by backtester.fanOutConfigs, all fed from a single pass over the quotes
+		final String fanOutConfigs = System.getProperty("backtester.fanOutConfigs");
+		if (fanOutConfigs != null) {
+			final List<String> reports = backtester.testStrategies(readConfigurations(fanOutConfigs),
+					Integer.getInteger("backtester.fanOutThreads", 1));
+			for (final String report : reports) {
+				_log.info(report);
+			}
+			return;
+		}
+
 		backtester.testStrategy();
 	}
 
@@ -0,0 +1,88 @@
+package backtester.common;
+
+import java.util.Random;
+
+/**
+ * Walker/Vose alias table for sampling an index from a fixed discrete distribution in constant time.  The tables are built once in
+ * the constructor, sampling only reads them and does not allocate.
+ */
+public class AliasTable {
+	private final double[] probability;
+	private final int[] alias;
+
+	/**
+	 * @param weights
+	 *            relative weight of each index, must be non-negative with a positive sum
+	 */
+	public AliasTable(final double[] weights) {
+		final int n = weights.length;
+		if (n == 0) {
+			throw new IllegalArgumentException("AliasTable needs at least one weight");
+		}
+
+		double sum = 0;
+		for (final double weight : weights) {
+			if (weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight)) {
+				throw new IllegalArgumentException("Invalid weight: " + weight);
+			}
+			sum += weight;
+		}
+		if (sum <= 0) {
+			throw new IllegalArgumentException("Weights must have a positive sum");
+		}
+
+		probability = new double[n];
+		alias = new int[n];
+
+		// Scale so the average weight is 1, then pair every under-full index with an over-full one.
+		final double[] scaled = new double[n];
+		final int[] small = new int[n];
+		final int[] large = new int[n];
+		int smallCount = 0;
+		int largeCount = 0;
+		for (int i = 0; i < n; i++) {
+			scaled[i] = weights[i] * n / sum;
+			if (scaled[i] < 1.0) {
+				small[smallCount++] = i;
+			} else {
+				large[largeCount++] = i;
+			}
+		}
+
+		while (smallCount > 0 && largeCount > 0) {
+			final int less = small[--smallCount];
+			final int more = large[--largeCount];
+
+			probability[less] = scaled[less];
+			alias[less] = more;
+
+			scaled[more] = scaled[more] + scaled[less] - 1.0;
+			if (scaled[more] < 1.0) {
+				small[smallCount++] = more;
+			} else {
+				large[largeCount++] = more;
+			}
+		}
+
+		// Whatever is left is full up to rounding error.
+		while (largeCount > 0) {
+			final int index = large[--largeCount];
+			probability[index] = 1.0;
+			alias[index] = index;
+		}
+		while (smallCount > 0) {
+			final int index = small[--smallCount];
+			probability[index] = 1.0;
+			alias[index] = index;
+		}
+	}
+
+	public int sample(final Random random) {
+		final int column = random.nextInt(probability.length);
+		return random.nextDouble() < probability[column] ? column : alias[column];
+	}
+
+	public int size() {
+		return probability.length;
+	}
+}
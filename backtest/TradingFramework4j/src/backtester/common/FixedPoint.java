@@ -0,0 +1,55 @@
+package backtester.common;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Prices and money amounts as longs with four implied decimal places, so running totals can be kept without allocating a BigDecimal
+ * per update.  Values are rounded half even when they are converted from a BigDecimal.
+ */
+public class FixedPoint {
+	public static final int SCALE = 4;
+	public static final long ONE = 10000L;
+
+	public static long fromBigDecimal(final BigDecimal value) {
+		final BigDecimal scaled = value.setScale(SCALE, RoundingMode.HALF_EVEN);
+		if (scaled.unscaledValue().bitLength() > 63) {
+			throw new ArithmeticException("Value out of fixed point range: " + value);
+		}
+		return scaled.unscaledValue().longValue();
+	}
+
+	public static BigDecimal toBigDecimal(final long value) {
+		return BigDecimal.valueOf(value, SCALE);
+	}
+
+	/**
+	 * @return value * multiplier / divisor rounded half even, without overflowing the intermediate product
+	 */
+	public static long multiplyDivide(final long value, final long multiplier, final long divisor) {
+		if (divisor == 0) {
+			throw new ArithmeticException("Division by zero");
+		}
+		if (multiplier == 0 || Math.abs(value) <= Long.MAX_VALUE / Math.abs(multiplier)) {
+			return divideHalfEven(value * multiplier, divisor);
+		}
+		return BigDecimal.valueOf(value).multiply(BigDecimal.valueOf(multiplier))
+				.divide(BigDecimal.valueOf(divisor), 0, RoundingMode.HALF_EVEN).longValue();
+	}
+
+	private static long divideHalfEven(final long dividend, final long divisor) {
+		final long quotient = dividend / divisor;
+		final long remainder = dividend % divisor;
+		if (remainder == 0) {
+			return quotient;
+		}
+		// Compare twice the remainder with the divisor without overflowing
+		final long absRemainder = Math.abs(remainder);
+		final long halfDivisorComparison = absRemainder - (Math.abs(divisor) - absRemainder);
+		final long signum = (dividend < 0) == (divisor < 0) ? 1 : -1;
+		if (halfDivisorComparison > 0 || (halfDivisorComparison == 0 && (quotient & 1) != 0)) {
+			return quotient + signum;
+		}
+		return quotient;
+	}
+}
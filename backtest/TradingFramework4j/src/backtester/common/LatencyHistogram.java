@@ -0,0 +1,71 @@
+package backtester.common;
+
+/**
+ * Counts durations in power of two nanosecond buckets, so recording one is a few array operations and never allocates.  Bucket i
+ * holds the durations below 2^i nanoseconds that did not fit bucket i - 1, percentiles are reported as the upper bound of their bucket
+ * and are therefore within a factor of two.  This class is not thread-safe.
+ */
+public class LatencyHistogram {
+	private static final int BUCKETS = 64;
+
+	private final long[] buckets = new long[BUCKETS];
+	private long count;
+	private long totalNanos;
+	private long maxNanos;
+
+	public void record(final long nanos) {
+		final long duration = nanos < 0 ? 0 : nanos;
+		buckets[BUCKETS - Long.numberOfLeadingZeros(duration)]++;
+		count++;
+		totalNanos += duration;
+		if (duration > maxNanos) {
+			maxNanos = duration;
+		}
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public long getMeanNanos() {
+		return count == 0 ? 0 : totalNanos / count;
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return the upper bound of the bucket holding the percentile, never more than the maximum recorded duration
+	 */
+	public long getPercentileNanos(final double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets[i];
+			if (seen >= rank) {
+				// (1 << 63) - 1 wraps around to Long.MAX_VALUE
+				return Math.min((1L << i) - 1, maxNanos);
+			}
+		}
+		return maxNanos;
+	}
+
+	public void clear() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = 0;
+		}
+		count = 0;
+		totalNanos = 0;
+		maxNanos = 0;
+	}
+}
@@ -0,0 +1,197 @@
+package backtester.common;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long keys to object values. Keys are stored in a primitive array, so lookups, inserts and removes do
+ * not box or allocate. Null values are not allowed, null is returned for missing keys. This
+ * class is not thread-safe.
+ */
+public class LongObjectHashMap<V> {
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+	private long[] keys;
+	private V[] values;
+	private int mask;
+	private int size;
+	private boolean hasEmptyKey;
+	private V emptyKeyValue;
+
+	public LongObjectHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LongObjectHashMap(final int expectedSize) {
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	private static int tableSizeFor(final int expectedSize) {
+		int capacity = 2;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void allocate(final int capacity) {
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY_KEY);
+		values = (V[]) new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int hash(final long key) {
+		final long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Returns the value for the key, or null if there is none.
+	 */
+	public V get(final long key) {
+		if (key == EMPTY_KEY) {
+			return emptyKeyValue;
+		}
+		int index = hash(key) & mask;
+		long existing;
+		while ((existing = keys[index]) != EMPTY_KEY) {
+			if (existing == key) {
+				return values[index];
+			}
+			index = (index + 1) & mask;
+		}
+		return null;
+	}
+
+	public boolean containsKey(final long key) {
+		if (key == EMPTY_KEY) {
+			return hasEmptyKey;
+		}
+		int index = hash(key) & mask;
+		long existing;
+		while ((existing = keys[index]) != EMPTY_KEY) {
+			if (existing == key) {
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Associates the value with the key and returns the previous value, or null if there was none.
+	 */
+	public V put(final long key, final V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Value can't be null");
+		}
+		if (key == EMPTY_KEY) {
+			final V previous = emptyKeyValue;
+			if (!hasEmptyKey) {
+				size++;
+			}
+			hasEmptyKey = true;
+			emptyKeyValue = value;
+			return previous;
+		}
+		int index = hash(key) & mask;
+		long existing;
+		while ((existing = keys[index]) != EMPTY_KEY) {
+			if (existing == key) {
+				final V previous = values[index];
+				values[index] = value;
+				return previous;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[index] = key;
+		values[index] = value;
+		if (++size > keys.length / 2) {
+			rehash(keys.length << 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the key and returns its value, or null if the key was not present.
+	 */
+	public V remove(final long key) {
+		if (key == EMPTY_KEY) {
+			if (!hasEmptyKey) {
+				return null;
+			}
+			final V previous = emptyKeyValue;
+			hasEmptyKey = false;
+			emptyKeyValue = null;
+			size--;
+			return previous;
+		}
+		int index = hash(key) & mask;
+		long existing;
+		while ((existing = keys[index]) != EMPTY_KEY) {
+			if (existing == key) {
+				final V previous = values[index];
+				shiftKeysBack(index);
+				size--;
+				return previous;
+			}
+			index = (index + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Backward shift deletion, so lookups never have to skip over tombstones.
+	 */
+	private void shiftKeysBack(int gap) {
+		int index = (gap + 1) & mask;
+		long key;
+		while ((key = keys[index]) != EMPTY_KEY) {
+			final int home = hash(key) & mask;
+			// Move the entry into the gap if its home slot is not between the gap and its current slot.
+			if (((index - home) & mask) >= ((index - gap) & mask)) {
+				keys[gap] = key;
+				values[gap] = values[index];
+				gap = index;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[gap] = EMPTY_KEY;
+		values[gap] = null;
+	}
+
+	private void rehash(final int newCapacity) {
+		final long[] oldKeys = keys;
+		final V[] oldValues = values;
+		allocate(newCapacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			final long key = oldKeys[i];
+			if (key != EMPTY_KEY) {
+				int index = hash(key) & mask;
+				while (keys[index] != EMPTY_KEY) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = key;
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, EMPTY_KEY);
+		Arrays.fill(values, null);
+		hasEmptyKey = false;
+		emptyKeyValue = null;
+		size = 0;
+	}
+}
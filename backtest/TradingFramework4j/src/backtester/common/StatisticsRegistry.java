@@ -9,22 +9,12 @@ import backtester.update.STATS_UPDATE_TYPE;
 public class StatisticsRegistry {
 	private static final SimpleLogger _log = SimpleLogger.getLogger(StatisticsRegistry.class);
 
-	private static StatisticsRegistry instance;
-
 	private final Map<STATS_UPDATE_TYPE, StatMethodWrapper> statistics;
 
-	private StatisticsRegistry() {
+	public StatisticsRegistry() {
 		statistics = new HashMap<STATS_UPDATE_TYPE, StatMethodWrapper>();
 	}
 
-	public static StatisticsRegistry getInstance() {
-		if (null == instance) {
-			instance = new StatisticsRegistry();
-		}
-
-		return instance;
-	}
-
 	public void addStatistic(final STATS_UPDATE_TYPE type, final Object classInstance, final String methodName) {
 		addStatistic(type, classInstance, methodName, null);
 	}
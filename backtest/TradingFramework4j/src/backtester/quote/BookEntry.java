@@ -3,9 +3,12 @@ package backtester.quote;
 import java.math.BigDecimal;
 import java.util.Date;
 
+import backtester.common.FixedPoint;
 import backtester.trade.ClOrdId;
 
 public abstract class BookEntry {
+	private static final long NO_FIXED_POINT_PRICE = Long.MIN_VALUE;
+
 	private final Object uniqueId;
 	private final ClOrdId clOrdId;
 	private final String symbol;
@@ -16,6 +19,7 @@ public abstract class BookEntry {
 	private final boolean isSimulated;
 	private int dirtyQuantity;
 	private int originalQuantity;
+	private long fixedPointPrice = NO_FIXED_POINT_PRICE;
 
 	public BookEntry() {
 		uniqueId = null;
@@ -51,6 +55,7 @@ public abstract class BookEntry {
 	public BookEntry(final BookEntry other) {
 		this(other.getClOrdId(), other.getId(), other.getSymbol(), other.getRemainingQuantity(), other.getPrice(), other.getTimestamp(), other.isSimulated(),
 				other.getOriginalQuantity());
+		fixedPointPrice = other.fixedPointPrice;
 	}
 
 	public Object getId() {
@@ -85,6 +90,16 @@ public abstract class BookEntry {
 		return price;
 	}
 
+	/**
+	 * @return the price in FixedPoint units, converted on the first call and cached
+	 */
+	public long getFixedPointPrice() {
+		if (fixedPointPrice == NO_FIXED_POINT_PRICE) {
+			fixedPointPrice = FixedPoint.fromBigDecimal(price);
+		}
+		return fixedPointPrice;
+	}
+
 	public Date getTimestamp() {
 		return timestamp;
 	}
@@ -0,0 +1,131 @@
+package backtester.quote;
+
+import java.util.List;
+
+/**
+ * Read-only view of a quote book for strategies running outside the JVM, so they can query the book the strategy already keeps instead
+ * of maintaining their own copy.  Every method returns primitives: prices are FixedPoint values and 0 when the side is empty, levels and
+ * trades are flat long arrays with the best level and the oldest trade first.
+ */
+public class BookView {
+	public static final int LEVEL_PRICE = 0;
+	public static final int LEVEL_VOLUME = 1;
+	public static final int LEVEL_ORDER_COUNT = 2;
+	public static final int LEVEL_FIELDS = 3;
+
+	public static final int TRADE_PRICE = 0;
+	public static final int TRADE_SIZE = 1;
+	public static final int TRADE_TIME = 2;
+	public static final int TRADE_FIELDS = 3;
+
+	private final QuoteBook quoteBook;
+
+	public BookView(final QuoteBook quoteBook) {
+		if (quoteBook == null) {
+			throw new IllegalArgumentException("QuoteBook can't be null");
+		}
+		this.quoteBook = quoteBook;
+	}
+
+	public long getBestBidPrice() {
+		final BookEntry bid = quoteBook.getTopOfBook().getBid();
+		return bid == null ? 0 : bid.getFixedPointPrice();
+	}
+
+	public long getBestAskPrice() {
+		final BookEntry ask = quoteBook.getTopOfBook().getAsk();
+		return ask == null ? 0 : ask.getFixedPointPrice();
+	}
+
+	/**
+	 * @return the volume of the best bid level
+	 */
+	public long getBestBidQuantity() {
+		final long[] level = getLevels(quoteBook.getBidView(), 1);
+		return level.length == 0 ? 0 : level[LEVEL_VOLUME];
+	}
+
+	/**
+	 * @return the volume of the best ask level
+	 */
+	public long getBestAskQuantity() {
+		final long[] level = getLevels(quoteBook.getAskView(), 1);
+		return level.length == 0 ? 0 : level[LEVEL_VOLUME];
+	}
+
+	/**
+	 * @return the midpoint rounded up like QuoteBook.getMidpoint(), 0 if either side is empty
+	 */
+	public long getMidpointPrice() {
+		final QuoteEntry topOfBook = quoteBook.getTopOfBook();
+		if (topOfBook.getBid() == null || topOfBook.getAsk() == null) {
+			return 0;
+		}
+		final long bidPrice = topOfBook.getBid().getFixedPointPrice();
+		final long spread = topOfBook.getAsk().getFixedPointPrice() - bidPrice;
+		// Integer division truncates toward zero, which already rounds a negative half spread up
+		return bidPrice + (spread >= 0 ? (spread + 1) / 2 : spread / 2);
+	}
+
+	public long getBidVolume() {
+		return quoteBook.getBidVolume();
+	}
+
+	public long getAskVolume() {
+		return quoteBook.getAskVolume();
+	}
+
+	/**
+	 * @return LEVEL_FIELDS values per level for up to maxLevels bid levels
+	 */
+	public long[] getBidLevels(final int maxLevels) {
+		return getLevels(quoteBook.getBidView(), maxLevels);
+	}
+
+	/**
+	 * @return LEVEL_FIELDS values per level for up to maxLevels ask levels
+	 */
+	public long[] getAskLevels(final int maxLevels) {
+		return getLevels(quoteBook.getAskView(), maxLevels);
+	}
+
+	private static long[] getLevels(final List<? extends BookEntry> side, final int maxLevels) {
+		final long[] levels = new long[Math.min(maxLevels, side.size()) * LEVEL_FIELDS];
+		int count = 0;
+		for (final BookEntry entry : side) {
+			final long price = entry.getFixedPointPrice();
+			if (count == 0 || levels[(count - 1) * LEVEL_FIELDS + LEVEL_PRICE] != price) {
+				if (count * LEVEL_FIELDS == levels.length) {
+					break;
+				}
+				levels[count * LEVEL_FIELDS + LEVEL_PRICE] = price;
+				count++;
+			}
+			final int offset = (count - 1) * LEVEL_FIELDS;
+			levels[offset + LEVEL_VOLUME] += entry.getRemainingQuantity();
+			levels[offset + LEVEL_ORDER_COUNT]++;
+		}
+		if (count * LEVEL_FIELDS == levels.length) {
+			return levels;
+		}
+		final long[] trimmed = new long[count * LEVEL_FIELDS];
+		System.arraycopy(levels, 0, trimmed, 0, trimmed.length);
+		return trimmed;
+	}
+
+	/**
+	 * @return TRADE_FIELDS values per trade for up to maxTrades of the most recent trade ticks, times are milliseconds since midnight
+	 */
+	public long[] getRecentTrades(final int maxTrades) {
+		final TradeTick[] trades = quoteBook.getTrades().toArray(new TradeTick[0]);
+		final int count = Math.min(maxTrades, trades.length);
+		final long[] recent = new long[count * TRADE_FIELDS];
+		for (int i = 0; i < count; i++) {
+			final TradeTick trade = trades[trades.length - count + i];
+			recent[i * TRADE_FIELDS + TRADE_PRICE] = trade.getFixedPointPrice();
+			recent[i * TRADE_FIELDS + TRADE_SIZE] = trade.getSize();
+			recent[i * TRADE_FIELDS + TRADE_TIME] = trade.getMilliTimestamp();
+		}
+		return recent;
+	}
+}
@@ -0,0 +1,156 @@
+package backtester.quote;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Feeds one quote stream to several independent listeners, usually one simulation market per strategy configuration, so the quote
+ * file is read and parsed once for a whole batch of runs.  Every listener gets its own copy of each bid and ask because markets
+ * change the book entries they hold; trade ticks are immutable and shared.  Reading and parsing is paid once, but every bid and ask
+ * still costs one small allocation per listener, the copy shares the id, symbol, price and timestamp objects of the original.
+ *
+ * Without an executor every event is delivered to the listeners in turn.  With an executor events are collected into batches, each
+ * listener replays a batch in its own task, and the next batch is only handed out once every listener is done with the current one,
+ * so no listener runs more than one batch ahead of the others.  Call flush() after the last event to deliver a partial batch.
+ */
+public class FanOutQuoteListener implements QuoteListener {
+	private final QuoteListener[] listeners;
+	private final ExecutorService executor;
+	private final Object[] batch;
+	private int batchSize;
+
+	public FanOutQuoteListener(final List<? extends QuoteListener> listeners) {
+		this(listeners, null, 1);
+	}
+
+	/**
+	 * @param executor
+	 *            runs one task per listener and batch, null to deliver every event directly
+	 * @param maxBatchSize
+	 *            number of events collected before a batch is replayed
+	 */
+	public FanOutQuoteListener(final List<? extends QuoteListener> listeners, final ExecutorService executor, final int maxBatchSize) {
+		if (listeners.isEmpty()) {
+			throw new IllegalArgumentException("At least one listener is needed");
+		}
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+		}
+		this.listeners = listeners.toArray(new QuoteListener[listeners.size()]);
+		this.executor = executor;
+		batch = new Object[executor == null ? 0 : maxBatchSize];
+	}
+
+	public int getListenerCount() {
+		return listeners.length;
+	}
+
+	@Override
+	public void onBid(final Bid bid) {
+		if (executor == null) {
+			for (final QuoteListener listener : listeners) {
+				listener.onBid(new Bid(bid));
+			}
+		} else {
+			addToBatch(bid);
+		}
+	}
+
+	@Override
+	public void onAsk(final Ask ask) {
+		if (executor == null) {
+			for (final QuoteListener listener : listeners) {
+				listener.onAsk(new Ask(ask));
+			}
+		} else {
+			addToBatch(ask);
+		}
+	}
+
+	@Override
+	public void onTradeTick(final TradeTick tradeTick) {
+		if (executor == null) {
+			for (final QuoteListener listener : listeners) {
+				listener.onTradeTick(tradeTick);
+			}
+		} else {
+			addToBatch(tradeTick);
+		}
+	}
+
+	private void addToBatch(final Object event) {
+		batch[batchSize++] = event;
+		if (batchSize == batch.length) {
+			flush();
+		}
+	}
+
+	/**
+	 * Replays the events collected so far on every listener and returns once all of them are done.
+	 */
+	public void flush() {
+		if (batchSize == 0) {
+			return;
+		}
+		final int size = batchSize;
+		final List<Future<Void>> futures = new ArrayList<Future<Void>>(listeners.length);
+		for (final QuoteListener listener : listeners) {
+			futures.add(executor.submit(new ListenerReplayTask(listener, batch, size)));
+		}
+
+		// Time barrier: every listener must be done with the batch before the next one is collected.
+		for (final Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			batch[i] = null;
+		}
+		batchSize = 0;
+	}
+
+	private static class ListenerReplayTask implements Callable<Void> {
+		private final QuoteListener listener;
+		private final Object[] events;
+		private final int size;
+
+		public ListenerReplayTask(final QuoteListener listener, final Object[] events, final int size) {
+			this.listener = listener;
+			this.events = events;
+			this.size = size;
+		}
+
+		@Override
+		public Void call() {
+			for (int i = 0; i < size; i++) {
+				final Object event = events[i];
+				if (event instanceof Ask) {
+					listener.onAsk(new Ask((Ask) event));
+				} else if (event instanceof Bid) {
+					listener.onBid(new Bid((Bid) event));
+				} else {
+					listener.onTradeTick((TradeTick) event);
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -5,8 +5,10 @@ import java.math.RoundingMode;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
 import backtester.quote.Ask;
@@ -25,6 +27,8 @@ public class QuoteBook {
 	private final ValueSortedMap<Object, Ask> asks = new ValueSortedMap<Object, Ask>();
 	private final Queue<TradeTick> ticks = new ArrayDeque<TradeTick>();
 	private final Queue<BookEntry> removedBookEntryQueue = new ArrayDeque<BookEntry>();
+	// Index of the simulated book entries currently resting in bids and asks, keyed by book entry ID
+	private final Map<Object, BookEntry> simulatedBookEntries = new LinkedHashMap<Object, BookEntry>();
 	private long bidVolume = 0;
 	private long askVolume = 0;
 
@@ -84,6 +88,8 @@ public class QuoteBook {
 				}
 			}
 		}
+
+		updateSimulatedBookEntryIndex(bid);
 	}
 	
 	public void addAsk(final Ask ask) {
@@ -133,6 +139,67 @@ public class QuoteBook {
 				}
 			}
 		}
+
+		updateSimulatedBookEntryIndex(ask);
+	}
+
+	private void updateSimulatedBookEntryIndex(final BookEntry bookEntry) {
+		if (!bookEntry.isSimulated()) {
+			return;
+		}
+
+		if (bookEntry.getRemainingQuantity() == 0) {
+			simulatedBookEntries.remove(bookEntry.getId());
+		} else {
+			simulatedBookEntries.put(bookEntry.getId(), bookEntry);
+		}
+	}
+
+	/**
+	 * Removes the book entry with the same ID from its side of the book.  Unlike adding a zero quantity bid or ask, the removed entry
+	 * is not recorded as a received book entry.
+	 * 
+	 * @return the book entry that was removed, or null if it was not in the book
+	 */
+	public BookEntry removeBookEntry(final BookEntry bookEntry) {
+		final BookEntry removed;
+		if (bookEntry instanceof Ask) {
+			removed = asks.remove(bookEntry.getId());
+			if (removed != null) {
+				askVolume -= removed.getRemainingQuantity();
+			}
+		} else {
+			removed = bids.remove(bookEntry.getId());
+			if (removed != null) {
+				bidVolume -= removed.getRemainingQuantity();
+			}
+		}
+
+		if (removed != null && removed.isSimulated()) {
+			simulatedBookEntries.remove(removed.getId());
+		}
+		return removed;
+	}
+
+	/**
+	 * Removes every simulated bid and ask in a single pass over the simulated book entry index.
+	 * 
+	 * @return the removed book entries, in the order they were first added to the book
+	 */
+	public List<BookEntry> removeAllSimulatedBookEntries() {
+		final List<BookEntry> removedList = new ArrayList<BookEntry>(simulatedBookEntries.values());
+		for (final BookEntry bookEntry : removedList) {
+			if (bookEntry instanceof Ask) {
+				asks.remove(bookEntry.getId());
+				askVolume -= bookEntry.getRemainingQuantity();
+			} else {
+				bids.remove(bookEntry.getId());
+				bidVolume -= bookEntry.getRemainingQuantity();
+			}
+			addRemovedBookEntryToQueue(bookEntry);
+		}
+		simulatedBookEntries.clear();
+		return removedList;
 	}
 
 	private void addRemovedBookEntryToQueue(final BookEntry bookEntry) {
@@ -181,6 +248,20 @@ public class QuoteBook {
 		return askCopy;
 	}
 
+	/**
+	 * @return the bids in price order without copying them, for read-only use within the package
+	 */
+	List<Bid> getBidView() {
+		return bids.values();
+	}
+
+	/**
+	 * @return the asks in price order without copying them, for read-only use within the package
+	 */
+	List<Ask> getAskView() {
+		return asks.values();
+	}
+
 	public List<Ask> getSimulatedAsks() {
 		final List<Ask> asks = getAsks();
 		final List<Ask> simulatedAskList = new ArrayList<Ask>();
@@ -215,6 +296,26 @@ public class QuoteBook {
 		return new QuoteEntry(bid, ask);
 	}
 
+	/**
+	 * @return true if the price of the book entry is within the best price levels of its side of the book, or that side has fewer
+	 *         levels.  The book entry does not have to be in the book.
+	 */
+	public boolean isWithinTopLevels(final BookEntry bookEntry, final int levels) {
+		final List<? extends BookEntry> side = bookEntry instanceof Ask ? asks.values() : bids.values();
+		final int direction = bookEntry instanceof Ask ? 1 : -1;
+		int level = 0;
+		BigDecimal levelPrice = null;
+		for (final BookEntry entry : side) {
+			if (levelPrice == null || entry.getPrice().compareTo(levelPrice) != 0) {
+				levelPrice = entry.getPrice();
+				if (++level == levels) {
+					break;
+				}
+			}
+		}
+		return level < levels || bookEntry.getPrice().compareTo(levelPrice) * direction <= 0;
+	}
+
 	public BigDecimal getSpread() {
 		if (bids.isEmpty() || asks.isEmpty()) {
 			return null;
@@ -285,6 +386,7 @@ public class QuoteBook {
 		lastReceivedAsk = null;
 		lastReceivedBidAsk = null;
 		removedBookEntryQueue.clear();
+		simulatedBookEntries.clear();
 		lastReceivedNonSimulatedBidAsk = null;
 		bidVolume = 0;
 		askVolume = 0;
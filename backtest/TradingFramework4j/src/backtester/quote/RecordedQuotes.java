@@ -0,0 +1,101 @@
+package backtester.quote;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import backtester.quote.sources.FileDumpQuoteSource;
+import backtester.quote.sources.FileDumpQuoteSourceUtil;
+
+/**
+ * The quotes of one file parsed once and kept in memory, so any number of later runs can be replayed without reading the file again.
+ * Like FanOutQuoteListener every replay gets its own copy of each bid and ask, trade ticks are immutable and shared.  The recorded
+ * events themselves are never handed out or changed, so replay() may be called from several threads at once.
+ */
+public class RecordedQuotes implements QuoteListener {
+	private final List<Object> events = new ArrayList<Object>();
+	private final Date tradingDate;
+	private boolean recorded;
+
+	private RecordedQuotes(final Date tradingDate) {
+		this.tradingDate = tradingDate;
+	}
+
+	public static RecordedQuotes record(final File quoteFile) throws Exception {
+		final RecordedQuotes recordedQuotes = new RecordedQuotes(FileDumpQuoteSourceUtil.parseDateFromFilename(quoteFile.getName()));
+		final FileDumpQuoteSource quoteSource = new FileDumpQuoteSource(quoteFile);
+		quoteSource.setQuoteListener(recordedQuotes);
+		quoteSource.initialize();
+		quoteSource.playAll();
+		quoteSource.stop();
+		quoteSource.plugMemoryLeak();
+		recordedQuotes.recorded = true;
+		return recordedQuotes;
+	}
+
+	/**
+	 * @param tradingDate
+	 *            the date the events are replayed for
+	 * @param events
+	 *            bids, asks and trade ticks in playback order
+	 */
+	public static RecordedQuotes of(final Date tradingDate, final List<?> events) {
+		final RecordedQuotes recordedQuotes = new RecordedQuotes(tradingDate);
+		for (final Object event : events) {
+			if (event instanceof Ask) {
+				recordedQuotes.onAsk((Ask) event);
+			} else if (event instanceof Bid) {
+				recordedQuotes.onBid((Bid) event);
+			} else if (event instanceof TradeTick) {
+				recordedQuotes.onTradeTick((TradeTick) event);
+			} else {
+				throw new IllegalArgumentException("Not a quote event: " + event);
+			}
+		}
+		recordedQuotes.recorded = true;
+		return recordedQuotes;
+	}
+
+	public Date getTradingDate() {
+		return tradingDate;
+	}
+
+	public int size() {
+		return events.size();
+	}
+
+	public void replay(final QuoteListener listener) {
+		for (final Object event : events) {
+			if (event instanceof Ask) {
+				listener.onAsk(new Ask((Ask) event));
+			} else if (event instanceof Bid) {
+				listener.onBid(new Bid((Bid) event));
+			} else {
+				listener.onTradeTick((TradeTick) event);
+			}
+		}
+	}
+
+	@Override
+	public void onBid(final Bid bid) {
+		record(bid);
+	}
+
+	@Override
+	public void onAsk(final Ask ask) {
+		record(ask);
+	}
+
+	@Override
+	public void onTradeTick(final TradeTick tradeTick) {
+		record(tradeTick);
+	}
+
+	private void record(final Object event) {
+		if (recorded) {
+			throw new IllegalStateException("Recording is finished");
+		}
+		events.add(event);
+	}
+}
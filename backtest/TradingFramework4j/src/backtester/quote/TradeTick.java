@@ -4,12 +4,16 @@ import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
+import backtester.common.FixedPoint;
+
 public class TradeTick {
     private static final String DELIMITER = ",";
+    private static final long NO_FIXED_POINT_PRICE = Long.MIN_VALUE;
     private final String symbol;
     private final int size;
     private final BigDecimal price;
     private final Date timestamp;
+    private long fixedPointPrice = NO_FIXED_POINT_PRICE;
 
     public TradeTick(final String symbol, final int size, final BigDecimal price, final Date timestamp) {
         this.symbol = symbol;
@@ -36,6 +40,16 @@ public class TradeTick {
         return price;
     }
 
+    /**
+     * @return the price in FixedPoint units, converted on the first call and cached
+     */
+    public long getFixedPointPrice() {
+        if (fixedPointPrice == NO_FIXED_POINT_PRICE) {
+            fixedPointPrice = FixedPoint.fromBigDecimal(price);
+        }
+        return fixedPointPrice;
+    }
+
     public Date getTimestamp() {
         return timestamp;
     }
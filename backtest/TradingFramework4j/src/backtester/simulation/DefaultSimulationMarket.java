@@ -2,13 +2,14 @@ package backtester.simulation;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Random;
 
+import backtester.common.LongObjectHashMap;
 import backtester.common.SimpleLogger;
 import backtester.quote.Ask;
 import backtester.quote.Bid;
@@ -30,6 +31,7 @@ import backtester.trade.TradeListener;
 import backtester.trade.TradeType;
 import backtester.trade.TradingException;
 import backtester.trade.TransactionCost;
+import backtester.update.UpdateBus;
 
 public class DefaultSimulationMarket extends Observable implements SimulationMarket {
 	private static final double EQUAL_PRICE_FILL_PROBABILITY = .5;
@@ -38,10 +40,16 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 
 	private final SimpleLogger _log = SimpleLogger.getLogger(DefaultSimulationMarket.class);
 	private final QuoteBook quoteBook = new QuoteBook();
-	private final HashMap<ClOrdId, SimulationOrderId> clOrdIdToOrderIdMap = new HashMap<ClOrdId, SimulationOrderId>();
-	private AtomicLong currentNumericOrderId = new AtomicLong();
+	// Keyed by the numeric SimulationClOrdId, so neither a lookup nor a put allocates
+	private final LongObjectHashMap<SimulationOrderId> clOrdIdToOrderIdMap = new LongObjectHashMap<SimulationOrderId>();
+	private long firstNumericOrderId = 0;
+	private long currentNumericOrderId = 0;
 
-	private final MarketTime marketTime = MarketTime.getInstance();
+	private final SimulationContext simulationContext;
+	private final MarketTime marketTime;
+	private final TimerService timerService;
+	private final Random random;
+	private boolean advancesMarketTime;
 
 	// QuoteListener and tradeListener are never null so we don't need null checks everywhere
 	private QuoteListener quoteListener = new DummyQuoteListener();
@@ -50,19 +58,31 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 	private boolean longSaleValidationEnabled = true;
 	private int currentPosition = 0;
 
-	private boolean hasAnyObservers;
+	private final UpdateBus updateBus = new UpdateBus(this);
 
 	public DefaultSimulationMarket(final DefaultSimulationMarket market) {
+		this(market, new SimulationContext());
+	}
+
+	public DefaultSimulationMarket(final DefaultSimulationMarket market, final SimulationContext simulationContext) {
+		this.simulationContext = simulationContext;
+		marketTime = simulationContext.getMarketTime();
+		timerService = simulationContext.getTimerService();
+		random = simulationContext.getRandom();
 		if (null != market) {
 			currentPosition = market.getPosition();
 		}
 	}
 
 	private SimulationOrderId lookupOrderId(final ClOrdId clOrdId) throws TradingException {
-		if (!clOrdIdToOrderIdMap.containsKey(clOrdId)) {
+		if (!(clOrdId instanceof SimulationClOrdId)) {
+			throw new TradingException("ClOrdId is not a SimulationClOrdId");
+		}
+		final SimulationOrderId orderId = clOrdIdToOrderIdMap.get(((SimulationClOrdId) clOrdId).getNumericId());
+		if (orderId == null) {
 			throw new TradingException("No OrderId found for specified clOrdId");
 		}
-		return clOrdIdToOrderIdMap.get(clOrdId);
+		return orderId;
 	}
 
 	@Override
@@ -86,22 +106,27 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 	}
 
 	private void internalCancelOrder(final BookEntry bookEntryToCancel) {
-		final BookEntry synthesizedCancelBookEntry;
+		addBookEntryToQuoteBookAndSendCallback(createCancelBookEntry(bookEntryToCancel));
+		clOrdIdToOrderIdMap.remove(((SimulationClOrdId) bookEntryToCancel.getClOrdId()).getNumericId());
+	}
+
+	private BookEntry createCancelBookEntry(final BookEntry bookEntryToCancel) {
 		if (bookEntryToCancel instanceof Bid) {
-			synthesizedCancelBookEntry = BookEntryFactory.createCancelBid(bookEntryToCancel.getClOrdId(), bookEntryToCancel.getSymbol(),
-					bookEntryToCancel.getId(), marketTime.getTime());
-		} else {
-			synthesizedCancelBookEntry = BookEntryFactory.createCancelAsk(bookEntryToCancel.getClOrdId(), bookEntryToCancel.getSymbol(),
-					bookEntryToCancel.getId(), marketTime.getTime());
+			return BookEntryFactory.createCancelBid(bookEntryToCancel.getClOrdId(), bookEntryToCancel.getSymbol(), bookEntryToCancel.getId(),
+					marketTime.getTime());
 		}
-		addBookEntryToQuoteBookAndSendCallback(synthesizedCancelBookEntry);
-		clOrdIdToOrderIdMap.remove(bookEntryToCancel.getClOrdId());
+		return BookEntryFactory.createCancelAsk(bookEntryToCancel.getClOrdId(), bookEntryToCancel.getSymbol(), bookEntryToCancel.getId(),
+				marketTime.getTime());
 	}
 
 	@Override
 	public void cancelReplaceOrder(final ClOrdId clOrdId, final ClOrdId origClOrdId, final OrderSpecification newOrder) {
 		try {
-		    if (newOrder.getQuantity() <= 0) {
+		    if (!(clOrdId instanceof SimulationClOrdId)) {
+		        _log.warn("Cancel-replace rejected, clOrdId must be a SimulationClOrdId: " + clOrdId);
+		        tradeListener.onCancelReplaceRejected(clOrdId);
+		        return;
+		    } else if (newOrder.getQuantity() <= 0) {
 		        _log.warn("Cancel-replace rejected, order quantity must be greater than zero.");
 		        tradeListener.onCancelReplaceRejected(clOrdId);
 		        return;
@@ -172,7 +197,11 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 
 	@Override
 	public void placeOrder(final ClOrdId clOrdId, final OrderSpecification newOrder) {
-	    if (longSaleValidationEnabled && newOrder.getTradeType().equals(TradeType.SELL) && newOrder.getQuantity() > currentPosition) {
+	    if (!(clOrdId instanceof SimulationClOrdId)) {
+	        _log.warn("New order rejected, clOrdId must be a SimulationClOrdId: " + clOrdId);
+	        tradeListener.onNewOrderRejected(clOrdId);
+	        return;
+	    } else if (longSaleValidationEnabled && newOrder.getTradeType().equals(TradeType.SELL) && newOrder.getQuantity() > currentPosition) {
 	        _log.warn("New order rejected, long sale causes short position (must short instead): " + clOrdId);
 	        tradeListener.onNewOrderRejected(clOrdId);
 	        return;
@@ -196,7 +225,7 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 	}
 
 	private void internalPlaceOrder(final ClOrdId clOrdId, final OrderSpecification newOrder, Date timestamp, Date insertionTimestamp) {
-		final SimulationOrderId orderId = new SimulationOrderId(currentNumericOrderId.getAndIncrement());
+		final SimulationOrderId orderId = new SimulationOrderId(currentNumericOrderId++);
 
 		BookEntry simulatedBookEntry = BookEntryFactory.createSimulatedBookEntry(newOrder.getBookEntryClass(), clOrdId, orderId,
 				newOrder.getSymbol(), newOrder.getQuantity() - newOrder.getAmountFilled(), newOrder.getPrice(), timestamp,
@@ -207,7 +236,7 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 		if (simulatedBookEntry.getRemainingQuantity() > 0) {
 			// Add to the book now because liquidity removal check is done and the book entry has positive remaining quantity.
 			addBookEntryToQuoteBookAndSendCallback(simulatedBookEntry);
-			clOrdIdToOrderIdMap.put(clOrdId, orderId);
+			clOrdIdToOrderIdMap.put(((SimulationClOrdId) clOrdId).getNumericId(), orderId);
 		}
 	}
 
@@ -222,6 +251,9 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 
 	@Override
 	public void onAsk(final Ask ask) {
+		if (advancesMarketTime) {
+			advanceMarketTime(ask.getTimestamp());
+		}
 		addBookEntryToQuoteBookAndSendCallback(ask);
 
 		bidOrAskFillCheck(ask);
@@ -229,6 +261,9 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 
 	@Override
 	public void onBid(final Bid bid) {
+		if (advancesMarketTime) {
+			advanceMarketTime(bid.getTimestamp());
+		}
 		addBookEntryToQuoteBookAndSendCallback(bid);
 
 		bidOrAskFillCheck(bid);
@@ -256,7 +291,7 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 			if (compareResult < 0) {
 				fillQuantity = createOnTickFill(receivedBookEntry, opposingTopOfBookBookEntry, directionMultiplier, true);
 			} else if (compareResult == 0) {
-				if (Math.random() >= EQUAL_PRICE_FILL_PROBABILITY) {
+				if (random.nextDouble() >= EQUAL_PRICE_FILL_PROBABILITY) {
 					fillQuantity = createOnTickFill(receivedBookEntry, opposingTopOfBookBookEntry, directionMultiplier, true);
 					// System.out.println("probability fill occurred " + ++yes);
 				} else {
@@ -273,6 +308,9 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 
 	@Override
 	public void onTradeTick(final TradeTick tradeTick) {
+		if (advancesMarketTime) {
+			advanceMarketTime(tradeTick.getTimestamp());
+		}
 		quoteBook.addTradeTick(tradeTick);
 
 		updateUI(tradeTick);
@@ -305,7 +343,7 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 			if (compareResult < 0) {
 				fillQuantity = createOnTickFill(lastReceivedBookEntry, topOfBookBookEntry, directionMultiplier, false);
 			} else if (compareResult == 0) {
-				if (Math.random() >= EQUAL_PRICE_FILL_PROBABILITY) {
+				if (random.nextDouble() >= EQUAL_PRICE_FILL_PROBABILITY) {
 					fillQuantity = createOnTickFill(lastReceivedBookEntry, topOfBookBookEntry, directionMultiplier, false);
 				}
 			} else if (compareResult > 0) {
@@ -457,10 +495,13 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 	}
 
 	@Override
-	public synchronized void addObserver(final Observer o) {
-		super.addObserver(o);
+	public void addObserver(final Observer o) {
+		updateBus.addObserver(o);
+	}
 
-		hasAnyObservers = true;
+	@Override
+	public void deleteObserver(final Observer o) {
+		updateBus.deleteObserver(o);
 	}
 
 	private void addBookEntryToQuoteBookAndSendCallback(final BookEntry bookEntryToAdd) {
@@ -477,27 +518,36 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 
 	@Override
 	public void cancelAll(final ClOrdId clOrdId) {
-		final List<ClOrdId> clOrdIdsToCancel = new ArrayList<ClOrdId>();
-
-		for (final Ask askToBeCanceled : quoteBook.getSimulatedAsks()) {
-			clOrdIdsToCancel.add(askToBeCanceled.getClOrdId());
-		}
-
-		for (final Bid bidToBeCanceled : quoteBook.getSimulatedBids()) {
-			clOrdIdsToCancel.add(bidToBeCanceled.getClOrdId());
-		}
+		tradeListener.onCancelAllAccepted(clOrdId, Collections.unmodifiableList(removeAllOrders()));
+	}
 
-		// updateUI(OrderChangedUpdate.createCancelAllOrdersUpdate());
+	/**
+	 * Removes every resting simulated order without acknowledging it to the trade listener.
+	 *
+	 * @return copies of the removed book entries
+	 */
+	List<BookEntry> removeAllOrders() {
+		// Every resting simulated order is removed at once, no synthesized cancel book entries are sent to the quote listener.
+		final List<BookEntry> removedBookEntries = quoteBook.removeAllSimulatedBookEntries();
+		clOrdIdToOrderIdMap.clear();
 
-		for (final ClOrdId clordIdToCancel : clOrdIdsToCancel) {
-			cancelOrder(clOrdId, clordIdToCancel);
+		// The strategy gets copies, the removed book entries stay with the market
+		final List<BookEntry> canceledBookEntries = new ArrayList<BookEntry>(removedBookEntries.size());
+		for (final BookEntry removedBookEntry : removedBookEntries) {
+			canceledBookEntries.add(BookEntryFactory.createSimulatedBookEntry(removedBookEntry.getClass(), removedBookEntry.getClOrdId(),
+					removedBookEntry.getId(), removedBookEntry.getSymbol(), removedBookEntry.getRemainingQuantity(), removedBookEntry.getPrice(),
+					removedBookEntry.getTimestamp(), removedBookEntry.getOriginalQuantity()));
+			// Observers see the same cancel book entry as for a single cancel
+			if (updateBus.hasObservers()) {
+				updateUI(createCancelBookEntry(removedBookEntry));
+			}
 		}
+		return canceledBookEntries;
 	}
 
 	private void updateUI(final Object arg) {
-		if (hasAnyObservers) {
-			setChanged();
-			notifyObservers(arg);
+		if (updateBus.hasObservers()) {
+			updateBus.publish(arg);
 		}
 	}
 
@@ -517,17 +567,54 @@ public class DefaultSimulationMarket extends Observable implements SimulationMar
 
 	@Override
 	public void reset() {
+		if (advancesMarketTime) {
+			marketTime.resetTime();
+			timerService.clear();
+		}
 		quoteBook.reset();
 		clOrdIdToOrderIdMap.clear();
-		currentNumericOrderId = new AtomicLong();
+		currentNumericOrderId = firstNumericOrderId;
+	}
+
+	@Override
+	public SimulationContext getSimulationContext() {
+		return simulationContext;
 	}
 
 	@Override
 	public void setCurrentTime(final Date newTime) {
+		if (advancesMarketTime) {
+			advanceMarketTime(newTime);
+			return;
+		}
 		// Do nothing -- don't use this! Proxy keeps track of time, not market!
 		_log.warn("setCurrentTime(...) in DefaultSimulationMarket should not be used.");
 	}
 
+	/**
+	 * Fires the timers that are due before the clock moves on, like the latency proxy does.
+	 */
+	private void advanceMarketTime(final Date newTime) {
+		timerService.advanceTo(newTime.getTime());
+		marketTime.setTime(newTime);
+	}
+
+	/**
+	 * Numbers this market's orders from firstNumericOrderId on, so markets whose orders end up side by side, like the shards of a
+	 * ShardedSimulationMarket, never hand out the same SimulationOrderId.
+	 */
+	void setFirstNumericOrderId(final long firstNumericOrderId) {
+		this.firstNumericOrderId = firstNumericOrderId;
+		currentNumericOrderId = firstNumericOrderId;
+	}
+
+	/**
+	 * Only set when there is no latency proxy in front of the market, otherwise the proxy keeps track of time.
+	 */
+	void setAdvancesMarketTime(final boolean advancesMarketTime) {
+		this.advancesMarketTime = advancesMarketTime;
+	}
+
 	@Override
 	public void initialize() {
 
@@ -0,0 +1,94 @@
+package backtester.simulation;
+
+import java.util.Random;
+import java.util.TimeZone;
+
+import backtester.simulation.latency.LatencyDistribution;
+import backtester.simulation.latency.LatencyEventType;
+import backtester.simulation.latency.LatencyTarget;
+
+/**
+ * Latency profile that samples every latency from a distribution chosen by target kind, event type and time of day.  The day is
+ * split into buckets of equal length, and calls without a distribution have no latency.
+ *
+ * Sampling uses the Random of the simulation context, so a context with a seed gives the same latencies on every run.
+ */
+public class EmpiricalLatencyProfile implements LatencyProfile {
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+	private static final int EVENT_TYPE_COUNT = LatencyEventType.values().length;
+
+	private final Random random;
+	private final MarketTime marketTime;
+	private final long bucketMillis;
+	private final int bucketCount;
+	private final TimeZone timeZone = TimeZone.getDefault();
+	private final LatencyDistribution[] distributions;
+
+	/**
+	 * @param bucketMillis
+	 *            length of each time of day bucket, must divide a day evenly
+	 */
+	public EmpiricalLatencyProfile(final SimulationContext simulationContext, final long bucketMillis) {
+		if (bucketMillis <= 0 || MILLIS_PER_DAY % bucketMillis != 0) {
+			throw new IllegalArgumentException("Bucket length must divide a day evenly: " + bucketMillis);
+		}
+		random = simulationContext.getRandom();
+		marketTime = simulationContext.getMarketTime();
+		this.bucketMillis = bucketMillis;
+		bucketCount = (int) (MILLIS_PER_DAY / bucketMillis);
+		distributions = new LatencyDistribution[LatencyTarget.values().length * EVENT_TYPE_COUNT * bucketCount];
+	}
+
+	/**
+	 * Uses the distribution for the whole day.
+	 */
+	public void setDistribution(final LatencyTarget target, final LatencyEventType eventType, final LatencyDistribution distribution) {
+		setDistribution(target, eventType, 0, MILLIS_PER_DAY, distribution);
+	}
+
+	/**
+	 * Uses the distribution for every bucket that starts in [fromTimeOfDayMillis, toTimeOfDayMillis).  Times of day are in the
+	 * default time zone, the same as BookEntry.getMilliTimestamp().
+	 */
+	public void setDistribution(final LatencyTarget target, final LatencyEventType eventType, final long fromTimeOfDayMillis,
+			final long toTimeOfDayMillis, final LatencyDistribution distribution) {
+		if (fromTimeOfDayMillis < 0 || toTimeOfDayMillis > MILLIS_PER_DAY || fromTimeOfDayMillis > toTimeOfDayMillis) {
+			throw new IllegalArgumentException("Invalid time of day range: " + fromTimeOfDayMillis + " to " + toTimeOfDayMillis);
+		}
+		final int offset = (target.ordinal() * EVENT_TYPE_COUNT + eventType.ordinal()) * bucketCount;
+		for (int bucket = (int) ((fromTimeOfDayMillis + bucketMillis - 1) / bucketMillis); bucket * bucketMillis < toTimeOfDayMillis; bucket++) {
+			distributions[offset + bucket] = distribution;
+		}
+	}
+
+	@Override
+	public long getLatency(final LatencyTarget target, final LatencyEventType eventType, final long currentTimeMillis) {
+		final long localMillis = currentTimeMillis + timeZone.getOffset(currentTimeMillis);
+		final long timeOfDayMillis = ((localMillis % MILLIS_PER_DAY) + MILLIS_PER_DAY) % MILLIS_PER_DAY;
+		final int bucket = (int) (timeOfDayMillis / bucketMillis);
+
+		final LatencyDistribution distribution = distributions[(target.ordinal() * EVENT_TYPE_COUNT + eventType.ordinal()) * bucketCount
+				+ bucket];
+		return distribution == null ? 0 : distribution.sample(random);
+	}
+
+	@Override
+	public boolean isZeroLatency() {
+		for (final LatencyDistribution distribution : distributions) {
+			if (distribution != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public long getLatency(final Object targetObject, final String methodName) {
+		final LatencyTarget target = LatencyTarget.of(targetObject);
+		final LatencyEventType eventType = LatencyEventType.fromMethodName(methodName);
+		if (target == null || eventType == null) {
+			return 0;
+		}
+		return getLatency(target, eventType, marketTime.getTimeMillis());
+	}
+}
@@ -1,5 +1,22 @@
 package backtester.simulation;
 
+import backtester.simulation.latency.LatencyEventType;
+import backtester.simulation.latency.LatencyTarget;
+
 public interface LatencyProfile {
 	long getLatency(Object targetObject, String methodName);
+
+	/**
+	 * Same as getLatency(Object, String) with the target and method already resolved.  This is called for every delayed call, so
+	 * implementations should not allocate.
+	 *
+	 * @param currentTimeMillis
+	 *            market time the call is made at, for profiles that vary during the day
+	 */
+	long getLatency(LatencyTarget target, LatencyEventType eventType, long currentTimeMillis);
+
+	/**
+	 * @return true if every latency is zero, the market is then used without a latency proxy
+	 */
+	boolean isZeroLatency();
 }
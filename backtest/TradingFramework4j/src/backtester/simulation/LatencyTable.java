@@ -0,0 +1,89 @@
+package backtester.simulation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import backtester.simulation.latency.LatencyEventType;
+import backtester.simulation.latency.LatencyTarget;
+
+/**
+ * Latency profile backed by a flat array indexed by target kind and event type.  Latencies that are not set are zero.
+ *
+ * Tables can be loaded from a properties file with one "target.methodName=millis" entry per latency, for example:
+ *
+ * <pre>
+ * market.placeOrder=5
+ * quoteListener.onBid=4
+ * tradeListener.onFill=4
+ * </pre>
+ */
+public class LatencyTable implements LatencyProfile {
+	private static final int EVENT_TYPE_COUNT = LatencyEventType.values().length;
+
+	private final long[] latencies = new long[LatencyTarget.values().length * EVENT_TYPE_COUNT];
+
+	public void setLatency(final LatencyTarget target, final LatencyEventType eventType, final long latency) {
+		if (latency < 0) {
+			throw new IllegalArgumentException("Latency can't be negative: " + target + " " + eventType + " " + latency);
+		}
+		latencies[target.ordinal() * EVENT_TYPE_COUNT + eventType.ordinal()] = latency;
+	}
+
+	@Override
+	public long getLatency(final LatencyTarget target, final LatencyEventType eventType, final long currentTimeMillis) {
+		return latencies[target.ordinal() * EVENT_TYPE_COUNT + eventType.ordinal()];
+	}
+
+	@Override
+	public boolean isZeroLatency() {
+		for (final long latency : latencies) {
+			if (latency != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public long getLatency(final Object targetObject, final String methodName) {
+		final LatencyTarget target = LatencyTarget.of(targetObject);
+		final LatencyEventType eventType = LatencyEventType.fromMethodName(methodName);
+		if (target == null || eventType == null) {
+			return 0;
+		}
+		return getLatency(target, eventType, 0);
+	}
+
+	public static LatencyTable load(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			final Properties properties = new Properties();
+			properties.load(in);
+			return fromProperties(properties);
+		} finally {
+			in.close();
+		}
+	}
+
+	public static LatencyTable fromProperties(final Properties properties) {
+		final LatencyTable table = new LatencyTable();
+		for (final String key : properties.stringPropertyNames()) {
+			final int separatorIndex = key.indexOf('.');
+			final LatencyTarget target = separatorIndex < 0 ? null : LatencyTarget.fromConfigName(key.substring(0, separatorIndex));
+			final LatencyEventType eventType = separatorIndex < 0 ? null : LatencyEventType.fromMethodName(key.substring(separatorIndex + 1));
+			if (target == null || eventType == null) {
+				throw new IllegalArgumentException("Unknown latency: " + key);
+			}
+
+			try {
+				table.setLatency(target, eventType, Long.parseLong(properties.getProperty(key).trim()));
+			} catch (final NumberFormatException e) {
+				throw new IllegalArgumentException("Latency for " + key + " is not a number: " + properties.getProperty(key));
+			}
+		}
+		return table;
+	}
+}
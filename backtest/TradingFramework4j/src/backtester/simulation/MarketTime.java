@@ -6,30 +6,48 @@ import backtester.common.SimpleLogger;
 
 public class MarketTime {
 	private static final SimpleLogger _log = SimpleLogger.getLogger(MarketTime.class);
-	private static final MarketTime instance = new MarketTime();
+	private long currentTimeMillis;
+	// Created lazily from currentTimeMillis, so advancing the clock in milliseconds does not allocate
 	private Date currentTime;
 
 	public MarketTime() {
-		currentTime = new Date(0);
+		resetTime();
 	}
 
 	public void setTime(final Date _date) {
-		if (currentTime.compareTo(_date) == 1) {
-			_log.warn("Time went backwards at time " + _date.getTime() + ", not updating simulator time.");
-			return;
+		if (setTime(_date.getTime())) {
+			currentTime = _date;
 		}
-		currentTime = _date;
+	}
+
+	/**
+	 * @return false if the time went backwards and was not updated
+	 */
+	public boolean setTime(final long timeMillis) {
+		if (currentTimeMillis > timeMillis) {
+			_log.warn("Time went backwards at time " + timeMillis + ", not updating simulator time.");
+			return false;
+		}
+		if (currentTimeMillis != timeMillis) {
+			currentTimeMillis = timeMillis;
+			currentTime = null;
+		}
+		return true;
 	}
 
 	public void resetTime() {
-		currentTime = new Date(0);
+		currentTimeMillis = 0;
+		currentTime = null;
 	}
 
 	public Date getTime() {
+		if (currentTime == null) {
+			currentTime = new Date(currentTimeMillis);
+		}
 		return currentTime;
 	}
 
-	public static MarketTime getInstance() {
-		return instance;
+	public long getTimeMillis() {
+		return currentTimeMillis;
 	}
 }
@@ -0,0 +1,523 @@
+package backtester.simulation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Observer;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import backtester.common.SimpleLogger;
+import backtester.quote.Ask;
+import backtester.quote.Bid;
+import backtester.quote.BookEntry;
+import backtester.quote.DummyQuoteListener;
+import backtester.quote.QuoteListener;
+import backtester.quote.TradeTick;
+import backtester.strategy.DoNothingStrategy;
+import backtester.strategy.StrategyConfiguration;
+import backtester.trade.ClOrdId;
+import backtester.trade.Fill;
+import backtester.trade.OrderSpecification;
+import backtester.trade.TradeListener;
+import backtester.trade.TransactionCost;
+
+/**
+ * Simulation market that keeps one {@link DefaultSimulationMarket} (book, clOrdId map and position) per symbol. Quotes are routed by
+ * the symbol of the book entry or trade tick, new orders by {@link OrderSpecification#getSymbol()} and cancels by the shard that owns
+ * the original order.
+ *
+ * Shards do not share any matching state, so a batch of events that ends at a common time barrier can be replayed on several cores
+ * with {@link #onEventBatch(List, ExecutorService)}.  Each shard numbers its orders in its own range of order ids, so order ids stay
+ * unique across symbols and do not depend on how the shards were scheduled.
+ *
+ * Each shard has a simulation context of its own, so a shard replaying a batch on a worker thread only writes to its own clock.  A
+ * shard's clock follows the clock of this market's context whenever it is called from the simulation thread, and the timestamps of
+ * the events while it replays a batch.  Timers and statistics live in this market's context and are only used from the simulation
+ * thread.
+ */
+public class ShardedSimulationMarket implements SimulationMarket {
+	// Order ids of shard i start at i << ORDER_ID_SHARD_SHIFT
+	private static final int ORDER_ID_SHARD_SHIFT = 40;
+
+	private final SimpleLogger _log = SimpleLogger.getLogger(ShardedSimulationMarket.class);
+
+	// Looked up without locking on every event, shards are only created while holding the lock
+	private final Map<String, DefaultSimulationMarket> shards = new ConcurrentHashMap<String, DefaultSimulationMarket>();
+	private final List<String> symbols = new CopyOnWriteArrayList<String>();
+	private final Map<ClOrdId, DefaultSimulationMarket> clOrdIdToShardMap = new ConcurrentHashMap<ClOrdId, DefaultSimulationMarket>();
+	private final Map<String, QuoteListener> symbolQuoteListeners = new ConcurrentHashMap<String, QuoteListener>();
+	private final Map<String, TradeListener> symbolTradeListeners = new ConcurrentHashMap<String, TradeListener>();
+	private final List<Observer> observers = new ArrayList<Observer>();
+	private final SimulationContext simulationContext;
+
+	// QuoteListener and tradeListener are never null so we don't need null checks everywhere
+	private QuoteListener quoteListener = new DummyQuoteListener();
+	private TradeListener tradeListener = new DoNothingStrategy(null, StrategyConfiguration.emptyStrategyConfiguration());
+
+	private boolean longSaleValidationEnabled = true;
+
+	public ShardedSimulationMarket() {
+		this(new SimulationContext());
+	}
+
+	/**
+	 * Each shard gets its own clock and a random number generator seeded from the context's.
+	 */
+	public ShardedSimulationMarket(final SimulationContext simulationContext) {
+		this.simulationContext = simulationContext;
+	}
+
+	/**
+	 * Returns the shard for the symbol, creating it the first time the symbol is seen.
+	 */
+	DefaultSimulationMarket getShard(final String symbol) {
+		final DefaultSimulationMarket shard = shards.get(symbol);
+		return shard != null ? shard : createShard(symbol);
+	}
+
+	private synchronized DefaultSimulationMarket createShard(final String symbol) {
+		DefaultSimulationMarket shard = shards.get(symbol);
+		if (shard == null) {
+			shard = new DefaultSimulationMarket(null, new SimulationContext(new Random(simulationContext.getRandom().nextLong())));
+			shard.setFirstNumericOrderId((long) symbols.size() << ORDER_ID_SHARD_SHIFT);
+			shard.setLongSaleValidationEnabled(longSaleValidationEnabled);
+			shard.setQuoteListener(new ShardQuoteListener(symbol));
+			shard.setTradeListener(new ShardTradeListener(shard, symbol));
+			for (final Observer o : observers) {
+				shard.addObserver(o);
+			}
+			symbols.add(symbol);
+			shards.put(symbol, shard);
+		}
+		return shard;
+	}
+
+	/**
+	 * @return the shard for the symbol, with its clock caught up with this market's clock
+	 */
+	private DefaultSimulationMarket getSyncedShard(final String symbol) {
+		final DefaultSimulationMarket shard = getShard(symbol);
+		advanceShardTime(shard, simulationContext.getMarketTime().getTimeMillis());
+		return shard;
+	}
+
+	/**
+	 * Moves the shard's clock forward, never back: after a batch a shard can be ahead of this market's clock.
+	 */
+	private static void advanceShardTime(final DefaultSimulationMarket shard, final long timeMillis) {
+		final MarketTime shardTime = shard.getSimulationContext().getMarketTime();
+		if (timeMillis > shardTime.getTimeMillis()) {
+			shardTime.setTime(timeMillis);
+		}
+	}
+
+	/**
+	 * @return the symbols in the order their shards were created
+	 */
+	public Collection<String> getSymbols() {
+		return new ArrayList<String>(symbols);
+	}
+
+	/**
+	 * Sets a quote listener that only receives callbacks for one symbol. Symbols without their own listener use the listener passed to
+	 * {@link #setQuoteListener(QuoteListener)}.
+	 */
+	public void setQuoteListener(final String symbol, final QuoteListener quoteListener) {
+		if (quoteListener == null) {
+			throw new IllegalArgumentException("QuoteListener can't be null");
+		}
+		symbolQuoteListeners.put(symbol, quoteListener);
+	}
+
+	/**
+	 * Sets a trade listener that only receives callbacks for one symbol. Symbols without their own listener use the listener passed to
+	 * {@link #setTradeListener(TradeListener)}.
+	 */
+	public void setTradeListener(final String symbol, final TradeListener tradeListener) {
+		if (tradeListener == null) {
+			throw new IllegalArgumentException("TradeListener can't be null");
+		}
+		symbolTradeListeners.put(symbol, tradeListener);
+	}
+
+	@Override
+	public void setQuoteListener(final QuoteListener quoteListener) {
+		if (quoteListener == null) {
+			throw new IllegalArgumentException("QuoteListener can't be null");
+		}
+		this.quoteListener = quoteListener;
+	}
+
+	@Override
+	public void setTradeListener(final TradeListener tradeListener) {
+		if (tradeListener == null) {
+			throw new IllegalArgumentException("TradeListener can't be null");
+		}
+		this.tradeListener = tradeListener;
+	}
+
+	private QuoteListener getQuoteListener(final String symbol) {
+		final QuoteListener symbolQuoteListener = symbolQuoteListeners.get(symbol);
+		return symbolQuoteListener != null ? symbolQuoteListener : quoteListener;
+	}
+
+	private TradeListener getTradeListener(final String symbol) {
+		final TradeListener symbolTradeListener = symbolTradeListeners.get(symbol);
+		return symbolTradeListener != null ? symbolTradeListener : tradeListener;
+	}
+
+	///----------------Trade Destination Methods----------------///
+	@Override
+	public void placeOrder(final ClOrdId clOrdId, final OrderSpecification newOrder) {
+		final DefaultSimulationMarket shard = getSyncedShard(newOrder.getSymbol());
+		clOrdIdToShardMap.put(clOrdId, shard);
+		shard.placeOrder(clOrdId, newOrder);
+	}
+
+	@Override
+	public void cancelOrder(final ClOrdId clOrdId, final ClOrdId origClOrdId) {
+		final DefaultSimulationMarket shard = clOrdIdToShardMap.get(origClOrdId);
+		if (shard == null) {
+			_log.warn("Cancel rejected, unknown clOrdId: " + clOrdId);
+			tradeListener.onCancelRejected(clOrdId);
+			return;
+		}
+		advanceShardTime(shard, simulationContext.getMarketTime().getTimeMillis());
+		shard.cancelOrder(clOrdId, origClOrdId);
+	}
+
+	@Override
+	public void cancelReplaceOrder(final ClOrdId clOrdId, final ClOrdId origClOrdId, final OrderSpecification newOrder) {
+		final DefaultSimulationMarket shard = clOrdIdToShardMap.get(origClOrdId);
+		if (shard == null) {
+			_log.warn("Cancel-replace rejected, unknown clOrdId: " + clOrdId);
+			getTradeListener(newOrder.getSymbol()).onCancelReplaceRejected(clOrdId);
+			return;
+		}
+		advanceShardTime(shard, simulationContext.getMarketTime().getTimeMillis());
+		shard.cancelReplaceOrder(clOrdId, origClOrdId, newOrder);
+	}
+
+	/**
+	 * Acknowledges the request once per trade listener that had orders canceled, with all of that listener's canceled orders, or once
+	 * to the default trade listener if nothing was canceled.
+	 */
+	@Override
+	public void cancelAll(final ClOrdId clOrdId) {
+		final Map<TradeListener, List<BookEntry>> canceledByListener = new IdentityHashMap<TradeListener, List<BookEntry>>();
+		final List<TradeListener> listeners = new ArrayList<TradeListener>();
+		for (final String symbol : getSymbols()) {
+			final List<BookEntry> canceledBookEntries = getSyncedShard(symbol).removeAllOrders();
+			if (canceledBookEntries.isEmpty()) {
+				continue;
+			}
+			for (final BookEntry canceledBookEntry : canceledBookEntries) {
+				clOrdIdToShardMap.remove(canceledBookEntry.getClOrdId());
+			}
+			final TradeListener listener = getTradeListener(symbol);
+			List<BookEntry> listenerBookEntries = canceledByListener.get(listener);
+			if (listenerBookEntries == null) {
+				listenerBookEntries = new ArrayList<BookEntry>();
+				canceledByListener.put(listener, listenerBookEntries);
+				listeners.add(listener);
+			}
+			listenerBookEntries.addAll(canceledBookEntries);
+		}
+
+		if (listeners.isEmpty()) {
+			tradeListener.onCancelAllAccepted(clOrdId, Collections.<BookEntry> emptyList());
+			return;
+		}
+		for (final TradeListener listener : listeners) {
+			listener.onCancelAllAccepted(clOrdId, Collections.unmodifiableList(canceledByListener.get(listener)));
+		}
+	}
+
+	@Override
+	public void start() {
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	///----------------Quote Listener Methods----------------///
+	@Override
+	public void onBid(final Bid bid) {
+		getSyncedShard(bid.getSymbol()).onBid(bid);
+	}
+
+	@Override
+	public void onAsk(final Ask ask) {
+		getSyncedShard(ask.getSymbol()).onAsk(ask);
+	}
+
+	@Override
+	public void onTradeTick(final TradeTick tradeTick) {
+		getSyncedShard(tradeTick.getSymbol()).onTradeTick(tradeTick);
+	}
+
+	/**
+	 * Replays a batch of {@link Bid}, {@link Ask} and {@link TradeTick} events with one task per symbol and returns once every shard has
+	 * processed its part of the batch. Events of one symbol are replayed in the order they appear in the batch; events of different
+	 * symbols are not ordered relative to each other, so the batch should end at a time barrier (all events up to some timestamp).
+	 *
+	 * Listeners that are shared between symbols are called from several threads at once and must be thread-safe. Use the per-symbol
+	 * listeners to keep a strategy on a single thread. This market's clock is not advanced while a batch runs, each shard's clock
+	 * follows the timestamps of its own events, so fills are stamped with the time of the event that caused them.
+	 */
+	public void onEventBatch(final List<?> events, final ExecutorService executor) {
+		final Map<DefaultSimulationMarket, List<Object>> eventsByShard = new LinkedHashMap<DefaultSimulationMarket, List<Object>>();
+		for (final Object event : events) {
+			final DefaultSimulationMarket shard = getSyncedShard(getSymbol(event));
+			List<Object> shardEvents = eventsByShard.get(shard);
+			if (shardEvents == null) {
+				shardEvents = new ArrayList<Object>();
+				eventsByShard.put(shard, shardEvents);
+			}
+			shardEvents.add(event);
+		}
+
+		final List<Future<Void>> futures = new ArrayList<Future<Void>>(eventsByShard.size());
+		for (final Map.Entry<DefaultSimulationMarket, List<Object>> entry : eventsByShard.entrySet()) {
+			futures.add(executor.submit(new ShardReplayTask(entry.getKey(), entry.getValue())));
+		}
+
+		// Time barrier: every shard must be done with the batch before the next one is handed out.
+		for (final Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	private static Date getTimestamp(final Object event) {
+		if (event instanceof BookEntry) {
+			return ((BookEntry) event).getTimestamp();
+		}
+		return ((TradeTick) event).getTimestamp();
+	}
+
+	private static String getSymbol(final Object event) {
+		if (event instanceof BookEntry) {
+			return ((BookEntry) event).getSymbol();
+		} else if (event instanceof TradeTick) {
+			return ((TradeTick) event).getSymbol();
+		}
+		throw new IllegalArgumentException("Unknown event type " + event + ".");
+	}
+
+	private static void dispatch(final SimulationMarket shard, final Object event) {
+		if (event instanceof Ask) {
+			shard.onAsk((Ask) event);
+		} else if (event instanceof Bid) {
+			shard.onBid((Bid) event);
+		} else {
+			shard.onTradeTick((TradeTick) event);
+		}
+	}
+
+	///----------------Simulation Market Methods----------------///
+	@Override
+	public synchronized void addObserver(final Observer o) {
+		observers.add(o);
+		for (final DefaultSimulationMarket shard : shards.values()) {
+			shard.addObserver(o);
+		}
+	}
+
+	@Override
+	public void setCurrentTime(final Date newTime) {
+		// Do nothing -- the latency proxy keeps track of time, not the market.
+	}
+
+	@Override
+	public SimulationContext getSimulationContext() {
+		return simulationContext;
+	}
+
+	@Override
+	public synchronized void reset() {
+		for (final DefaultSimulationMarket shard : shards.values()) {
+			shard.reset();
+			shard.getSimulationContext().getMarketTime().resetTime();
+		}
+		clOrdIdToShardMap.clear();
+	}
+
+	//package visible for unit tests only
+	int getPosition(final String symbol) {
+		final DefaultSimulationMarket shard = shards.get(symbol);
+		return shard == null ? 0 : shard.getPosition();
+	}
+
+	synchronized void setLongSaleValidationEnabled(final boolean longSaleValidationEnabled) {
+		this.longSaleValidationEnabled = longSaleValidationEnabled;
+		for (final DefaultSimulationMarket shard : shards.values()) {
+			shard.setLongSaleValidationEnabled(longSaleValidationEnabled);
+		}
+	}
+
+	@Override
+	public void initialize() {
+	}
+
+	@Override
+	public void plugMemoryLeak() {
+	}
+
+	@Override
+	public void playForTime(final long howLongToPlayFor, final long delay) {
+	}
+
+	@Override
+	public void playNumberOfLines(final long numberOfLinesToPlay, final long delay) {
+	}
+
+	@Override
+	public void playAll() {
+	}
+
+	/**
+	 * Replays one shard's part of a batch.  The task is the only one touching the shard and its clock until the batch is done.
+	 */
+	private static class ShardReplayTask implements Callable<Void> {
+		private final DefaultSimulationMarket shard;
+		private final List<Object> events;
+
+		public ShardReplayTask(final DefaultSimulationMarket shard, final List<Object> events) {
+			this.shard = shard;
+			this.events = events;
+		}
+
+		@Override
+		public Void call() {
+			for (final Object event : events) {
+				final Date timestamp = getTimestamp(event);
+				if (timestamp != null) {
+					advanceShardTime(shard, timestamp.getTime());
+				}
+				dispatch(shard, event);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Forwards shard quote callbacks to the listener registered for the shard's symbol.
+	 */
+	private class ShardQuoteListener implements QuoteListener {
+		private final String symbol;
+
+		public ShardQuoteListener(final String symbol) {
+			this.symbol = symbol;
+		}
+
+		@Override
+		public void onBid(final Bid bid) {
+			getQuoteListener(symbol).onBid(bid);
+		}
+
+		@Override
+		public void onAsk(final Ask ask) {
+			getQuoteListener(symbol).onAsk(ask);
+		}
+
+		@Override
+		public void onTradeTick(final TradeTick tradeTick) {
+			getQuoteListener(symbol).onTradeTick(tradeTick);
+		}
+	}
+
+	/**
+	 * Forwards shard trade callbacks to the listener registered for the shard's symbol and keeps the clOrdId routing table in sync
+	 * with the orders the shard still knows about.
+	 */
+	private class ShardTradeListener implements TradeListener {
+		private final DefaultSimulationMarket shard;
+		private final String symbol;
+
+		public ShardTradeListener(final DefaultSimulationMarket shard, final String symbol) {
+			this.shard = shard;
+			this.symbol = symbol;
+		}
+
+		@Override
+		public void onFill(final Fill fill) {
+			if (fill.getRemaining() == 0) {
+				clOrdIdToShardMap.remove(fill.getClOrdId());
+			}
+			getTradeListener(symbol).onFill(fill);
+		}
+
+		@Override
+		public void onTransactionCost(final TransactionCost cost) {
+			getTradeListener(symbol).onTransactionCost(cost);
+		}
+
+		@Override
+		public void onCancelReplaceAccepted(final ClOrdId clOrdId, final OrderSpecification order, final ClOrdId origClOrdId) {
+			clOrdIdToShardMap.remove(origClOrdId);
+			clOrdIdToShardMap.put(clOrdId, shard);
+			getTradeListener(symbol).onCancelReplaceAccepted(clOrdId, order, origClOrdId);
+		}
+
+		@Override
+		public void onCancelReplaceRejected(final ClOrdId clOrdId) {
+			getTradeListener(symbol).onCancelReplaceRejected(clOrdId);
+		}
+
+		@Override
+		public void onCancelAccepted(final ClOrdId clOrdId, final ClOrdId origClOrdId) {
+			clOrdIdToShardMap.remove(origClOrdId);
+			getTradeListener(symbol).onCancelAccepted(clOrdId, origClOrdId);
+		}
+
+		@Override
+		public void onCancelRejected(final ClOrdId clOrdId) {
+			getTradeListener(symbol).onCancelRejected(clOrdId);
+		}
+
+		@Override
+		public void onCancelAllAccepted(final ClOrdId clOrdId, final List<BookEntry> canceledBookEntries) {
+			for (final BookEntry canceledBookEntry : canceledBookEntries) {
+				clOrdIdToShardMap.remove(canceledBookEntry.getClOrdId());
+			}
+			getTradeListener(symbol).onCancelAllAccepted(clOrdId, canceledBookEntries);
+		}
+
+		@Override
+		public void onNewOrderAccepted(final ClOrdId clOrdId, final OrderSpecification order) {
+			getTradeListener(symbol).onNewOrderAccepted(clOrdId, order);
+		}
+
+		@Override
+		public void onNewOrderRejected(final ClOrdId clOrdId) {
+			clOrdIdToShardMap.remove(clOrdId);
+			getTradeListener(symbol).onNewOrderRejected(clOrdId);
+		}
+	}
+}
@@ -3,18 +3,21 @@ package backtester.simulation;
 import backtester.trade.ClOrdId;
 
 public class SimulationClOrdId extends ClOrdId implements Comparable<SimulationClOrdId> {
+	private final long numericId;
 
-	private final Long numericId;
-
-	public SimulationClOrdId(final Long numericId) {
+	public SimulationClOrdId(final long numericId) {
 		this.numericId = numericId;
 	}
 
+	public long getNumericId() {
+		return numericId;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((numericId == null) ? 0 : numericId.hashCode());
+		result = prime * result + (int) (numericId ^ (numericId >>> 32));
 		return result;
 	}
 
@@ -30,14 +33,7 @@ public class SimulationClOrdId extends ClOrdId implements Comparable<SimulationC
 			return false;
 		}
 		final SimulationClOrdId other = (SimulationClOrdId) obj;
-		if (numericId == null) {
-			if (other.numericId != null) {
-				return false;
-			}
-		} else if (!numericId.equals(other.numericId)) {
-			return false;
-		}
-		return true;
+		return numericId == other.numericId;
 	}
 
 	@Override
@@ -47,7 +43,7 @@ public class SimulationClOrdId extends ClOrdId implements Comparable<SimulationC
 
 	@Override
 	public int compareTo(final SimulationClOrdId o) {
-		return numericId.compareTo(o.numericId); // Lower numericId first
+		return numericId < o.numericId ? -1 : (numericId == o.numericId ? 0 : 1); // Lower numericId first
 	}
 
 }
@@ -0,0 +1,70 @@
+package backtester.simulation;
+
+import java.util.Random;
+
+import backtester.common.StatisticsRegistry;
+
+/**
+ * State shared by everything taking part in one simulation: the market clock and its timers, the statistics registry and the random
+ * number generator used for simulated fills and latencies.  Simulations with separate contexts can run side by side in one JVM.
+ *
+ * The market, latency proxy and strategies of a simulation get the context from the SimulationMarket, see
+ * StrategyConfiguration.getSimulationContext().
+ */
+public class SimulationContext {
+	private final MarketTime marketTime;
+	private final TimerService timerService;
+	private final StatisticsRegistry statisticsRegistry;
+	private final Random random;
+
+	public SimulationContext() {
+		this(new Random());
+	}
+
+	/**
+	 * Creates a context whose random number generator is seeded, so runs over the same data are repeatable.
+	 */
+	public SimulationContext(final long seed) {
+		this(new Random(seed));
+	}
+
+	public SimulationContext(final Random random) {
+		this(new MarketTime(), new StatisticsRegistry(), random);
+	}
+
+	private SimulationContext(final MarketTime marketTime, final StatisticsRegistry statisticsRegistry, final Random random) {
+		this(marketTime, new TimerService(marketTime), statisticsRegistry, random);
+	}
+
+	private SimulationContext(final MarketTime marketTime, final TimerService timerService, final StatisticsRegistry statisticsRegistry,
+			final Random random) {
+		this.marketTime = marketTime;
+		this.timerService = timerService;
+		this.statisticsRegistry = statisticsRegistry;
+		this.random = random;
+	}
+
+	/**
+	 * Creates a context that shares this context's clock, timers and statistics but has its own random number generator, seeded from this
+	 * context's.  Use it for work that runs on another thread so the random sequence each part sees does not depend on scheduling.
+	 */
+	public SimulationContext createChildContext() {
+		return new SimulationContext(marketTime, timerService, statisticsRegistry, new Random(random.nextLong()));
+	}
+
+	public MarketTime getMarketTime() {
+		return marketTime;
+	}
+
+	public TimerService getTimerService() {
+		return timerService;
+	}
+
+	public StatisticsRegistry getStatisticsRegistry() {
+		return statisticsRegistry;
+	}
+
+	public Random getRandom() {
+		return random;
+	}
+}
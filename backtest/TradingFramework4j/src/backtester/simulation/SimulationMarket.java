@@ -17,4 +17,6 @@ public interface SimulationMarket extends TradeDestination, QuoteListener, Quote
 	void addObserver(Observer o);
 
 	void reset();
+
+	SimulationContext getSimulationContext();
 }
\ No newline at end of file
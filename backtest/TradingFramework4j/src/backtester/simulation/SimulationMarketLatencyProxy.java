@@ -1,114 +1,283 @@
 package backtester.simulation;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.Date;
-import java.util.PriorityQueue;
+import java.util.List;
+import java.util.Observer;
 
+import backtester.quote.Ask;
+import backtester.quote.Bid;
 import backtester.quote.BookEntry;
 import backtester.quote.QuoteListener;
 import backtester.quote.TradeTick;
-import backtester.simulation.latency.DelayedMethodInvocation;
+import backtester.simulation.latency.DelayedEventQueue;
+import backtester.simulation.latency.LatencyEventType;
+import backtester.simulation.latency.LatencyTarget;
+import backtester.trade.ClOrdId;
+import backtester.trade.Fill;
+import backtester.trade.OrderSpecification;
 import backtester.trade.TradeListener;
+import backtester.trade.TransactionCost;
 
-public class SimulationMarketLatencyProxy implements InvocationHandler {
+/**
+ * Sits between the strategy and the market and delays order entry calls and market callbacks by the latencies in the
+ * LatencyProfile.  Quotes received by the market advance the market time and run every delayed call that is due.
+ */
+public class SimulationMarketLatencyProxy implements SimulationMarket {
 	private final SimulationMarket simulationMarket;
 	private TradeListener tradeListener;
 	private QuoteListener quoteListener;
-	private final MarketTime marketTime = MarketTime.getInstance();
+	// Resolved once when the target is set, so the profile is only asked for array lookups per call
+	private final LatencyTarget marketLatencyTarget;
+	private LatencyTarget tradeListenerLatencyTarget;
+	private LatencyTarget quoteListenerLatencyTarget;
+	private final MarketTime marketTime;
+	private final TimerService timerService;
 	private final LatencyProfile latencyProfile;
 
-	private final PriorityQueue<DelayedMethodInvocation> invocationQueue = new PriorityQueue<DelayedMethodInvocation>();
+	private final DelayedEventQueue eventQueue = new DelayedEventQueue();
 
 	private SimulationMarketLatencyProxy(final SimulationMarket simulationMarket, final LatencyProfile latencyProfile) {
 		this.simulationMarket = simulationMarket;
 		this.latencyProfile = latencyProfile;
+		marketTime = simulationMarket.getSimulationContext().getMarketTime();
+		timerService = simulationMarket.getSimulationContext().getTimerService();
+		marketLatencyTarget = LatencyTarget.of(simulationMarket);
 
-		//I can set these proxies now or lazily in invoke...
-		final QuoteListener quoteProxy = (QuoteListener) Proxy.newProxyInstance(this.getClass().getClassLoader(),
-				new Class[] { QuoteListener.class }, this);
-		simulationMarket.setQuoteListener(quoteProxy);
-
-		final TradeListener tradeProxy = (TradeListener) Proxy.newProxyInstance(this.getClass().getClassLoader(),
-				new Class[] { TradeListener.class }, this);
-		simulationMarket.setTradeListener(tradeProxy);
+		simulationMarket.setQuoteListener(new LatentQuoteListener());
+		simulationMarket.setTradeListener(new LatentTradeListener());
 	}
 
+	/**
+	 * Wraps the market in a latency proxy.  A DefaultSimulationMarket with a zero latency profile is returned as is and keeps the
+	 * market time itself, so quotes and callbacks skip the proxy altogether.
+	 */
 	public static SimulationMarket createSimulationMarketLatencyProxy(final SimulationMarket simulationMarket,
 			final LatencyProfile latencyProfile) {
-		return (SimulationMarket) Proxy.newProxyInstance(simulationMarket.getClass().getClassLoader(), simulationMarket.getClass()
-				.getInterfaces(), new SimulationMarketLatencyProxy(simulationMarket, latencyProfile));
-	}
-
-	@Override
-	public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
-		final String methodName = method.getName();
-
-		Object targetObject;
-
-		if (proxy instanceof SimulationMarket) {
-			if ("onAsk".equals(methodName) || "onBid".equals(methodName)) {
-				setCurrentTime(((BookEntry) args[0]).getTimestamp());
-			} else if ("onTradeTick".equals(methodName)) {
-				setCurrentTime(((TradeTick) args[0]).getTimestamp());
-			} else if ("setCurrentTime".equals(methodName)) {
-				setCurrentTime((Date) args[0]);
-			} else if ("setQuoteListener".equals(methodName)) {
-				this.quoteListener = (QuoteListener) args[0];
-				return null;
-			} else if ("setTradeListener".equals(methodName)) {
-				this.tradeListener = (TradeListener) args[0];
-				return null;
-			} else if ("reset".equals(methodName)) {
-				reset();
-			}
-
-			targetObject = simulationMarket;
-		} else if (proxy instanceof QuoteListener) {
-			targetObject = quoteListener;
-		} else {
-			targetObject = tradeListener;
+		if (latencyProfile.isZeroLatency() && simulationMarket instanceof DefaultSimulationMarket) {
+			((DefaultSimulationMarket) simulationMarket).setAdvancesMarketTime(true);
+			return simulationMarket;
 		}
+		return new SimulationMarketLatencyProxy(simulationMarket, latencyProfile);
+	}
 
+	private void dispatch(final LatencyEventType eventType, final LatencyTarget latencyTarget, final Object target, final Object firstArg,
+			final Object secondArg, final Object thirdArg) {
 		//Not sure if this null check is correct, it prevents callbacks from being queued even
 		//if the listener is set before latency expires
-		if (targetObject != null) {
-			final long latency = latencyProfile.getLatency(targetObject, methodName);
-			if (latency != 0) {
-				final Date executionTime = addLatencyToCurrentTime(latency);
-				invocationQueue.add(new DelayedMethodInvocation(executionTime, targetObject, method, args));
+		if (target == null) {
+			return;
+		}
+
+		final long currentTimeMillis = marketTime.getTimeMillis();
+		final long latency = latencyTarget == null ? 0 : latencyProfile.getLatency(latencyTarget, eventType, currentTimeMillis);
+		if (latency != 0) {
+			eventQueue.add(currentTimeMillis + latency, eventType, target, firstArg, secondArg, thirdArg);
+		} else {
+			DelayedEventQueue.dispatch(eventType, target, firstArg, secondArg, thirdArg);
+		}
+	}
+
+	/**
+	 * Dispatches the delayed events and fires the timers that are due, in time order, then moves the clock to the new time.  A delayed
+	 * event and a timer with the same time are dispatched event first.
+	 */
+	private void advanceTime(final Date newTime) {
+		final long newTimeMillis = newTime.getTime();
+		while (true) {
+			final boolean eventDue = !eventQueue.isEmpty() && eventQueue.peekExecutionTime() <= newTimeMillis;
+			final boolean timerDue = !timerService.isEmpty() && timerService.getNextDeadline() <= newTimeMillis;
+			if (eventDue && (!timerDue || eventQueue.peekExecutionTime() <= timerService.getNextDeadline())) {
+				marketTime.setTime(eventQueue.peekExecutionTime());
+				eventQueue.dispatchNext();
+			} else if (timerDue) {
+				timerService.fireNext();
 			} else {
-				try {
-					final Object invocationReturnValue = method.invoke(targetObject, args);
-					return invocationReturnValue;
-				} catch (final InvocationTargetException e) {
-					throw e.getTargetException();
-				} catch (final Exception e) {
-					throw new RuntimeException(e.getCause());
-				}
+				break;
 			}
 		}
+		marketTime.setTime(newTime);
+	}
 
-		return null;
+	///----------------Trade Destination Methods----------------///
+	@Override
+	public void placeOrder(final ClOrdId clOrdId, final OrderSpecification newOrder) {
+		dispatch(LatencyEventType.PLACE_ORDER, marketLatencyTarget, simulationMarket, clOrdId, newOrder, null);
 	}
 
-	private Date addLatencyToCurrentTime(final Long latency) {
-		return new Date(marketTime.getTime().getTime() + latency);
+	@Override
+	public void cancelOrder(final ClOrdId clOrdId, final ClOrdId origClOrdId) {
+		dispatch(LatencyEventType.CANCEL_ORDER, marketLatencyTarget, simulationMarket, clOrdId, origClOrdId, null);
 	}
 
-	private void setCurrentTime(final Date newTime) {
-		while (!invocationQueue.isEmpty() && !invocationQueue.peek().getExecutionTime().after(newTime)) {
-			final DelayedMethodInvocation methodInvocation = invocationQueue.remove();
-			marketTime.setTime(methodInvocation.getExecutionTime());
-			methodInvocation.invoke();
-		}
-		marketTime.setTime(newTime);
+	@Override
+	public void cancelReplaceOrder(final ClOrdId clOrdId, final ClOrdId origClOrdId, final OrderSpecification newOrder) {
+		dispatch(LatencyEventType.CANCEL_REPLACE_ORDER, marketLatencyTarget, simulationMarket, clOrdId, origClOrdId, newOrder);
+	}
+
+	@Override
+	public void cancelAll(final ClOrdId clOrdId) {
+		dispatch(LatencyEventType.CANCEL_ALL, marketLatencyTarget, simulationMarket, clOrdId, null, null);
+	}
+
+	@Override
+	public void setTradeListener(final TradeListener tradeListener) {
+		this.tradeListener = tradeListener;
+		tradeListenerLatencyTarget = LatencyTarget.of(tradeListener);
 	}
 
-	private void reset() {
+	@Override
+	public void start() {
+		simulationMarket.start();
+	}
+
+	@Override
+	public void stop() {
+		simulationMarket.stop();
+	}
+
+	///----------------Quote Listener Methods----------------///
+	@Override
+	public void onBid(final Bid bid) {
+		advanceTime(bid.getTimestamp());
+		dispatch(LatencyEventType.ON_BID, marketLatencyTarget, simulationMarket, bid, null, null);
+	}
+
+	@Override
+	public void onAsk(final Ask ask) {
+		advanceTime(ask.getTimestamp());
+		dispatch(LatencyEventType.ON_ASK, marketLatencyTarget, simulationMarket, ask, null, null);
+	}
+
+	@Override
+	public void onTradeTick(final TradeTick tradeTick) {
+		advanceTime(tradeTick.getTimestamp());
+		dispatch(LatencyEventType.ON_TRADE_TICK, marketLatencyTarget, simulationMarket, tradeTick, null, null);
+	}
+
+	///----------------Quote Source Methods----------------///
+	@Override
+	public void setQuoteListener(final QuoteListener quoteListener) {
+		this.quoteListener = quoteListener;
+		quoteListenerLatencyTarget = LatencyTarget.of(quoteListener);
+	}
+
+	@Override
+	public void addObserver(final Observer o) {
+		simulationMarket.addObserver(o);
+	}
+
+	@Override
+	public void initialize() {
+		simulationMarket.initialize();
+	}
+
+	@Override
+	public void playForTime(final long howLongToPlayFor, final long delay) {
+		simulationMarket.playForTime(howLongToPlayFor, delay);
+	}
+
+	@Override
+	public void playNumberOfLines(final long numberOfLinesToPlay, final long delay) {
+		simulationMarket.playNumberOfLines(numberOfLinesToPlay, delay);
+	}
+
+	@Override
+	public void playAll() {
+		simulationMarket.playAll();
+	}
+
+	@Override
+	public void plugMemoryLeak() {
+		simulationMarket.plugMemoryLeak();
+	}
+
+	///----------------Simulation Market Methods----------------///
+	@Override
+	public void setCurrentTime(final Date newTime) {
+		advanceTime(newTime);
+		simulationMarket.setCurrentTime(newTime);
+	}
+
+	@Override
+	public SimulationContext getSimulationContext() {
+		return simulationMarket.getSimulationContext();
+	}
+
+	@Override
+	public void reset() {
 		marketTime.resetTime();
-		invocationQueue.clear();
+		eventQueue.clear();
+		timerService.clear();
+		simulationMarket.reset();
+	}
+
+	/**
+	 * Handed to the market as its quote listener so quote callbacks are delayed on their way to the strategy.
+	 */
+	private class LatentQuoteListener implements QuoteListener {
+		@Override
+		public void onBid(final Bid bid) {
+			dispatch(LatencyEventType.ON_BID, quoteListenerLatencyTarget, quoteListener, bid, null, null);
+		}
+
+		@Override
+		public void onAsk(final Ask ask) {
+			dispatch(LatencyEventType.ON_ASK, quoteListenerLatencyTarget, quoteListener, ask, null, null);
+		}
+
+		@Override
+		public void onTradeTick(final TradeTick tradeTick) {
+			dispatch(LatencyEventType.ON_TRADE_TICK, quoteListenerLatencyTarget, quoteListener, tradeTick, null, null);
+		}
+	}
+
+	/**
+	 * Handed to the market as its trade listener so trade callbacks are delayed on their way to the strategy.
+	 */
+	private class LatentTradeListener implements TradeListener {
+		@Override
+		public void onFill(final Fill fill) {
+			dispatch(LatencyEventType.ON_FILL, tradeListenerLatencyTarget, tradeListener, fill, null, null);
+		}
+
+		@Override
+		public void onTransactionCost(final TransactionCost cost) {
+			dispatch(LatencyEventType.ON_TRANSACTION_COST, tradeListenerLatencyTarget, tradeListener, cost, null, null);
+		}
+
+		@Override
+		public void onCancelReplaceAccepted(final ClOrdId clOrdId, final OrderSpecification order, final ClOrdId origClOrdId) {
+			dispatch(LatencyEventType.ON_CANCEL_REPLACE_ACCEPTED, tradeListenerLatencyTarget, tradeListener, clOrdId, order, origClOrdId);
+		}
+
+		@Override
+		public void onCancelReplaceRejected(final ClOrdId clOrdId) {
+			dispatch(LatencyEventType.ON_CANCEL_REPLACE_REJECTED, tradeListenerLatencyTarget, tradeListener, clOrdId, null, null);
+		}
+
+		@Override
+		public void onCancelAccepted(final ClOrdId clOrdId, final ClOrdId origClOrdId) {
+			dispatch(LatencyEventType.ON_CANCEL_ACCEPTED, tradeListenerLatencyTarget, tradeListener, clOrdId, origClOrdId, null);
+		}
+
+		@Override
+		public void onCancelRejected(final ClOrdId clOrdId) {
+			dispatch(LatencyEventType.ON_CANCEL_REJECTED, tradeListenerLatencyTarget, tradeListener, clOrdId, null, null);
+		}
+
+		@Override
+		public void onCancelAllAccepted(final ClOrdId clOrdId, final List<BookEntry> canceledBookEntries) {
+			dispatch(LatencyEventType.ON_CANCEL_ALL_ACCEPTED, tradeListenerLatencyTarget, tradeListener, clOrdId, canceledBookEntries, null);
+		}
+
+		@Override
+		public void onNewOrderAccepted(final ClOrdId clOrdId, final OrderSpecification order) {
+			dispatch(LatencyEventType.ON_NEW_ORDER_ACCEPTED, tradeListenerLatencyTarget, tradeListener, clOrdId, order, null);
+		}
+
+		@Override
+		public void onNewOrderRejected(final ClOrdId clOrdId) {
+			dispatch(LatencyEventType.ON_NEW_ORDER_REJECTED, tradeListenerLatencyTarget, tradeListener, clOrdId, null, null);
+		}
 	}
 }
@@ -3,17 +3,21 @@ package backtester.simulation;
 import backtester.trade.OrderId;
 
 public class SimulationOrderId extends OrderId implements Comparable<SimulationOrderId> {
-	private final Long numericId;
+	private final long numericId;
 
-	public SimulationOrderId(final Long numericId) {
+	public SimulationOrderId(final long numericId) {
 		this.numericId = numericId;
 	}
 
+	public long getNumericId() {
+		return numericId;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((numericId == null) ? 0 : numericId.hashCode());
+		result = prime * result + (int) (numericId ^ (numericId >>> 32));
 		return result;
 	}
 
@@ -29,14 +33,7 @@ public class SimulationOrderId extends OrderId implements Comparable<SimulationO
 			return false;
 		}
 		final SimulationOrderId other = (SimulationOrderId) obj;
-		if (numericId == null) {
-			if (other.numericId != null) {
-				return false;
-			}
-		} else if (!numericId.equals(other.numericId)) {
-			return false;
-		}
-		return true;
+		return numericId == other.numericId;
 	}
 
 	@Override
@@ -46,7 +43,7 @@ public class SimulationOrderId extends OrderId implements Comparable<SimulationO
 
 	@Override
 	public int compareTo(final SimulationOrderId o) {
-		return numericId.compareTo(o.numericId); // Lower numericId first
+		return numericId < o.numericId ? -1 : (numericId == o.numericId ? 0 : 1); // Lower numericId first
 	}
 
 }
@@ -0,0 +1,9 @@
+package backtester.simulation;
+
+public interface TimerListener {
+	/**
+	 * @param timeMillis
+	 *            the market time when the timer fired, its deadline unless it was scheduled in the past
+	 */
+	void onTimer(long timerId, long timeMillis);
+}
@@ -0,0 +1,224 @@
+package backtester.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Timers on the simulated clock.  Whatever advances the market time (the latency proxy, or a market without one) fires every timer
+ * whose deadline it passes, in deadline order and with the market time set to the deadline, before it delivers the event that moved
+ * the clock.  A timer scheduled in the past fires at the next time advance.  This class is not thread-safe.
+ *
+ * Timers live in preallocated slots that are reused once the timer fired or was canceled, and the heap only holds slot numbers, like
+ * DelayedEventQueue, so scheduling, canceling and firing timers does not allocate unless the service has to grow.  A timer id is its
+ * slot number plus the number of times the slot was reused before, so cancel() finds the timer without a lookup table and an id of a
+ * timer that is gone never matches the timer reusing its slot.
+ */
+public class TimerService {
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final int SLOT_BITS = 32;
+	private static final long SLOT_MASK = (1L << SLOT_BITS) - 1;
+
+	private final MarketTime marketTime;
+
+	// Slot storage
+	private long[] deadlines;
+	private long[] orderings;
+	private long[] timerIds;
+	private int[] generations;
+	private TimerListener[] listeners;
+	// Position of each slot in the heap, -1 for a free slot
+	private int[] heapIndexes;
+
+	// Binary heap of slot numbers, and a stack of the slots not in use
+	private int[] heap;
+	private int size;
+	private int[] freeSlots;
+	private int freeSlotCount;
+
+	private long nextOrdering;
+
+	public TimerService(final MarketTime marketTime) {
+		this.marketTime = marketTime;
+		deadlines = new long[DEFAULT_CAPACITY];
+		orderings = new long[DEFAULT_CAPACITY];
+		timerIds = new long[DEFAULT_CAPACITY];
+		generations = new int[DEFAULT_CAPACITY];
+		listeners = new TimerListener[DEFAULT_CAPACITY];
+		heapIndexes = new int[DEFAULT_CAPACITY];
+		Arrays.fill(heapIndexes, -1);
+		heap = new int[DEFAULT_CAPACITY];
+		freeSlots = new int[DEFAULT_CAPACITY];
+		for (int i = 0; i < DEFAULT_CAPACITY; i++) {
+			freeSlots[i] = DEFAULT_CAPACITY - 1 - i;
+		}
+		freeSlotCount = DEFAULT_CAPACITY;
+	}
+
+	private void grow() {
+		final int oldCapacity = heap.length;
+		final int newCapacity = oldCapacity << 1;
+		deadlines = Arrays.copyOf(deadlines, newCapacity);
+		orderings = Arrays.copyOf(orderings, newCapacity);
+		timerIds = Arrays.copyOf(timerIds, newCapacity);
+		generations = Arrays.copyOf(generations, newCapacity);
+		listeners = Arrays.copyOf(listeners, newCapacity);
+		heapIndexes = Arrays.copyOf(heapIndexes, newCapacity);
+		Arrays.fill(heapIndexes, oldCapacity, newCapacity, -1);
+		heap = Arrays.copyOf(heap, newCapacity);
+		// Every old slot is in use, so only the new ones are free.
+		freeSlots = new int[newCapacity];
+		for (int i = newCapacity - 1; i >= oldCapacity; i--) {
+			freeSlots[freeSlotCount++] = i;
+		}
+	}
+
+	/**
+	 * @return the id of the timer, passed to the listener and to cancel()
+	 */
+	public long scheduleAt(final long timeMillis, final TimerListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("TimerListener can't be null");
+		}
+		if (freeSlotCount == 0) {
+			grow();
+		}
+		final int slot = freeSlots[--freeSlotCount];
+		deadlines[slot] = timeMillis;
+		orderings[slot] = nextOrdering++;
+		timerIds[slot] = ((generations[slot] & 0x7fffffffL) << SLOT_BITS) | slot;
+		listeners[slot] = listener;
+
+		heap[size] = slot;
+		heapIndexes[slot] = size;
+		siftUp(size++);
+		return timerIds[slot];
+	}
+
+	public long scheduleAfter(final long delayMillis, final TimerListener listener) {
+		return scheduleAt(marketTime.getTimeMillis() + delayMillis, listener);
+	}
+
+	/**
+	 * @return false if the timer already fired or was canceled
+	 */
+	public boolean cancel(final long timerId) {
+		final long slotNumber = timerId & SLOT_MASK;
+		if (timerId < 0 || slotNumber >= heap.length) {
+			return false;
+		}
+		final int slot = (int) slotNumber;
+		if (heapIndexes[slot] < 0 || timerIds[slot] != timerId) {
+			return false;
+		}
+		removeAt(heapIndexes[slot]);
+		releaseSlot(slot);
+		return true;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the deadline of the next timer, Long.MAX_VALUE if there is none
+	 */
+	public long getNextDeadline() {
+		return size == 0 ? Long.MAX_VALUE : deadlines[heap[0]];
+	}
+
+	/**
+	 * Removes the next timer, moves the market time up to its deadline and calls its listener.  The listener may schedule more timers.
+	 */
+	public void fireNext() {
+		final int slot = heap[0];
+		final long timerId = timerIds[slot];
+		final long deadline = deadlines[slot];
+		final TimerListener listener = listeners[slot];
+		removeAt(0);
+		releaseSlot(slot);
+
+		if (deadline > marketTime.getTimeMillis()) {
+			marketTime.setTime(deadline);
+		}
+		listener.onTimer(timerId, marketTime.getTimeMillis());
+	}
+
+	/**
+	 * Fires every timer with a deadline at or before the time.  The caller sets the market time to the new time afterwards.
+	 */
+	public void advanceTo(final long timeMillis) {
+		while (size > 0 && deadlines[heap[0]] <= timeMillis) {
+			fireNext();
+		}
+	}
+
+	public void clear() {
+		while (size > 0) {
+			releaseSlot(heap[--size]);
+		}
+	}
+
+	private void releaseSlot(final int slot) {
+		listeners[slot] = null;
+		heapIndexes[slot] = -1;
+		generations[slot]++;
+		freeSlots[freeSlotCount++] = slot;
+	}
+
+	/**
+	 * Takes the slot at the heap index out of the heap, the slot itself is still in use.
+	 */
+	private void removeAt(final int index) {
+		final int last = heap[--size];
+		if (index == size) {
+			return;
+		}
+		heap[index] = last;
+		heapIndexes[last] = index;
+		siftDown(index);
+		if (heap[index] == last) {
+			siftUp(index);
+		}
+	}
+
+	// Earliest deadline first, timers with the same deadline in the order they were scheduled
+	private boolean isBefore(final int slot, final int otherSlot) {
+		final long deadline = deadlines[slot];
+		final long otherDeadline = deadlines[otherSlot];
+		return deadline < otherDeadline || (deadline == otherDeadline && orderings[slot] < orderings[otherSlot]);
+	}
+
+	private void siftUp(int index) {
+		final int slot = heap[index];
+		while (index > 0) {
+			final int parent = (index - 1) >>> 1;
+			if (!isBefore(slot, heap[parent])) {
+				break;
+			}
+			heap[index] = heap[parent];
+			heapIndexes[heap[index]] = index;
+			index = parent;
+		}
+		heap[index] = slot;
+		heapIndexes[slot] = index;
+	}
+
+	private void siftDown(int index) {
+		final int slot = heap[index];
+		final int half = size >>> 1;
+		while (index < half) {
+			int child = (index << 1) + 1;
+			final int right = child + 1;
+			if (right < size && isBefore(heap[right], heap[child])) {
+				child = right;
+			}
+			if (!isBefore(heap[child], slot)) {
+				break;
+			}
+			heap[index] = heap[child];
+			heapIndexes[heap[index]] = index;
+			index = child;
+		}
+		heap[index] = slot;
+		heapIndexes[slot] = index;
+	}
+}
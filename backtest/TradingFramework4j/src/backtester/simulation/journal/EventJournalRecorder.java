@@ -0,0 +1,514 @@
+package backtester.simulation.journal;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Observer;
+
+import backtester.quote.Ask;
+import backtester.quote.Bid;
+import backtester.quote.BookEntry;
+import backtester.quote.QuoteListener;
+import backtester.quote.TradeTick;
+import backtester.simulation.MarketTime;
+import backtester.simulation.SimulationClOrdId;
+import backtester.simulation.SimulationContext;
+import backtester.simulation.SimulationMarket;
+import backtester.simulation.SimulationOrderId;
+import backtester.simulation.latency.LatencyEventType;
+import backtester.trade.ClOrdId;
+import backtester.trade.Fill;
+import backtester.trade.OrderId;
+import backtester.trade.OrderSpecification;
+import backtester.trade.TradeDestination;
+import backtester.trade.TradeListener;
+import backtester.trade.TransactionCost;
+
+/**
+ * Records every callback the market makes to a strategy to an append-only binary journal, then passes it on to the strategy.  Set
+ * the recorder as the quote and trade listener of the market in place of the strategy.  EventJournalReplayer plays the journal back
+ * into a strategy without a quote source or market.  The strategy's orders, cancels and replaces are recorded as well when it trades
+ * through the market returned by {@link #recordOrders(SimulationMarket)}.
+ *
+ * The journal starts with a magic number and a format version.  Version 1 journals have no order records.  Each event is the LatencyEventType ordinal as a byte, the market
+ * time in milliseconds and the arguments of the callback.  Symbols are written the first time they are seen and referred to by
+ * number after that.
+ */
+public class EventJournalRecorder implements QuoteListener, TradeListener, Closeable {
+	static final int MAGIC = 0x424a524e; // "BJRN"
+	static final int VERSION = 2;
+
+	static final long NULL_TIME = Long.MIN_VALUE;
+	static final long NULL_ID = Long.MIN_VALUE;
+	static final long UNKNOWN_ID = Long.MIN_VALUE + 1;
+
+	static final byte ID_NULL = 0;
+	static final byte ID_STRING = 1;
+	static final byte ID_ORDER_ID = 2;
+	static final byte ID_LONG = 3;
+
+	static final byte BOOK_ENTRY_BID = 0;
+	static final byte BOOK_ENTRY_ASK = 1;
+
+	private final DataOutputStream out;
+	private final MarketTime marketTime;
+	private QuoteListener quoteListener;
+	private TradeListener tradeListener;
+	private final Map<String, Integer> symbols = new HashMap<String, Integer>();
+
+	public EventJournalRecorder(final OutputStream out, final MarketTime marketTime, final QuoteListener quoteListener,
+			final TradeListener tradeListener) throws IOException {
+		this(out, marketTime);
+		setQuoteListener(quoteListener);
+		setTradeListener(tradeListener);
+	}
+
+	/**
+	 * The listeners must be set before the first callback, which lets the strategy be created with the market returned by
+	 * {@link #recordOrders(SimulationMarket)}.
+	 */
+	public EventJournalRecorder(final OutputStream out, final MarketTime marketTime) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.marketTime = marketTime;
+
+		this.out.writeInt(MAGIC);
+		this.out.writeInt(VERSION);
+	}
+
+	public void setQuoteListener(final QuoteListener quoteListener) {
+		if (quoteListener == null) {
+			throw new IllegalArgumentException("Quote listener can't be null");
+		}
+		this.quoteListener = quoteListener;
+	}
+
+	public void setTradeListener(final TradeListener tradeListener) {
+		if (tradeListener == null) {
+			throw new IllegalArgumentException("Trade listener can't be null");
+		}
+		this.tradeListener = tradeListener;
+	}
+
+	/**
+	 * @return a market that records every order, cancel, cancel/replace and cancel all before passing it on to the market, for the
+	 *         strategy to trade through
+	 */
+	public SimulationMarket recordOrders(final SimulationMarket market) {
+		if (market == null) {
+			throw new IllegalArgumentException("Market can't be null");
+		}
+		return new OrderRecordingMarket(market);
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	///----------------Quote Listener Methods----------------///
+	@Override
+	public void onBid(final Bid bid) {
+		try {
+			writeHeader(LatencyEventType.ON_BID);
+			writeBookEntryFields(bid);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		quoteListener.onBid(bid);
+	}
+
+	@Override
+	public void onAsk(final Ask ask) {
+		try {
+			writeHeader(LatencyEventType.ON_ASK);
+			writeBookEntryFields(ask);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		quoteListener.onAsk(ask);
+	}
+
+	@Override
+	public void onTradeTick(final TradeTick tradeTick) {
+		try {
+			writeHeader(LatencyEventType.ON_TRADE_TICK);
+			writeSymbol(tradeTick.getSymbol());
+			out.writeInt(tradeTick.getSize());
+			writePrice(tradeTick.getPrice());
+			writeDate(tradeTick.getTimestamp());
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		quoteListener.onTradeTick(tradeTick);
+	}
+
+	///----------------Trade Listener Methods----------------///
+	@Override
+	public void onFill(final Fill fill) {
+		try {
+			writeHeader(LatencyEventType.ON_FILL);
+			writeClOrdId(fill.getClOrdId());
+			writeOrderId(fill.getOrderId());
+			writeSymbol(fill.getSymbol());
+			out.writeInt(fill.getQuantity());
+			writePrice(fill.getPrice());
+			out.writeInt(fill.getRemaining());
+			writeDate(fill.getTimestamp());
+			out.writeByte(fill.getLiquidityFlag() == null ? -1 : fill.getLiquidityFlag().ordinal());
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		tradeListener.onFill(fill);
+	}
+
+	@Override
+	public void onTransactionCost(final TransactionCost transactionCost) {
+		try {
+			writeHeader(LatencyEventType.ON_TRANSACTION_COST);
+			writePrice(transactionCost.getCost());
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		tradeListener.onTransactionCost(transactionCost);
+	}
+
+	@Override
+	public void onCancelReplaceAccepted(final ClOrdId clOrdId, final OrderSpecification order, final ClOrdId origClOrdId) {
+		try {
+			writeHeader(LatencyEventType.ON_CANCEL_REPLACE_ACCEPTED);
+			writeClOrdId(clOrdId);
+			writeOrderSpecification(order);
+			writeClOrdId(origClOrdId);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		tradeListener.onCancelReplaceAccepted(clOrdId, order, origClOrdId);
+	}
+
+	@Override
+	public void onCancelReplaceRejected(final ClOrdId clOrdId) {
+		try {
+			writeHeader(LatencyEventType.ON_CANCEL_REPLACE_REJECTED);
+			writeClOrdId(clOrdId);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		tradeListener.onCancelReplaceRejected(clOrdId);
+	}
+
+	@Override
+	public void onCancelAccepted(final ClOrdId clOrdId, final ClOrdId origClOrdId) {
+		try {
+			writeHeader(LatencyEventType.ON_CANCEL_ACCEPTED);
+			writeClOrdId(clOrdId);
+			writeClOrdId(origClOrdId);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		tradeListener.onCancelAccepted(clOrdId, origClOrdId);
+	}
+
+	@Override
+	public void onCancelRejected(final ClOrdId clOrdId) {
+		try {
+			writeHeader(LatencyEventType.ON_CANCEL_REJECTED);
+			writeClOrdId(clOrdId);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		tradeListener.onCancelRejected(clOrdId);
+	}
+
+	@Override
+	public void onCancelAllAccepted(final ClOrdId clOrdId, final List<BookEntry> canceledBookEntries) {
+		try {
+			writeHeader(LatencyEventType.ON_CANCEL_ALL_ACCEPTED);
+			writeClOrdId(clOrdId);
+			out.writeInt(canceledBookEntries.size());
+			for (final BookEntry bookEntry : canceledBookEntries) {
+				out.writeByte(bookEntry instanceof Ask ? BOOK_ENTRY_ASK : BOOK_ENTRY_BID);
+				writeBookEntryFields(bookEntry);
+			}
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		tradeListener.onCancelAllAccepted(clOrdId, canceledBookEntries);
+	}
+
+	@Override
+	public void onNewOrderAccepted(final ClOrdId clOrdId, final OrderSpecification order) {
+		try {
+			writeHeader(LatencyEventType.ON_NEW_ORDER_ACCEPTED);
+			writeClOrdId(clOrdId);
+			writeOrderSpecification(order);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		tradeListener.onNewOrderAccepted(clOrdId, order);
+	}
+
+	@Override
+	public void onNewOrderRejected(final ClOrdId clOrdId) {
+		try {
+			writeHeader(LatencyEventType.ON_NEW_ORDER_REJECTED);
+			writeClOrdId(clOrdId);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		tradeListener.onNewOrderRejected(clOrdId);
+	}
+
+	///----------------Strategy->Market----------------///
+	private void recordPlaceOrder(final ClOrdId clOrdId, final OrderSpecification newOrder) {
+		try {
+			writeHeader(LatencyEventType.PLACE_ORDER);
+			writeClOrdId(clOrdId);
+			writeOrderSpecification(newOrder);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void recordCancelOrder(final ClOrdId clOrdId, final ClOrdId origClOrdId) {
+		try {
+			writeHeader(LatencyEventType.CANCEL_ORDER);
+			writeClOrdId(clOrdId);
+			writeClOrdId(origClOrdId);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void recordCancelReplaceOrder(final ClOrdId clOrdId, final ClOrdId origClOrdId, final OrderSpecification newOrder) {
+		try {
+			writeHeader(LatencyEventType.CANCEL_REPLACE_ORDER);
+			writeClOrdId(clOrdId);
+			writeClOrdId(origClOrdId);
+			writeOrderSpecification(newOrder);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void recordCancelAll(final ClOrdId clOrdId) {
+		try {
+			writeHeader(LatencyEventType.CANCEL_ALL);
+			writeClOrdId(clOrdId);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Records the strategy's calls to the trade destination and passes everything on to the market.  The market's simulation
+	 * context is shared, so the strategy keeps trading on the market's clock and timers.
+	 */
+	private class OrderRecordingMarket implements SimulationMarket {
+		private final SimulationMarket market;
+
+		OrderRecordingMarket(final SimulationMarket market) {
+			this.market = market;
+		}
+
+		@Override
+		public void placeOrder(final ClOrdId clOrdId, final OrderSpecification newOrder) {
+			recordPlaceOrder(clOrdId, newOrder);
+			market.placeOrder(clOrdId, newOrder);
+		}
+
+		@Override
+		public void cancelOrder(final ClOrdId clOrdId, final ClOrdId origClOrdId) {
+			recordCancelOrder(clOrdId, origClOrdId);
+			market.cancelOrder(clOrdId, origClOrdId);
+		}
+
+		@Override
+		public void cancelReplaceOrder(final ClOrdId clOrdId, final ClOrdId origClOrdId, final OrderSpecification newOrder) {
+			recordCancelReplaceOrder(clOrdId, origClOrdId, newOrder);
+			market.cancelReplaceOrder(clOrdId, origClOrdId, newOrder);
+		}
+
+		@Override
+		public void cancelAll(final ClOrdId clOrdId) {
+			recordCancelAll(clOrdId);
+			market.cancelAll(clOrdId);
+		}
+
+		@Override
+		public void setTradeListener(final TradeListener tradeListener) {
+			market.setTradeListener(tradeListener);
+		}
+
+		@Override
+		public void start() {
+			market.start();
+		}
+
+		@Override
+		public void stop() {
+			market.stop();
+		}
+
+		@Override
+		public void onBid(final Bid bid) {
+			market.onBid(bid);
+		}
+
+		@Override
+		public void onAsk(final Ask ask) {
+			market.onAsk(ask);
+		}
+
+		@Override
+		public void onTradeTick(final TradeTick tradeTick) {
+			market.onTradeTick(tradeTick);
+		}
+
+		@Override
+		public void setQuoteListener(final QuoteListener quoteListener) {
+			market.setQuoteListener(quoteListener);
+		}
+
+		@Override
+		public void addObserver(final Observer o) {
+			market.addObserver(o);
+		}
+
+		@Override
+		public void initialize() {
+			market.initialize();
+		}
+
+		@Override
+		public void playForTime(final long howLongToPlayFor, final long delay) {
+			market.playForTime(howLongToPlayFor, delay);
+		}
+
+		@Override
+		public void playNumberOfLines(final long numberOfLinesToPlay, final long delay) {
+			market.playNumberOfLines(numberOfLinesToPlay, delay);
+		}
+
+		@Override
+		public void playAll() {
+			market.playAll();
+		}
+
+		@Override
+		public void reset() {
+			market.reset();
+		}
+
+		@Override
+		public void plugMemoryLeak() {
+			market.plugMemoryLeak();
+		}
+
+		@Override
+		public void setCurrentTime(final Date newTime) {
+			market.setCurrentTime(newTime);
+		}
+
+		@Override
+		public SimulationContext getSimulationContext() {
+			return market.getSimulationContext();
+		}
+	}
+
+	///----------------Encoding----------------///
+	private void writeHeader(final LatencyEventType eventType) throws IOException {
+		out.writeByte(eventType.ordinal());
+		out.writeLong(marketTime.getTimeMillis());
+	}
+
+	private void writeBookEntryFields(final BookEntry bookEntry) throws IOException {
+		writeClOrdId(bookEntry.getClOrdId());
+		writeUniqueId(bookEntry.getId());
+		writeSymbol(bookEntry.getSymbol());
+		out.writeInt(bookEntry.getRemainingQuantity());
+		writePrice(bookEntry.getPrice());
+		writeDate(bookEntry.getTimestamp());
+		out.writeBoolean(bookEntry.isSimulated());
+		out.writeInt(bookEntry.getOriginalQuantity());
+	}
+
+	private void writeOrderSpecification(final OrderSpecification order) throws IOException {
+		writeSymbol(order.getSymbol());
+		writePrice(order.getPrice());
+		out.writeInt(order.getQuantity());
+		out.writeByte(order.getTradeType().ordinal());
+		out.writeInt(order.getAmountFilled());
+	}
+
+	private void writeSymbol(final String symbol) throws IOException {
+		final Integer index = symbols.get(symbol);
+		if (index != null) {
+			out.writeInt(index);
+			return;
+		}
+		// A new symbol is written as the next unused number followed by the symbol
+		final int newIndex = symbols.size();
+		symbols.put(symbol, newIndex);
+		out.writeInt(newIndex);
+		out.writeBoolean(symbol != null);
+		if (symbol != null) {
+			out.writeUTF(symbol);
+		}
+	}
+
+	private void writePrice(final BigDecimal price) throws IOException {
+		if (price.unscaledValue().bitLength() > 63) {
+			throw new IllegalArgumentException("Price too large for the journal: " + price);
+		}
+		out.writeInt(price.scale());
+		out.writeLong(price.unscaledValue().longValue());
+	}
+
+	private void writeDate(final Date date) throws IOException {
+		out.writeLong(date == null ? NULL_TIME : date.getTime());
+	}
+
+	private void writeClOrdId(final ClOrdId clOrdId) throws IOException {
+		if (clOrdId == null) {
+			out.writeLong(NULL_ID);
+		} else if (clOrdId instanceof SimulationClOrdId) {
+			out.writeLong(((SimulationClOrdId) clOrdId).getNumericId());
+		} else {
+			out.writeLong(UNKNOWN_ID);
+		}
+	}
+
+	private void writeOrderId(final OrderId orderId) throws IOException {
+		if (orderId instanceof SimulationOrderId) {
+			out.writeLong(((SimulationOrderId) orderId).getNumericId());
+		} else {
+			out.writeLong(NULL_ID);
+		}
+	}
+
+	private void writeUniqueId(final Object uniqueId) throws IOException {
+		if (uniqueId == null) {
+			out.writeByte(ID_NULL);
+		} else if (uniqueId instanceof SimulationOrderId) {
+			out.writeByte(ID_ORDER_ID);
+			out.writeLong(((SimulationOrderId) uniqueId).getNumericId());
+		} else if (uniqueId instanceof Long) {
+			out.writeByte(ID_LONG);
+			out.writeLong((Long) uniqueId);
+		} else {
+			out.writeByte(ID_STRING);
+			out.writeUTF(uniqueId.toString());
+		}
+	}
+}
@@ -0,0 +1,312 @@
+package backtester.simulation.journal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import backtester.quote.Ask;
+import backtester.quote.Bid;
+import backtester.quote.BookEntry;
+import backtester.quote.QuoteListener;
+import backtester.quote.TradeTick;
+import backtester.simulation.MarketTime;
+import backtester.simulation.SimulationClOrdId;
+import backtester.simulation.SimulationContext;
+import backtester.simulation.SimulationOrderId;
+import backtester.simulation.TimerService;
+import backtester.simulation.latency.LatencyEventType;
+import backtester.trade.ClOrdId;
+import backtester.trade.Fill;
+import backtester.trade.LiquidityFlag;
+import backtester.trade.OrderId;
+import backtester.trade.OrderSpecification;
+import backtester.trade.TradeDestination;
+import backtester.trade.TradeListener;
+import backtester.trade.TradeType;
+import backtester.trade.TransactionCost;
+
+/**
+ * Plays a journal written by EventJournalRecorder back into a strategy, setting the market time to the recorded time before each
+ * callback.  Timers are not recorded, the replay fires the timers of the context it is given when the time passes their deadline,
+ * like the latency proxy does, so a strategy scheduling timers on that context sees them at the same times as in the original run.
+ * There is no quote book or matching, the recorded acks and fills are replayed as they were, so the replay only matches
+ * the original run if the strategy places the same orders in the same order.  Orders the strategy places during the replay go to
+ * its trade destination and are otherwise ignored.  The recorded orders of the original run are skipped, unless an order
+ * destination is given to replay them to, e.g. to compare them with the orders of the replay.
+ */
+public class EventJournalReplayer {
+	private static final LatencyEventType[] EVENT_TYPES = LatencyEventType.values();
+	private static final LiquidityFlag[] LIQUIDITY_FLAGS = LiquidityFlag.values();
+	private static final TradeType[] TRADE_TYPES = TradeType.values();
+
+	private final DataInputStream in;
+	private final MarketTime marketTime;
+	private final TimerService timerService;
+	private final List<String> symbols = new ArrayList<String>();
+
+	/**
+	 * @param simulationContext
+	 *            the context of the replaying strategy, whose clock and timers the replay advances
+	 */
+	public EventJournalReplayer(final InputStream in, final SimulationContext simulationContext) throws IOException {
+		if (simulationContext == null) {
+			throw new IllegalArgumentException("SimulationContext can't be null");
+		}
+		this.in = new DataInputStream(new BufferedInputStream(in));
+		this.marketTime = simulationContext.getMarketTime();
+		this.timerService = simulationContext.getTimerService();
+
+		if (this.in.readInt() != EventJournalRecorder.MAGIC) {
+			throw new IOException("Not an event journal");
+		}
+		final int version = this.in.readInt();
+		if (version < 1 || version > EventJournalRecorder.VERSION) {
+			throw new IOException("Unsupported event journal version: " + version);
+		}
+	}
+
+	/**
+	 * Replays every remaining event.
+	 *
+	 * @return the number of events replayed
+	 */
+	public long replayAll(final QuoteListener quoteListener, final TradeListener tradeListener) throws IOException {
+		return replayAll(quoteListener, tradeListener, null);
+	}
+
+	/**
+	 * Replays every remaining event, including the recorded orders.
+	 *
+	 * @param orderDestination
+	 *            receives the orders the strategy sent in the original run, null to skip them
+	 * @return the number of events replayed
+	 */
+	public long replayAll(final QuoteListener quoteListener, final TradeListener tradeListener, final TradeDestination orderDestination)
+			throws IOException {
+		long count = 0;
+		while (replayNext(quoteListener, tradeListener, orderDestination)) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return false at the end of the journal
+	 */
+	public boolean replayNext(final QuoteListener quoteListener, final TradeListener tradeListener) throws IOException {
+		return replayNext(quoteListener, tradeListener, null);
+	}
+
+	/**
+	 * @param orderDestination
+	 *            receives the orders the strategy sent in the original run, null to skip them
+	 * @return false at the end of the journal
+	 */
+	public boolean replayNext(final QuoteListener quoteListener, final TradeListener tradeListener, final TradeDestination orderDestination)
+			throws IOException {
+		final int eventTypeOrdinal;
+		try {
+			eventTypeOrdinal = in.readUnsignedByte();
+		} catch (final EOFException e) {
+			return false;
+		}
+		if (eventTypeOrdinal >= EVENT_TYPES.length) {
+			throw new IOException("Unknown event type in journal: " + eventTypeOrdinal);
+		}
+		final LatencyEventType eventType = EVENT_TYPES[eventTypeOrdinal];
+		final long timeMillis = in.readLong();
+		timerService.advanceTo(timeMillis);
+		marketTime.setTime(timeMillis);
+
+		switch (eventType) {
+		case PLACE_ORDER: {
+			final ClOrdId clOrdId = readClOrdId();
+			final OrderSpecification order = readOrderSpecification();
+			if (orderDestination != null) {
+				orderDestination.placeOrder(clOrdId, order);
+			}
+			break;
+		}
+		case CANCEL_ORDER: {
+			final ClOrdId clOrdId = readClOrdId();
+			final ClOrdId origClOrdId = readClOrdId();
+			if (orderDestination != null) {
+				orderDestination.cancelOrder(clOrdId, origClOrdId);
+			}
+			break;
+		}
+		case CANCEL_REPLACE_ORDER: {
+			final ClOrdId clOrdId = readClOrdId();
+			final ClOrdId origClOrdId = readClOrdId();
+			final OrderSpecification order = readOrderSpecification();
+			if (orderDestination != null) {
+				orderDestination.cancelReplaceOrder(clOrdId, origClOrdId, order);
+			}
+			break;
+		}
+		case CANCEL_ALL: {
+			final ClOrdId clOrdId = readClOrdId();
+			if (orderDestination != null) {
+				orderDestination.cancelAll(clOrdId);
+			}
+			break;
+		}
+		case ON_BID:
+			quoteListener.onBid((Bid) readBookEntryFields(EventJournalRecorder.BOOK_ENTRY_BID));
+			break;
+		case ON_ASK:
+			quoteListener.onAsk((Ask) readBookEntryFields(EventJournalRecorder.BOOK_ENTRY_ASK));
+			break;
+		case ON_TRADE_TICK:
+			quoteListener.onTradeTick(new TradeTick(readSymbol(), in.readInt(), readPrice(), readDate()));
+			break;
+		case ON_FILL:
+			tradeListener.onFill(readFill());
+			break;
+		case ON_TRANSACTION_COST:
+			tradeListener.onTransactionCost(new TransactionCost(readPrice()));
+			break;
+		case ON_CANCEL_REPLACE_ACCEPTED: {
+			final ClOrdId clOrdId = readClOrdId();
+			final OrderSpecification order = readOrderSpecification();
+			tradeListener.onCancelReplaceAccepted(clOrdId, order, readClOrdId());
+			break;
+		}
+		case ON_CANCEL_REPLACE_REJECTED:
+			tradeListener.onCancelReplaceRejected(readClOrdId());
+			break;
+		case ON_CANCEL_ACCEPTED: {
+			final ClOrdId clOrdId = readClOrdId();
+			tradeListener.onCancelAccepted(clOrdId, readClOrdId());
+			break;
+		}
+		case ON_CANCEL_REJECTED:
+			tradeListener.onCancelRejected(readClOrdId());
+			break;
+		case ON_CANCEL_ALL_ACCEPTED: {
+			final ClOrdId clOrdId = readClOrdId();
+			final int count = in.readInt();
+			final List<BookEntry> canceledBookEntries = new ArrayList<BookEntry>(count);
+			for (int i = 0; i < count; i++) {
+				canceledBookEntries.add(readBookEntryFields(in.readByte()));
+			}
+			tradeListener.onCancelAllAccepted(clOrdId, canceledBookEntries);
+			break;
+		}
+		case ON_NEW_ORDER_ACCEPTED: {
+			final ClOrdId clOrdId = readClOrdId();
+			tradeListener.onNewOrderAccepted(clOrdId, readOrderSpecification());
+			break;
+		}
+		case ON_NEW_ORDER_REJECTED:
+			tradeListener.onNewOrderRejected(readClOrdId());
+			break;
+		default:
+			throw new IOException("Unexpected event type in journal: " + eventType);
+		}
+		return true;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+	///----------------Decoding----------------///
+	private BookEntry readBookEntryFields(final byte bookEntryType) throws IOException {
+		final ClOrdId clOrdId = readClOrdId();
+		final Object uniqueId = readUniqueId();
+		final String symbol = readSymbol();
+		final int remainingQuantity = in.readInt();
+		final BigDecimal price = readPrice();
+		final Date timestamp = readDate();
+		final boolean isSimulated = in.readBoolean();
+		final int originalQuantity = in.readInt();
+		if (bookEntryType == EventJournalRecorder.BOOK_ENTRY_ASK) {
+			return new Ask(clOrdId, uniqueId, symbol, remainingQuantity, price, timestamp, isSimulated, originalQuantity);
+		}
+		return new Bid(clOrdId, uniqueId, symbol, remainingQuantity, price, timestamp, isSimulated, originalQuantity);
+	}
+
+	private Fill readFill() throws IOException {
+		final ClOrdId clOrdId = readClOrdId();
+		final OrderId orderId = readOrderId();
+		final String symbol = readSymbol();
+		final int quantity = in.readInt();
+		final BigDecimal price = readPrice();
+		final int remaining = in.readInt();
+		final Date timestamp = readDate();
+		final byte liquidityFlag = in.readByte();
+		return new Fill(clOrdId, orderId, symbol, quantity, price, remaining, timestamp, liquidityFlag < 0 ? null
+				: LIQUIDITY_FLAGS[liquidityFlag]);
+	}
+
+	private OrderSpecification readOrderSpecification() throws IOException {
+		final String symbol = readSymbol();
+		final BigDecimal price = readPrice();
+		final int quantity = in.readInt();
+		final OrderSpecification order = new OrderSpecification(symbol, price, quantity, TRADE_TYPES[in.readByte()]);
+		order.setAmountFilled(in.readInt());
+		return order;
+	}
+
+	private String readSymbol() throws IOException {
+		final int index = in.readInt();
+		if (index < symbols.size()) {
+			return symbols.get(index);
+		}
+		if (index != symbols.size()) {
+			throw new IOException("Corrupt event journal, unexpected symbol number " + index);
+		}
+		final String symbol = in.readBoolean() ? in.readUTF() : null;
+		symbols.add(symbol);
+		return symbol;
+	}
+
+	private BigDecimal readPrice() throws IOException {
+		final int scale = in.readInt();
+		return BigDecimal.valueOf(in.readLong(), scale);
+	}
+
+	private Date readDate() throws IOException {
+		final long time = in.readLong();
+		return time == EventJournalRecorder.NULL_TIME ? null : new Date(time);
+	}
+
+	private ClOrdId readClOrdId() throws IOException {
+		final long id = in.readLong();
+		if (id == EventJournalRecorder.NULL_ID) {
+			return null;
+		}
+		if (id == EventJournalRecorder.UNKNOWN_ID) {
+			return ClOrdId.getUnknownClOrdId();
+		}
+		return new SimulationClOrdId(id);
+	}
+
+	private OrderId readOrderId() throws IOException {
+		final long id = in.readLong();
+		return id == EventJournalRecorder.NULL_ID ? null : new SimulationOrderId(id);
+	}
+
+	private Object readUniqueId() throws IOException {
+		final byte type = in.readByte();
+		switch (type) {
+		case EventJournalRecorder.ID_NULL:
+			return null;
+		case EventJournalRecorder.ID_STRING:
+			return in.readUTF();
+		case EventJournalRecorder.ID_ORDER_ID:
+			return new SimulationOrderId(in.readLong());
+		case EventJournalRecorder.ID_LONG:
+			return in.readLong();
+		default:
+			throw new IOException("Corrupt event journal, unknown id type " + type);
+		}
+	}
+}
@@ -0,0 +1,252 @@
+package backtester.simulation.latency;
+
+import java.util.Arrays;
+import java.util.List;
+
+import backtester.quote.Ask;
+import backtester.quote.Bid;
+import backtester.quote.BookEntry;
+import backtester.quote.QuoteListener;
+import backtester.quote.TradeTick;
+import backtester.trade.ClOrdId;
+import backtester.trade.Fill;
+import backtester.trade.OrderSpecification;
+import backtester.trade.TradeDestination;
+import backtester.trade.TradeListener;
+import backtester.trade.TransactionCost;
+
+/**
+ * Calls to a market or listener waiting for their latency to expire, ordered by execution time and then by the order they were
+ * added in.  Events live in preallocated slots that are reused once the event is dispatched, and the heap only holds slot numbers,
+ * so adding and dispatching events does not allocate unless the queue has to grow.  This class is not thread-safe.
+ */
+public class DelayedEventQueue {
+	private static final int DEFAULT_CAPACITY = 256;
+
+	// Slot storage.  An event's arguments are kept in the same order as the method they are passed to.
+	private long[] executionTimes;
+	private long[] orderings;
+	private LatencyEventType[] eventTypes;
+	private Object[] targets;
+	private Object[] firstArgs;
+	private Object[] secondArgs;
+	private Object[] thirdArgs;
+
+	// Binary heap of slot numbers, and a stack of the slots not in use
+	private int[] heap;
+	private int size;
+	private int[] freeSlots;
+	private int freeSlotCount;
+
+	private long nextOrdering = 0;
+
+	public DelayedEventQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public DelayedEventQueue(final int initialCapacity) {
+		allocate(Math.max(initialCapacity, 1));
+	}
+
+	private void allocate(final int capacity) {
+		executionTimes = new long[capacity];
+		orderings = new long[capacity];
+		eventTypes = new LatencyEventType[capacity];
+		targets = new Object[capacity];
+		firstArgs = new Object[capacity];
+		secondArgs = new Object[capacity];
+		thirdArgs = new Object[capacity];
+		heap = new int[capacity];
+		freeSlots = new int[capacity];
+		for (int i = 0; i < capacity; i++) {
+			freeSlots[i] = capacity - 1 - i;
+		}
+		freeSlotCount = capacity;
+	}
+
+	private void grow() {
+		final int oldCapacity = heap.length;
+		final int newCapacity = oldCapacity << 1;
+		executionTimes = Arrays.copyOf(executionTimes, newCapacity);
+		orderings = Arrays.copyOf(orderings, newCapacity);
+		eventTypes = Arrays.copyOf(eventTypes, newCapacity);
+		targets = Arrays.copyOf(targets, newCapacity);
+		firstArgs = Arrays.copyOf(firstArgs, newCapacity);
+		secondArgs = Arrays.copyOf(secondArgs, newCapacity);
+		thirdArgs = Arrays.copyOf(thirdArgs, newCapacity);
+		heap = Arrays.copyOf(heap, newCapacity);
+		// Every old slot is in use, so only the new ones are free.
+		freeSlots = new int[newCapacity];
+		for (int i = newCapacity - 1; i >= oldCapacity; i--) {
+			freeSlots[freeSlotCount++] = i;
+		}
+	}
+
+	public void add(final long executionTime, final LatencyEventType eventType, final Object target, final Object firstArg,
+			final Object secondArg, final Object thirdArg) {
+		if (freeSlotCount == 0) {
+			grow();
+		}
+		final int slot = freeSlots[--freeSlotCount];
+		executionTimes[slot] = executionTime;
+		orderings[slot] = nextOrdering++;
+		eventTypes[slot] = eventType;
+		targets[slot] = target;
+		firstArgs[slot] = firstArg;
+		secondArgs[slot] = secondArg;
+		thirdArgs[slot] = thirdArg;
+
+		heap[size] = slot;
+		siftUp(size++);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the execution time of the next event, the queue must not be empty
+	 */
+	public long peekExecutionTime() {
+		return executionTimes[heap[0]];
+	}
+
+	/**
+	 * Removes the next event and dispatches it.  The slot is released before dispatching, so the call may add more events.
+	 */
+	public void dispatchNext() {
+		final int slot = heap[0];
+		final LatencyEventType eventType = eventTypes[slot];
+		final Object target = targets[slot];
+		final Object firstArg = firstArgs[slot];
+		final Object secondArg = secondArgs[slot];
+		final Object thirdArg = thirdArgs[slot];
+
+		heap[0] = heap[--size];
+		if (size > 0) {
+			siftDown(0);
+		}
+		releaseSlot(slot);
+
+		dispatch(eventType, target, firstArg, secondArg, thirdArg);
+	}
+
+	public void clear() {
+		while (size > 0) {
+			releaseSlot(heap[--size]);
+		}
+	}
+
+	private void releaseSlot(final int slot) {
+		eventTypes[slot] = null;
+		targets[slot] = null;
+		firstArgs[slot] = null;
+		secondArgs[slot] = null;
+		thirdArgs[slot] = null;
+		freeSlots[freeSlotCount++] = slot;
+	}
+
+	//We can't just use the ordering because if we use different latencies for different api methods,
+	//an api invoked later could actually be executed first
+	private boolean isBefore(final int slot, final int otherSlot) {
+		final long time = executionTimes[slot];
+		final long otherTime = executionTimes[otherSlot];
+		return time < otherTime || (time == otherTime && orderings[slot] < orderings[otherSlot]);
+	}
+
+	private void siftUp(int index) {
+		final int slot = heap[index];
+		while (index > 0) {
+			final int parent = (index - 1) >>> 1;
+			if (!isBefore(slot, heap[parent])) {
+				break;
+			}
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = slot;
+	}
+
+	private void siftDown(int index) {
+		final int slot = heap[index];
+		final int half = size >>> 1;
+		while (index < half) {
+			int child = (index << 1) + 1;
+			final int right = child + 1;
+			if (right < size && isBefore(heap[right], heap[child])) {
+				child = right;
+			}
+			if (!isBefore(heap[child], slot)) {
+				break;
+			}
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = slot;
+	}
+
+	/**
+	 * Calls the method for the event type on the target.  Market events expect a TradeDestination or QuoteListener, listener events
+	 * expect a QuoteListener or TradeListener.
+	 */
+	@SuppressWarnings("unchecked")
+	public static void dispatch(final LatencyEventType eventType, final Object target, final Object firstArg, final Object secondArg,
+			final Object thirdArg) {
+		switch (eventType) {
+		case PLACE_ORDER:
+			((TradeDestination) target).placeOrder((ClOrdId) firstArg, (OrderSpecification) secondArg);
+			break;
+		case CANCEL_ORDER:
+			((TradeDestination) target).cancelOrder((ClOrdId) firstArg, (ClOrdId) secondArg);
+			break;
+		case CANCEL_REPLACE_ORDER:
+			((TradeDestination) target).cancelReplaceOrder((ClOrdId) firstArg, (ClOrdId) secondArg, (OrderSpecification) thirdArg);
+			break;
+		case CANCEL_ALL:
+			((TradeDestination) target).cancelAll((ClOrdId) firstArg);
+			break;
+		case ON_BID:
+			((QuoteListener) target).onBid((Bid) firstArg);
+			break;
+		case ON_ASK:
+			((QuoteListener) target).onAsk((Ask) firstArg);
+			break;
+		case ON_TRADE_TICK:
+			((QuoteListener) target).onTradeTick((TradeTick) firstArg);
+			break;
+		case ON_FILL:
+			((TradeListener) target).onFill((Fill) firstArg);
+			break;
+		case ON_TRANSACTION_COST:
+			((TradeListener) target).onTransactionCost((TransactionCost) firstArg);
+			break;
+		case ON_CANCEL_REPLACE_ACCEPTED:
+			((TradeListener) target).onCancelReplaceAccepted((ClOrdId) firstArg, (OrderSpecification) secondArg, (ClOrdId) thirdArg);
+			break;
+		case ON_CANCEL_REPLACE_REJECTED:
+			((TradeListener) target).onCancelReplaceRejected((ClOrdId) firstArg);
+			break;
+		case ON_CANCEL_ACCEPTED:
+			((TradeListener) target).onCancelAccepted((ClOrdId) firstArg, (ClOrdId) secondArg);
+			break;
+		case ON_CANCEL_REJECTED:
+			((TradeListener) target).onCancelRejected((ClOrdId) firstArg);
+			break;
+		case ON_CANCEL_ALL_ACCEPTED:
+			((TradeListener) target).onCancelAllAccepted((ClOrdId) firstArg, (List<BookEntry>) secondArg);
+			break;
+		case ON_NEW_ORDER_ACCEPTED:
+			((TradeListener) target).onNewOrderAccepted((ClOrdId) firstArg, (OrderSpecification) secondArg);
+			break;
+		case ON_NEW_ORDER_REJECTED:
+			((TradeListener) target).onNewOrderRejected((ClOrdId) firstArg);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown event type: " + eventType);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package backtester.simulation.latency;
+
+import java.util.Random;
+
+import backtester.common.AliasTable;
+
+/**
+ * Discrete distribution of latencies in milliseconds.  Parametric distributions are discretized into a histogram with one bin per
+ * millisecond when they are created, so every distribution samples through the same alias table.
+ */
+public class LatencyDistribution {
+	private final long[] latencies;
+	private final AliasTable aliasTable;
+
+	/**
+	 * @param latencies
+	 *            the latency of each histogram bin
+	 * @param weights
+	 *            the relative frequency of each bin
+	 */
+	public LatencyDistribution(final long[] latencies, final double[] weights) {
+		if (latencies.length != weights.length) {
+			throw new IllegalArgumentException("Expected one weight per latency, got " + latencies.length + " latencies and "
+					+ weights.length + " weights");
+		}
+		for (final long latency : latencies) {
+			if (latency < 0) {
+				throw new IllegalArgumentException("Latency can't be negative: " + latency);
+			}
+		}
+		this.latencies = latencies.clone();
+		this.aliasTable = new AliasTable(weights);
+	}
+
+	public long sample(final Random random) {
+		return latencies[aliasTable.sample(random)];
+	}
+
+	public static LatencyDistribution fixed(final long latency) {
+		return new LatencyDistribution(new long[] { latency }, new double[] { 1 });
+	}
+
+	/**
+	 * Normal distribution truncated to [0, maxLatency].
+	 */
+	public static LatencyDistribution normal(final double mean, final double standardDeviation, final long maxLatency) {
+		if (standardDeviation <= 0) {
+			throw new IllegalArgumentException("Standard deviation must be positive: " + standardDeviation);
+		}
+		final long[] latencies = createBins(maxLatency);
+		final double[] weights = new double[latencies.length];
+		for (int i = 0; i < latencies.length; i++) {
+			final double z = (latencies[i] - mean) / standardDeviation;
+			weights[i] = Math.exp(-0.5 * z * z);
+		}
+		return new LatencyDistribution(latencies, weights);
+	}
+
+	/**
+	 * Log-normal distribution truncated to [0, maxLatency].  Network latencies usually have this shape, a floor with a long right tail.
+	 *
+	 * @param median
+	 *            median latency in milliseconds
+	 * @param sigma
+	 *            standard deviation of the log of the latency
+	 */
+	public static LatencyDistribution logNormal(final double median, final double sigma, final long maxLatency) {
+		if (median <= 0 || sigma <= 0) {
+			throw new IllegalArgumentException("Median and sigma must be positive: " + median + ", " + sigma);
+		}
+		final double mu = Math.log(median);
+		final long[] latencies = createBins(maxLatency);
+		final double[] weights = new double[latencies.length];
+		for (int i = 0; i < latencies.length; i++) {
+			// Evaluate the density at the middle of the millisecond so the zero bin gets a weight.
+			final double x = latencies[i] + 0.5;
+			final double z = (Math.log(x) - mu) / sigma;
+			weights[i] = Math.exp(-0.5 * z * z) / x;
+		}
+		return new LatencyDistribution(latencies, weights);
+	}
+
+	private static long[] createBins(final long maxLatency) {
+		if (maxLatency < 0 || maxLatency >= Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid max latency: " + maxLatency);
+		}
+		final long[] latencies = new long[(int) maxLatency + 1];
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = i;
+		}
+		return latencies;
+	}
+}
@@ -0,0 +1,57 @@
+package backtester.simulation.latency;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Every call that can be delayed by the latency proxy.  The method name is the name of the corresponding method on
+ * SimulationMarket, QuoteListener or TradeListener, and is what LatencyProfile implementations are keyed by.
+ */
+public enum LatencyEventType {
+	// Strategy->Market
+	PLACE_ORDER("placeOrder"),
+	CANCEL_ORDER("cancelOrder"),
+	CANCEL_REPLACE_ORDER("cancelReplaceOrder"),
+	CANCEL_ALL("cancelAll"),
+
+	// Quote source->Market and Market->Strategy
+	ON_BID("onBid"),
+	ON_ASK("onAsk"),
+	ON_TRADE_TICK("onTradeTick"),
+
+	// Market->Strategy
+	ON_FILL("onFill"),
+	ON_TRANSACTION_COST("onTransactionCost"),
+	ON_CANCEL_REPLACE_ACCEPTED("onCancelReplaceAccepted"),
+	ON_CANCEL_REPLACE_REJECTED("onCancelReplaceRejected"),
+	ON_CANCEL_ACCEPTED("onCancelAccepted"),
+	ON_CANCEL_REJECTED("onCancelRejected"),
+	ON_CANCEL_ALL_ACCEPTED("onCancelAllAccepted"),
+	ON_NEW_ORDER_ACCEPTED("onNewOrderAccepted"),
+	ON_NEW_ORDER_REJECTED("onNewOrderRejected");
+
+	private static final Map<String, LatencyEventType> methodNameMap = new HashMap<String, LatencyEventType>();
+
+	static {
+		for (final LatencyEventType eventType : values()) {
+			methodNameMap.put(eventType.methodName, eventType);
+		}
+	}
+
+	private final String methodName;
+
+	private LatencyEventType(final String methodName) {
+		this.methodName = methodName;
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+
+	/**
+	 * @return the event type for the method, or null if calls to the method are never delayed
+	 */
+	public static LatencyEventType fromMethodName(final String methodName) {
+		return methodNameMap.get(methodName);
+	}
+}
@@ -0,0 +1,51 @@
+package backtester.simulation.latency;
+
+import backtester.quote.QuoteListener;
+import backtester.simulation.SimulationMarket;
+import backtester.trade.TradeListener;
+
+/**
+ * The kind of object a delayed call is going to.  The config name prefixes the method name in latency config files, e.g.
+ * "market.placeOrder".
+ */
+public enum LatencyTarget {
+	MARKET("market"),
+	QUOTE_LISTENER("quoteListener"),
+	TRADE_LISTENER("tradeListener");
+
+	private final String configName;
+
+	private LatencyTarget(final String configName) {
+		this.configName = configName;
+	}
+
+	public String getConfigName() {
+		return configName;
+	}
+
+	/**
+	 * Classifies the target the same way the original string keyed profiles did.  A strategy implements both listener interfaces,
+	 * so it is always a QUOTE_LISTENER.
+	 *
+	 * @return the target kind, or null if the object is none of them
+	 */
+	public static LatencyTarget of(final Object target) {
+		if (target instanceof SimulationMarket) {
+			return MARKET;
+		} else if (target instanceof QuoteListener) {
+			return QUOTE_LISTENER;
+		} else if (target instanceof TradeListener) {
+			return TRADE_LISTENER;
+		}
+		return null;
+	}
+
+	public static LatencyTarget fromConfigName(final String configName) {
+		for (final LatencyTarget target : values()) {
+			if (target.configName.equals(configName)) {
+				return target;
+			}
+		}
+		return null;
+	}
+}
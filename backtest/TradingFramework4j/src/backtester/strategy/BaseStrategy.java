@@ -6,10 +6,10 @@ import java.math.RoundingMode;
 import java.text.NumberFormat;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
@@ -17,28 +17,38 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
 
+import backtester.common.FixedPoint;
 import backtester.common.SimpleLogger;
 import backtester.common.StatisticsRegistry;
 import backtester.quote.Ask;
 import backtester.quote.Bid;
+import backtester.quote.BookEntry;
 import backtester.quote.QuoteBook;
 import backtester.quote.QuoteListener;
 import backtester.quote.TradeTick;
 import backtester.simulation.SimulationClOrdId;
+import backtester.simulation.TimerListener;
+import backtester.simulation.TimerService;
 import backtester.trade.ClOrdId;
 import backtester.trade.Fill;
 import backtester.trade.OrderSpecification;
 import backtester.trade.OrderStatus;
 import backtester.trade.Position;
+import backtester.trade.PositionEngine;
 import backtester.trade.TradeDestination;
 import backtester.trade.TradeListener;
 import backtester.trade.TradeType;
 import backtester.trade.TransactionCost;
+import backtester.trade.history.FillHistory;
+import backtester.trade.history.HistoryRetention;
+import backtester.trade.history.PositionHistory;
+import backtester.trade.history.TransactionCostHistory;
 import backtester.update.OrderUpdate;
 import backtester.update.STATS_UPDATE_TYPE;
-import backtester.update.StatsUpdate;
+import backtester.update.UpdateBus;
 
-public abstract class BaseStrategy extends Observable implements QuoteListener, TradeListener {
+public abstract class BaseStrategy extends Observable implements QuoteListener, TradeListener, TimerListener,
+		UpdateBus.StatisticSource {
 	protected static final SimpleLogger _log = SimpleLogger.getLogger(BaseStrategy.class);
 	protected static final NumberFormat numberFormatter = NumberFormat.getNumberInstance();
 	protected static final NumberFormat currencyFormatter = NumberFormat.getCurrencyInstance();
@@ -46,34 +56,53 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 
 	protected final MathContext mathContext = new MathContext(8, RoundingMode.HALF_EVEN);
 	
-	protected StatisticsRegistry stats = StatisticsRegistry.getInstance();
+	protected final StatisticsRegistry stats;
 	protected AtomicLong nextClOrdId = new AtomicLong();
 	protected QuoteBook quoteBook = new QuoteBook();
 
 	protected String symbol;
-	protected Deque<Position> positionHistory = new LinkedList<Position>();
-	protected Deque<TransactionCost> transactionCostHistory = new LinkedList<TransactionCost>();
-	protected Deque<Fill> fillHistory = new LinkedList<Fill>();
+	protected final PositionEngine positionEngine;
+	// View of positionEngine
+	protected Position currentPosition;
+	// The midpoint is only looked up when unrealized PnL is asked for after the book changed
+	private boolean markPriceStale;
+	// Retention is set by the historyRetention variable: none, full or the number of entries to keep
+	protected final PositionHistory positionHistory;
+	protected final TransactionCostHistory transactionCostHistory;
+	protected final FillHistory fillHistory;
 	protected Map<ClOrdId, OrderSpecification> openOrders = new HashMap<ClOrdId, OrderSpecification>();
 	protected Map<ClOrdId, OrderSpecification> allPlacedOrders = new HashMap<ClOrdId, OrderSpecification>();
 	protected Map<ClOrdId, ClOrdId> allPlacedCancelOrders = new HashMap<ClOrdId, ClOrdId>();
 	protected Map<ClOrdId, OrderSpecification> openBidOrders = new HashMap<ClOrdId, OrderSpecification>();
 	protected Map<ClOrdId, OrderSpecification> openAskOrders = new HashMap<ClOrdId, OrderSpecification>();
-	protected TransactionCost transactionCostTotal = new TransactionCost(BigDecimal.ZERO);
 	protected Integer orderCount = Integer.valueOf(0);
-	protected BigDecimal maximumExposure = BigDecimal.ZERO;
-	protected BigDecimal drawDown = BigDecimal.ZERO;
-	protected BigDecimal maxDrawDown = BigDecimal.ZERO;
+
+	// Running totals updated on every fill, ack and cancel, money amounts are FixedPoint values
+	protected long transactionCostTotal;
+	protected long sharesTraded;
+	protected int fillCount;
+	protected long openOrderValue;
+	protected long maximumExposure;
+	protected long drawDown;
+	protected long maxDrawDown;
 
 	protected boolean firstMarketAction = true;
 	protected Calendar startOfTrading; // 9:30:00
 	protected Date currentMarketDate = new Date(0);
 
 	private final TradeDestination tradeDestination;
-	private boolean hasAnyObservers;
+	private final TimerService timerService;
+	private final UpdateBus updateBus = new UpdateBus(this);
 
 	protected BaseStrategy(final BaseStrategy baseStrategy, final StrategyConfiguration strategyConfiguration) {
 		this.tradeDestination = strategyConfiguration.getTradeDestination();
+		this.timerService = strategyConfiguration.getSimulationContext().getTimerService();
+		this.stats = strategyConfiguration.getSimulationContext().getStatisticsRegistry();
+
+		final HistoryRetention historyRetention = HistoryRetention.parse(strategyConfiguration.getVariable("historyRetention"));
+		positionHistory = new PositionHistory(historyRetention);
+		transactionCostHistory = new TransactionCostHistory(historyRetention);
+		fillHistory = new FillHistory(historyRetention);
 		
 		startOfTrading = Calendar.getInstance();
 		startOfTrading.setTime(strategyConfiguration.getTradingDate());
@@ -84,11 +113,13 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 
 		if (baseStrategy != null) {
 			final Position previousDayPosition = baseStrategy.getCurrentPosition();
-			positionHistory
-					.push(new Position(previousDayPosition.getSymbol(), previousDayPosition.getShares(), BigDecimal.ZERO, BigDecimal.ZERO));
+			positionEngine = new PositionEngine(previousDayPosition.getEngine().getShares(), 0, 0);
+			currentPosition = new Position(previousDayPosition.getSymbol(), positionEngine);
 		} else {
-			positionHistory.push(new Position());
+			positionEngine = new PositionEngine();
+			currentPosition = new Position("", positionEngine);
 		}
+		positionHistory.add(currentPosition);
 		
 		registerVariables();
 		registerStatistics();
@@ -141,6 +172,7 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 		}
 		
 		quoteBook.addAsk(ask);
+		markPriceStale = true;
 		updateCurrentMarketDateAndTriggerMarketActionCallback(ask.getTimestamp());
 
 		doOnAsk(ask);
@@ -154,6 +186,7 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 		}
 		
 		quoteBook.addBid(bid);
+		markPriceStale = true;
 		updateCurrentMarketDateAndTriggerMarketActionCallback(bid.getTimestamp());
 		doOnBid(bid);
 
@@ -171,28 +204,35 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 
 	}
 
+	///----------------Timer Listener Methods----------------///
+	@Override
+	public final void onTimer(final long timerId, final long timeMillis) {
+		doOnTimer(timerId, timeMillis);
+		updateBus.publishStats(this);
+	}
+
 	///----------------Trade Listener Methods----------------///
 	@Override
 	public final void onFill(final Fill fill) {
 		updateCurrentMarketDateAndTriggerMarketActionCallback(fill.getTimestamp());
 
-		final Position currentPosition = new Position(getCurrentPosition());
-
-		final BigDecimal oldPL = getClosedPL();
+		final long oldPL = positionEngine.getClosedPL();
 
 		currentPosition.applyFill(fill);
-		positionHistory.push(currentPosition);
-		fillHistory.push(fill);		
+		positionHistory.add(currentPosition);
+		fillHistory.add(fill);		
+		sharesTraded += Math.abs(fill.getQuantity());
+		fillCount++;
 		
-		final BigDecimal currentPL = getClosedPL();
-		if (currentPL.compareTo(oldPL) == -1) {
-			drawDown = drawDown.add(oldPL.subtract(currentPL));
-			if (drawDown.compareTo(maxDrawDown) == 1) {
+		final long currentFixedPointPL = positionEngine.getClosedPL();
+		if (currentFixedPointPL < oldPL) {
+			drawDown += oldPL - currentFixedPointPL;
+			if (drawDown > maxDrawDown) {
 				maxDrawDown = drawDown;
-				sendChangedEvent(new StatsUpdate(getMaxDrawDown(), STATS_UPDATE_TYPE.MAXIMUM_DRAWDOWN));
+				updateBus.markStatDirty(STATS_UPDATE_TYPE.MAXIMUM_DRAWDOWN);
 			}
-		} else if (currentPL.compareTo(oldPL) == 1) {
-			drawDown = BigDecimal.ZERO;
+		} else if (currentFixedPointPL > oldPL) {
+			drawDown = 0;
 		}
 
 		if (fill.getRemaining() == 0) {
@@ -201,33 +241,43 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 				_log.warn("You got a fill for an order you didn't think was open to begin with!");
 			} else {
 				wasOpenOrder.setOrderStatus(OrderStatus.COMPLETED);
+				openOrderValue -= getOrderValue(wasOpenOrder);
+			}
+			openBidOrders.remove(fill.getClOrdId());
+			openAskOrders.remove(fill.getClOrdId());
+			allPlacedOrders.remove(fill.getClOrdId());
+			if (updateBus.hasObservers()) {
+				updateBus.publish(OrderUpdate.createCompletedOrderUpdate(fill.getClOrdId(), fill));
 			}
-			sendChangedEvent(OrderUpdate.createCompletedOrderUpdate(fill.getClOrdId(), fill));
 		} else {
 			final OrderSpecification partiallyFilledOrder = openOrders.get(fill.getClOrdId());
 			if (null != partiallyFilledOrder) {
 				partiallyFilledOrder.setOrderStatus(OrderStatus.PARTIALLY_FILLED);
 			}
-			sendChangedEvent(OrderUpdate.createPartiallyFilledOrderUpdate(fill.getClOrdId(), fill));
+			if (updateBus.hasObservers()) {
+				updateBus.publish(OrderUpdate.createPartiallyFilledOrderUpdate(fill.getClOrdId(), fill));
+			}
 		}
 
 		sendPositionChangedEvent();
-		sendChangedEvent(new StatsUpdate(getSharesTraded(), STATS_UPDATE_TYPE.SHARES_TRADED));
-		sendChangedEvent(new StatsUpdate(currentPL, STATS_UPDATE_TYPE.CLOSED_PL));
-		sendChangedEvent(new StatsUpdate(fillHistory.size(), STATS_UPDATE_TYPE.FILL_COUNT));
-		sendChangedEvent(new StatsUpdate(openOrders.size(), STATS_UPDATE_TYPE.OPEN_ORDER_COUNT));
-		sendChangedEvent(new StatsUpdate(getCurrentPosition().getShares(), STATS_UPDATE_TYPE.SHARES_OWNED));
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.SHARES_TRADED);
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.CLOSED_PL);
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.FILL_COUNT);
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.OPEN_ORDER_COUNT);
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.SHARES_OWNED);
 
 		doOnFill(fill);
+		updateBus.publishStats(this);
 	}
 
 	@Override
 	public final void onTransactionCost(final TransactionCost transactionCost) {
-		transactionCostHistory.push(transactionCost);
-		this.transactionCostTotal = new TransactionCost(transactionCostTotal.getCost().add(transactionCost.getCost()));
-		sendChangedEvent(new StatsUpdate(getTotalTransactionCost(), STATS_UPDATE_TYPE.TOTAL_TRANSACTION_COST));
+		transactionCostHistory.add(transactionCost);
+		transactionCostTotal += FixedPoint.fromBigDecimal(transactionCost.getCost());
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.TOTAL_TRANSACTION_COST);
 
 		doOnTransactionCost(transactionCost);
+		updateBus.publishStats(this);
 	}
 
 	@Override
@@ -237,17 +287,54 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 			_log.warn("Something is not right - open order not present in map waay too early. Someone is doing something wrong.");
 		} else {
 			wasOpenOrder.setOrderStatus(OrderStatus.CANCELED);
+			openOrderValue -= getOrderValue(wasOpenOrder);
 		}
 
 		openBidOrders.remove(origClOrdId);
 		openAskOrders.remove(origClOrdId);
+		allPlacedOrders.remove(origClOrdId);
+		allPlacedCancelOrders.remove(clOrdId);
 
-		sendChangedEvent(OrderUpdate.createCancelOrderUpdate(origClOrdId));
+		if (updateBus.hasObservers()) {
+			updateBus.publish(OrderUpdate.createCancelOrderUpdate(origClOrdId));
+		}
 
-		sendChangedEvent(new StatsUpdate(openOrders.size(), STATS_UPDATE_TYPE.OPEN_ORDER_COUNT));
-		sendChangedEvent(new StatsUpdate(getOpenOrderValue(), STATS_UPDATE_TYPE.OPEN_ORDER_VALUE));
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.OPEN_ORDER_COUNT);
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.OPEN_ORDER_VALUE);
 
 		doOnCancelAccepted(clOrdId, origClOrdId);
+		updateBus.publishStats(this);
+	}
+
+	@Override
+	public final void onCancelAllAccepted(final ClOrdId clOrdId, final List<BookEntry> canceledBookEntries) {
+		// The market does not send cancel book entries for a cancelAll, so remove our orders from the local book here.
+		for (final BookEntry canceledBookEntry : canceledBookEntries) {
+			quoteBook.removeBookEntry(canceledBookEntry);
+
+			final ClOrdId origClOrdId = canceledBookEntry.getClOrdId();
+			final OrderSpecification wasOpenOrder = openOrders.remove(origClOrdId);
+			if (null == wasOpenOrder) {
+				_log.warn("Something is not right - open order not present in map waay too early. Someone is doing something wrong.");
+			} else {
+				wasOpenOrder.setOrderStatus(OrderStatus.CANCELED);
+				openOrderValue -= getOrderValue(wasOpenOrder);
+			}
+
+			openBidOrders.remove(origClOrdId);
+			openAskOrders.remove(origClOrdId);
+			allPlacedOrders.remove(origClOrdId);
+
+			if (updateBus.hasObservers()) {
+				updateBus.publish(OrderUpdate.createCancelOrderUpdate(origClOrdId));
+			}
+		}
+
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.OPEN_ORDER_COUNT);
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.OPEN_ORDER_VALUE);
+
+		doOnCancelAllAccepted(clOrdId, canceledBookEntries);
+		updateBus.publishStats(this);
 	}
 
 	@Override
@@ -285,6 +372,7 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 
 		openBidOrders.remove(clOrdId);
 		openAskOrders.remove(clOrdId);
+		allPlacedCancelOrders.remove(clOrdId);
 
 		doOnCancelRejected(clOrdId);
 	}
@@ -296,15 +384,22 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 			_log.warn("Something is not right - open order not present in map waay too early. Someone is doing something wrong.");
 		} else {
 			wasOpenOrder.setOrderStatus(OrderStatus.REPLACED);
+			openOrderValue -= getOrderValue(wasOpenOrder);
 		}
-		openOrders.put(clOrdId, order);
+		allPlacedOrders.remove(origClOrdId);
+		addOpenOrder(clOrdId, order);
 
-		sendChangedEvent(OrderUpdate.createCancelReplaceOrderUpdate(origClOrdId, clOrdId, order));
+		if (updateBus.hasObservers()) {
+			updateBus.publish(OrderUpdate.createCancelReplaceOrderUpdate(origClOrdId, clOrdId, order));
+		} else {
+			order.setOrderStatus(OrderStatus.REPLACED);
+		}
 
-		sendChangedEvent(new StatsUpdate(openOrders.size(), STATS_UPDATE_TYPE.OPEN_ORDER_COUNT));
-		sendChangedEvent(new StatsUpdate(getOpenOrderValue(), STATS_UPDATE_TYPE.OPEN_ORDER_VALUE));
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.OPEN_ORDER_COUNT);
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.OPEN_ORDER_VALUE);
 
 		doOnCancelReplaceAccepted(clOrdId, order, origClOrdId);
+		updateBus.publishStats(this);
 	}
 
 	@Override
@@ -315,38 +410,56 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 
 	@Override
 	public final void onNewOrderAccepted(final ClOrdId clOrdId, final OrderSpecification order) {
-		openOrders.put(clOrdId, order);
-
-		BigDecimal exposure = new BigDecimal(0);
+		addOpenOrder(clOrdId, order);
 
-		for (final OrderSpecification o : openOrders.values()) {
-			exposure = exposure.add(BigDecimal.valueOf(o.getQuantity()).multiply(o.getPrice()));
+		// Exposure is the value of every open order
+		if (openOrderValue > maximumExposure) {
+			maximumExposure = openOrderValue;
+			updateBus.markStatDirty(STATS_UPDATE_TYPE.MAXIMUM_EXPOSURE);
 		}
 
-		if (exposure.compareTo(maximumExposure) > 0) {
-			maximumExposure = exposure;
-			sendChangedEvent(new StatsUpdate(maximumExposure, STATS_UPDATE_TYPE.MAXIMUM_EXPOSURE));
+		if (updateBus.hasObservers()) {
+			updateBus.publish(OrderUpdate.createNewOrderUpdate(clOrdId, order));
+		} else {
+			order.setOrderStatus(OrderStatus.NEW);
 		}
 
-		sendChangedEvent(OrderUpdate.createNewOrderUpdate(clOrdId, order));
-
-		sendChangedEvent(new StatsUpdate(++orderCount, STATS_UPDATE_TYPE.ORDER_COUNT));
-		sendChangedEvent(new StatsUpdate(openOrders.size(), STATS_UPDATE_TYPE.OPEN_ORDER_COUNT));
-		sendChangedEvent(new StatsUpdate(getOpenOrderValue(), STATS_UPDATE_TYPE.OPEN_ORDER_VALUE));
+		orderCount++;
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.ORDER_COUNT);
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.OPEN_ORDER_COUNT);
+		updateBus.markStatDirty(STATS_UPDATE_TYPE.OPEN_ORDER_VALUE);
 
 		doOnNewOrderAccepted(clOrdId, order);
+		updateBus.publishStats(this);
 	}
 
 	@Override
 	public final void onNewOrderRejected(final ClOrdId clOrdId) {
 		_log.warn("Received onNewOrderRejected callback.");
-		final OrderSpecification rejectedOrder = allPlacedOrders.get(clOrdId);
+		final OrderSpecification rejectedOrder = allPlacedOrders.remove(clOrdId);
 		if (null != rejectedOrder) {
 			rejectedOrder.setOrderStatus(OrderStatus.REJECTED);
 		}
+		openBidOrders.remove(clOrdId);
+		openAskOrders.remove(clOrdId);
 		doOnNewOrderRejected(clOrdId);
 	}
 
+	private void addOpenOrder(final ClOrdId clOrdId, final OrderSpecification order) {
+		final OrderSpecification previousOrder = openOrders.put(clOrdId, order);
+		if (previousOrder != null) {
+			openOrderValue -= getOrderValue(previousOrder);
+		}
+		openOrderValue += getOrderValue(order);
+	}
+
+	/**
+	 * Open orders are valued at their price and quantity when they are accepted, so they must not be changed while they are open.
+	 */
+	private static long getOrderValue(final OrderSpecification order) {
+		return order.getFixedPointPrice() * order.getQuantity();
+	}
+
 	public boolean areAnyOrdersOpen() {
 		return !openOrders.isEmpty();
 	}
@@ -355,8 +468,11 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 		return symbol;
 	}
 	
+	/**
+	 * @return the live position, it changes with every fill
+	 */
 	public Position getCurrentPosition() {
-		return positionHistory.peek();
+		return currentPosition;
 	}
 
 	public Map<ClOrdId, OrderSpecification> getOpenOrders() {
@@ -372,56 +488,72 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 	}
 
 	public Integer getFillCount() {
-		return fillHistory.size();
+		return fillCount;
 	}
 
+	/**
+	 * @return the positions kept by the history retention, most recent first
+	 */
 	public Collection<Position> getPositionHistory() {
-		return positionHistory;
+		final List<Position> positions = positionHistory.toList();
+		Collections.reverse(positions);
+		return positions;
 	}
 
+	/**
+	 * @return the transaction costs kept by the history retention, most recent first
+	 */
 	public Collection<TransactionCost> getTransactionCostHistory() {
-		return transactionCostHistory;
+		final List<TransactionCost> transactionCosts = transactionCostHistory.toList();
+		Collections.reverse(transactionCosts);
+		return transactionCosts;
 	}
 
 	public BigDecimal getTotalTransactionCost() {
-		return transactionCostTotal.getCost();
+		return FixedPoint.toBigDecimal(transactionCostTotal);
 	}
 
+	/**
+	 * @return the fills kept by the history retention, most recent first
+	 */
 	public Collection<Fill> getFillHistory() {
-		return fillHistory;
+		final List<Fill> fills = fillHistory.toList();
+		Collections.reverse(fills);
+		return fills;
 	}
 
 	public BigDecimal getClosedPL() {
-		return positionHistory.peek().getClosedPL();
+		return currentPosition.getClosedPL();
 	}
 
-	public int getSharesTraded() {
-		int sharesTraded = 0;
-
-		for (final Fill fill : fillHistory) {
-			sharesTraded += Math.abs(fill.getQuantity());
+	/**
+	 * @return PnL of the open shares at the current midpoint, or at the last midpoint if one side of the book is empty
+	 */
+	public BigDecimal getUnrealizedPL() {
+		if (markPriceStale) {
+			markPriceStale = false;
+			final BigDecimal midpoint = quoteBook.getMidpoint();
+			if (midpoint.signum() != 0) {
+				positionEngine.mark(FixedPoint.fromBigDecimal(midpoint));
+			}
 		}
+		return currentPosition.getUnrealizedPL();
+	}
 
+	public long getSharesTraded() {
 		return sharesTraded;
 	}
 
 	public BigDecimal getOpenOrderValue() {
-		BigDecimal openOrderValue = new BigDecimal(0);
-
-		for (final OrderSpecification order : openOrders.values()) {
-			final BigDecimal orderValue = order.getPrice().multiply(BigDecimal.valueOf(order.getQuantity()));
-			openOrderValue = openOrderValue.add(orderValue);
-		}
-
-		return openOrderValue;
+		return FixedPoint.toBigDecimal(openOrderValue);
 	}
 
 	public BigDecimal getMaxDrawDown() {
-		return maxDrawDown;
+		return FixedPoint.toBigDecimal(maxDrawDown);
 	}
 	
 	public BigDecimal getMaximumExposure() {
-		return maximumExposure;
+		return FixedPoint.toBigDecimal(maximumExposure);
 	}
 
 	public String getStrategySpecificCustomEndOfDayReport() {
@@ -455,34 +587,78 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 		transactionCostHistory.clear();
 		fillHistory.clear();
 		openOrders.clear();
+		openBidOrders.clear();
+		openAskOrders.clear();
+		allPlacedOrders.clear();
+		allPlacedCancelOrders.clear();
 		nextClOrdId = new AtomicLong();
 		orderCount = Integer.valueOf(0);
-		maximumExposure = BigDecimal.ZERO;
-		drawDown = BigDecimal.ZERO;
-		maxDrawDown = BigDecimal.ZERO;
+		transactionCostTotal = 0;
+		sharesTraded = 0;
+		fillCount = 0;
+		openOrderValue = 0;
+		maximumExposure = 0;
+		drawDown = 0;
+		maxDrawDown = 0;
 
-		positionHistory.push(new Position());
+		positionEngine.reset();
+		markPriceStale = false;
+		currentPosition = new Position("", positionEngine);
+		positionHistory.add(currentPosition);
 	}
 
 	///------------UI Methods-----------------///
+	/**
+	 * Observers are notified through an UpdateBus instead of Observable.notifyObservers().
+	 */
 	@Override
 	public void addObserver(final Observer o) {
-		super.addObserver(o);
+		updateBus.addObserver(o);
+	}
 
-		hasAnyObservers = true;
+	@Override
+	public void deleteObserver(final Observer o) {
+		updateBus.deleteObserver(o);
 	}
 
 	public void sendPositionChangedEvent() {
-		if (hasAnyObservers) {
-			setChanged();
-			notifyObservers(positionHistory.peek());
+		if (updateBus.hasObservers()) {
+			// Observers get a snapshot, the current position keeps changing
+			updateBus.publish(new Position(currentPosition));
 		}
 	}
 
 	public void sendChangedEvent(final Object update) {
-		if (hasAnyObservers) {
-			setChanged();
-			notifyObservers(update);
+		if (updateBus.hasObservers()) {
+			updateBus.publish(update);
+		}
+	}
+
+	@Override
+	public Object getStatisticValue(final STATS_UPDATE_TYPE type) {
+		switch (type) {
+		case CLOSED_PL:
+			return getClosedPL();
+		case SHARES_TRADED:
+			return getSharesTraded();
+		case TOTAL_TRANSACTION_COST:
+			return getTotalTransactionCost();
+		case OPEN_ORDER_COUNT:
+			return getOpenOrderCount();
+		case OPEN_ORDER_VALUE:
+			return getOpenOrderValue();
+		case ORDER_COUNT:
+			return getOrderCount();
+		case FILL_COUNT:
+			return getFillCount();
+		case MAXIMUM_EXPOSURE:
+			return getMaximumExposure();
+		case MAXIMUM_DRAWDOWN:
+			return getMaxDrawDown();
+		case SHARES_OWNED:
+			return getCurrentPosition().getShares();
+		default:
+			throw new IllegalArgumentException("Unknown statistic: " + type);
 		}
 	}
 
@@ -506,6 +682,15 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 	void doOnCancelRejected(final ClOrdId clOrdId) {
 	}
 
+	/**
+	 * Called once per cancelAll.  By default every canceled order is reported through doOnCancelAccepted.
+	 */
+	void doOnCancelAllAccepted(final ClOrdId clOrdId, final List<BookEntry> canceledBookEntries) {
+		for (final BookEntry canceledBookEntry : canceledBookEntries) {
+			doOnCancelAccepted(clOrdId, canceledBookEntry.getClOrdId());
+		}
+	}
+
 	void doOnNewOrderAccepted(final ClOrdId clOrdId, final OrderSpecification order) {
 	}
 
@@ -521,6 +706,12 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 	void doOnTradeTick(final TradeTick tradeTick) {
 	}
 	
+	/**
+	 * Called when a timer set with scheduleTimerAt() or scheduleTimerAfter() fires, with the market time at its deadline.
+	 */
+	protected void doOnTimer(final long timerId, final long timeMillis) {
+	}
+
 	void doOnPlaybackEnd() {
 	}
 
@@ -551,7 +742,37 @@ public abstract class BaseStrategy extends Observable implements QuoteListener,
 		tradeDestination.cancelAll(clOrdId);
 	}
 
+	///----------------Timer Methods----------------///
+	/**
+	 * Calls doOnTimer() once the simulated time reaches timeMillis, instead of checking the time in onMarketAction().
+	 *
+	 * @return the id of the timer
+	 */
+	public long scheduleTimerAt(final long timeMillis) {
+		return timerService.scheduleAt(timeMillis, this);
+	}
+
+	/**
+	 * @return the id of the timer
+	 */
+	public long scheduleTimerAfter(final long delayMillis) {
+		return timerService.scheduleAfter(delayMillis, this);
+	}
+
+	/**
+	 * @return false if the timer already fired or was canceled
+	 */
+	public boolean cancelTimer(final long timerId) {
+		return timerService.cancel(timerId);
+	}
+
 	public void onPlaybackEnd() {
 		doOnPlaybackEnd();
 	}
+
+	/**
+	 * Called once the strategy is no longer used, to release what it holds for later runs.
+	 */
+	public void close() {
+	}
 }
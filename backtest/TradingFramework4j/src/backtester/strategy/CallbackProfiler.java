@@ -0,0 +1,91 @@
+package backtester.strategy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import backtester.common.LatencyHistogram;
+
+/**
+ * Call counts, wall time histograms and CPU time per callback type.  Callers take startWall() and startCpu() before the call and
+ * pass them to record() after it, CPU time is only measured when the JVM supports it for the current thread.  This class is not
+ * thread-safe.
+ */
+public class CallbackProfiler<E extends Enum<E>> {
+	private static final long NANOS_PER_MICRO = 1000;
+	private static final long NANOS_PER_MILLI = 1000000;
+
+	private final E[] callbacks;
+	private final LatencyHistogram[] wallTimes;
+	private final long[] cpuNanos;
+	private final ThreadMXBean threadBean;
+
+	public CallbackProfiler(final Class<E> callbackType) {
+		callbacks = callbackType.getEnumConstants();
+		wallTimes = new LatencyHistogram[callbacks.length];
+		for (int i = 0; i < callbacks.length; i++) {
+			wallTimes[i] = new LatencyHistogram();
+		}
+		cpuNanos = new long[callbacks.length];
+
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean.isCurrentThreadCpuTimeSupported()) {
+			if (!bean.isThreadCpuTimeEnabled()) {
+				bean.setThreadCpuTimeEnabled(true);
+			}
+			threadBean = bean;
+		} else {
+			threadBean = null;
+		}
+	}
+
+	public long startWall() {
+		return System.nanoTime();
+	}
+
+	public long startCpu() {
+		return threadBean == null ? 0 : threadBean.getCurrentThreadCpuTime();
+	}
+
+	public void record(final E callback, final long wallStart, final long cpuStart) {
+		wallTimes[callback.ordinal()].record(System.nanoTime() - wallStart);
+		if (threadBean != null) {
+			cpuNanos[callback.ordinal()] += threadBean.getCurrentThreadCpuTime() - cpuStart;
+		}
+	}
+
+	public LatencyHistogram getWallTimes(final E callback) {
+		return wallTimes[callback.ordinal()];
+	}
+
+	public long getCpuNanos(final E callback) {
+		return cpuNanos[callback.ordinal()];
+	}
+
+	/**
+	 * @return one line per callback that was called, times in milliseconds for totals and microseconds otherwise
+	 */
+	public String getReport(final String newLine) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-26s %10s %10s %9s %9s %9s %9s %10s", "Callback", "Calls", "Wall ms", "Mean us", "p50 us", "p99 us",
+				"Max us", "CPU ms")).append(newLine);
+		for (int i = 0; i < callbacks.length; i++) {
+			final LatencyHistogram wallTime = wallTimes[i];
+			if (wallTime.getCount() == 0) {
+				continue;
+			}
+			sb.append(String.format("%-26s %10d %10d %9d %9d %9d %9d %10s", callbacks[i], wallTime.getCount(),
+					wallTime.getTotalNanos() / NANOS_PER_MILLI, wallTime.getMeanNanos() / NANOS_PER_MICRO,
+					wallTime.getPercentileNanos(50) / NANOS_PER_MICRO, wallTime.getPercentileNanos(99) / NANOS_PER_MICRO,
+					wallTime.getMaxNanos() / NANOS_PER_MICRO, threadBean == null ? "N/A" : String.valueOf(cpuNanos[i] / NANOS_PER_MILLI)));
+			sb.append(newLine);
+		}
+		return sb.toString();
+	}
+
+	public void clear() {
+		for (int i = 0; i < callbacks.length; i++) {
+			wallTimes[i].clear();
+			cpuNanos[i] = 0;
+		}
+	}
+}
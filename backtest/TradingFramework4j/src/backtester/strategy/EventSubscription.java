@@ -0,0 +1,182 @@
+package backtester.strategy;
+
+import java.util.EnumSet;
+import java.util.Locale;
+
+import backtester.quote.BookEntry;
+import backtester.quote.QuoteBook;
+import backtester.quote.TradeTick;
+
+/**
+ * The events a strategy wants to receive, so a bridge can drop market events before calling into the strategy.  Parsed from a string in
+ * the same "key=value;key=value" form as the python config, for example "events=bid,ask,fill;levels=1;min_interval=250":
+ *
+ * events - comma separated event types, see EventType; all types when missing
+ * levels - bids and asks are only delivered when their price is within the best N price levels of their side
+ * min_interval - at most one bid, one ask and one trade tick are delivered per this many milliseconds
+ *
+ * Only bids, asks and trade ticks may be dropped.  Order events and timers keep the strategy's own order and position bookkeeping
+ * right, so a bridge always delivers them and only skips the strategy's handlers for types that are not wanted.
+ *
+ * Throttling keeps the latest event of each market type that arrived within the interval.  Once the interval ended it is returned by
+ * pollExpired(), and pollPending() returns what is left at the end of playback.  This class is not thread-safe.
+ */
+public class EventSubscription {
+	public static enum EventType {
+		BID, ASK, TRADE, FILL, ORDER, CANCEL, REPLACE, TIMER
+	}
+
+	private static final long NO_QUOTE_DELIVERED = Long.MIN_VALUE;
+	// BID, ASK and TRADE are the first ordinals
+	private static final int MARKET_EVENT_TYPES = 3;
+
+	private final EnumSet<EventType> eventTypes;
+	private final int levels;
+	private final long minIntervalMillis;
+	// Per market event type: when the current interval started, and the latest event throttled within it
+	private final long[] lastDeliveredMillis = new long[MARKET_EVENT_TYPES];
+	private final Object[] pending = new Object[MARKET_EVENT_TYPES];
+
+	/**
+	 * @param levels
+	 *            zero for every level
+	 */
+	public EventSubscription(final EnumSet<EventType> eventTypes, final int levels, final long minIntervalMillis) {
+		if (levels < 0 || minIntervalMillis < 0) {
+			throw new IllegalArgumentException("Levels and minimum interval can't be negative");
+		}
+		this.eventTypes = EnumSet.copyOf(eventTypes);
+		this.levels = levels;
+		this.minIntervalMillis = minIntervalMillis;
+		reset();
+	}
+
+	/**
+	 * @return a subscription to every event when the string is null or empty
+	 */
+	public static EventSubscription parse(final String subscription) {
+		EnumSet<EventType> eventTypes = EnumSet.allOf(EventType.class);
+		int levels = 0;
+		long minIntervalMillis = 0;
+		if (subscription == null) {
+			return new EventSubscription(eventTypes, levels, minIntervalMillis);
+		}
+
+		for (final String setting : subscription.split(";")) {
+			if (setting.trim().isEmpty()) {
+				continue;
+			}
+			final String[] keyValue = setting.split("=", 2);
+			if (keyValue.length != 2) {
+				throw new IllegalArgumentException("Invalid subscription setting: " + setting);
+			}
+			final String key = keyValue[0].trim();
+			final String value = keyValue[1].trim();
+			if ("events".equals(key)) {
+				eventTypes = EnumSet.noneOf(EventType.class);
+				for (final String eventType : value.split(",")) {
+					if (!eventType.trim().isEmpty()) {
+						eventTypes.add(EventType.valueOf(eventType.trim().toUpperCase(Locale.US)));
+					}
+				}
+			} else if ("levels".equals(key)) {
+				levels = Integer.parseInt(value);
+			} else if ("min_interval".equals(key)) {
+				minIntervalMillis = Long.parseLong(value);
+			} else {
+				throw new IllegalArgumentException("Unknown subscription setting: " + key);
+			}
+		}
+		return new EventSubscription(eventTypes, levels, minIntervalMillis);
+	}
+
+	public boolean wants(final EventType eventType) {
+		return eventTypes.contains(eventType);
+	}
+
+	/**
+	 * Call after the book entry was added to the quote book.  A delivered bid or ask starts a new minimum interval, a throttled one is
+	 * kept until the interval ended.
+	 *
+	 * @param eventType
+	 *            BID or ASK
+	 */
+	public boolean wantsBookEntry(final EventType eventType, final BookEntry bookEntry, final QuoteBook quoteBook, final long timeMillis) {
+		if (!eventTypes.contains(eventType)) {
+			return false;
+		}
+		if (levels > 0 && !quoteBook.isWithinTopLevels(bookEntry, levels)) {
+			return false;
+		}
+		return isDeliverable(eventType, bookEntry, timeMillis);
+	}
+
+	/**
+	 * A delivered trade tick starts a new minimum interval, a throttled one is kept until the interval ended.
+	 */
+	public boolean wantsTradeTick(final TradeTick tradeTick, final long timeMillis) {
+		if (!eventTypes.contains(EventType.TRADE)) {
+			return false;
+		}
+		return isDeliverable(EventType.TRADE, tradeTick, timeMillis);
+	}
+
+	private boolean isDeliverable(final EventType eventType, final Object event, final long timeMillis) {
+		final int type = eventType.ordinal();
+		if (lastDeliveredMillis[type] != NO_QUOTE_DELIVERED && timeMillis - lastDeliveredMillis[type] < minIntervalMillis) {
+			pending[type] = event;
+			return false;
+		}
+		lastDeliveredMillis[type] = timeMillis;
+		pending[type] = null;
+		return true;
+	}
+
+	/**
+	 * @return the throttled bid, ask or trade tick whose interval ended first by timeMillis, null when there is none.  The interval
+	 *         following it starts where it ended.
+	 */
+	public Object pollExpired(final long timeMillis) {
+		int expired = -1;
+		for (int type = 0; type < MARKET_EVENT_TYPES; type++) {
+			if (pending[type] != null && timeMillis - lastDeliveredMillis[type] >= minIntervalMillis
+					&& (expired < 0 || lastDeliveredMillis[type] < lastDeliveredMillis[expired])) {
+				expired = type;
+			}
+		}
+		if (expired < 0) {
+			return null;
+		}
+		final Object event = pending[expired];
+		pending[expired] = null;
+		lastDeliveredMillis[expired] += minIntervalMillis;
+		return event;
+	}
+
+	/**
+	 * @return a throttled bid, ask or trade tick regardless of its interval, null when there is none
+	 */
+	public Object pollPending() {
+		// A throttled event always has a start of interval, so this can't overflow
+		return pollExpired(Long.MAX_VALUE);
+	}
+
+	/**
+	 * @return the lower case names of the wanted event types, as used in the subscription string
+	 */
+	public String[] getEventTypeNames() {
+		final String[] names = new String[eventTypes.size()];
+		int i = 0;
+		for (final EventType eventType : eventTypes) {
+			names[i++] = eventType.name().toLowerCase(Locale.US);
+		}
+		return names;
+	}
+
+	public void reset() {
+		for (int type = 0; type < MARKET_EVENT_TYPES; type++) {
+			lastDeliveredMillis[type] = NO_QUOTE_DELIVERED;
+			pending[type] = null;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package backtester.strategy;
+
+import backtester.quote.Ask;
+import backtester.quote.Bid;
+import backtester.quote.BookEntry;
+import backtester.quote.TradeTick;
+
+/**
+ * Bids, asks and trade ticks collected in parallel primitive arrays, so a bridge can hand a run of market events to a strategy in one
+ * call.  Event i is sides[i], ids[i], quantities[i], prices[i] and times[i]; prices are FixedPoint values, times are milliseconds since
+ * midnight and ids are null for trade ticks.  The arrays are reused, only the first size() entries are valid.  This class is not
+ * thread-safe.
+ */
+public class MarketEventBatch {
+	public static final int SIDE_BID = PrimitiveStrategy.SIDE_BID;
+	public static final int SIDE_ASK = PrimitiveStrategy.SIDE_ASK;
+	public static final int TRADE = 2;
+
+	private final int[] sides;
+	private final String[] ids;
+	private final long[] quantities;
+	private final long[] prices;
+	private final long[] times;
+	private int size;
+
+	public MarketEventBatch(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Batch capacity must be positive: " + capacity);
+		}
+		sides = new int[capacity];
+		ids = new String[capacity];
+		quantities = new long[capacity];
+		prices = new long[capacity];
+		times = new long[capacity];
+	}
+
+	/**
+	 * @return true if the batch is full and has to be delivered before the next event is added
+	 */
+	public boolean addBid(final Bid bid) {
+		return addBookEntry(SIDE_BID, bid);
+	}
+
+	/**
+	 * @return true if the batch is full and has to be delivered before the next event is added
+	 */
+	public boolean addAsk(final Ask ask) {
+		return addBookEntry(SIDE_ASK, ask);
+	}
+
+	private boolean addBookEntry(final int side, final BookEntry bookEntry) {
+		return add(side, String.valueOf(bookEntry.getId()), bookEntry.getRemainingQuantity(), bookEntry.getFixedPointPrice(),
+				bookEntry.getMilliTimestamp());
+	}
+
+	/**
+	 * @return true if the batch is full and has to be delivered before the next event is added
+	 */
+	public boolean addTradeTick(final TradeTick tradeTick) {
+		return add(TRADE, null, tradeTick.getSize(), tradeTick.getFixedPointPrice(), tradeTick.getMilliTimestamp());
+	}
+
+	private boolean add(final int side, final String id, final long quantity, final long price, final long time) {
+		if (size == sides.length) {
+			throw new IllegalStateException("Batch is full");
+		}
+		sides[size] = side;
+		ids[size] = id;
+		quantities[size] = quantity;
+		prices[size] = price;
+		times[size] = time;
+		size++;
+		return size == sides.length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			ids[i] = null;
+		}
+		size = 0;
+	}
+
+	public int[] getSides() {
+		return sides;
+	}
+
+	public String[] getIds() {
+		return ids;
+	}
+
+	public long[] getQuantities() {
+		return quantities;
+	}
+
+	public long[] getPrices() {
+		return prices;
+	}
+
+	public long[] getTimes() {
+		return times;
+	}
+}
@@ -0,0 +1,122 @@
+package backtester.strategy;
+
+import backtester.common.FixedPoint;
+import backtester.simulation.SimulationClOrdId;
+import backtester.trade.OrderSpecification;
+import backtester.trade.TradeType;
+
+/**
+ * Reusable order entry for a PrimitiveStrategy.  The strategy sets the trade type, price and quantity and then places or replaces an
+ * order; the fields keep their values afterwards, so repeated orders only change what differs.  The OrderSpecification and ClOrdId
+ * the trade destination needs are only built here, when an order is actually sent.
+ *
+ * Timers on the simulated clock are set through the handle as well and fire PrimitiveStrategy.onTimer().
+ */
+public class PrimitiveOrderHandle {
+	public static final int BUY = TradeType.BUY.ordinal();
+	public static final int SELL = TradeType.SELL.ordinal();
+	public static final int COVER = TradeType.COVER.ordinal();
+	public static final int SHORT = TradeType.SHORT.ordinal();
+
+	private static final TradeType[] TRADE_TYPES = TradeType.values();
+
+	private final BaseStrategy strategy;
+	private int tradeType = BUY;
+	private long price;
+	private int quantity;
+
+	PrimitiveOrderHandle(final BaseStrategy strategy) {
+		this.strategy = strategy;
+	}
+
+	/**
+	 * @param tradeType
+	 *            BUY, SELL, COVER or SHORT
+	 * @param price
+	 *            FixedPoint price, zero for a market order
+	 */
+	public PrimitiveOrderHandle set(final int tradeType, final long price, final int quantity) {
+		setTradeType(tradeType);
+		this.price = price;
+		this.quantity = quantity;
+		return this;
+	}
+
+	public int getTradeType() {
+		return tradeType;
+	}
+
+	public void setTradeType(final int tradeType) {
+		if (tradeType < 0 || tradeType >= TRADE_TYPES.length) {
+			throw new IllegalArgumentException("Unknown trade type: " + tradeType);
+		}
+		this.tradeType = tradeType;
+	}
+
+	public long getPrice() {
+		return price;
+	}
+
+	public void setPrice(final long price) {
+		this.price = price;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(final int quantity) {
+		this.quantity = quantity;
+	}
+
+	/**
+	 * Places a new order with the current fields.
+	 *
+	 * @return the id of the new order
+	 */
+	public long place() {
+		final long orderId = strategy.nextClOrdId.getAndIncrement();
+		strategy.placeOrder(new SimulationClOrdId(orderId), createOrderSpecification());
+		return orderId;
+	}
+
+	/**
+	 * Replaces an open order with the current fields.
+	 *
+	 * @return the id of the replacing order
+	 */
+	public long replace(final long origOrderId) {
+		final long orderId = strategy.nextClOrdId.getAndIncrement();
+		strategy.cancelReplaceOrder(new SimulationClOrdId(orderId), new SimulationClOrdId(origOrderId), createOrderSpecification());
+		return orderId;
+	}
+
+	/**
+	 * @return the id of the cancel request, reported back if the cancel is rejected
+	 */
+	public long cancel(final long orderId) {
+		final long cancelId = strategy.nextClOrdId.getAndIncrement();
+		strategy.cancelOrder(new SimulationClOrdId(cancelId), new SimulationClOrdId(orderId));
+		return cancelId;
+	}
+
+	public void cancelAll() {
+		strategy.cancelAll(strategy.getNextClOrdId());
+	}
+
+	public long scheduleTimerAt(final long time) {
+		return strategy.scheduleTimerAt(time);
+	}
+
+	public long scheduleTimerAfter(final long delay) {
+		return strategy.scheduleTimerAfter(delay);
+	}
+
+	public boolean cancelTimer(final long timerId) {
+		return strategy.cancelTimer(timerId);
+	}
+
+	private OrderSpecification createOrderSpecification() {
+		return new OrderSpecification(strategy.getSymbol(), FixedPoint.toBigDecimal(price), quantity, TRADE_TYPES[tradeType]);
+	}
+}
@@ -0,0 +1,68 @@
+package backtester.strategy;
+
+/**
+ * Low level strategy interface with primitive callbacks, run by a PrimitiveStrategyAdapter.  Prices are FixedPoint values, times are
+ * epoch milliseconds and order ids are the numeric ids returned by the PrimitiveOrderHandle, so the strategy never has to unpack
+ * BigDecimal prices or order objects itself.
+ *
+ * Implementations need a public no argument constructor to be loaded by class name.
+ */
+public interface PrimitiveStrategy {
+	int SIDE_BID = 0;
+	int SIDE_ASK = 1;
+
+	/**
+	 * Id passed for orders that were not placed through a PrimitiveOrderHandle.
+	 */
+	long UNKNOWN_ORDER_ID = -1;
+
+	/**
+	 * Called once before any event.  The handle is the only way to place orders and stays valid for the whole day, orders can not be
+	 * placed from this method because the symbol is only known after the first quote.
+	 */
+	void init(PrimitiveOrderHandle orders);
+
+	/**
+	 * @param side
+	 *            SIDE_BID or SIDE_ASK
+	 */
+	void onQuote(int side, long price, int quantity, long time);
+
+	void onTradeTick(long price, int quantity, long time);
+
+	/**
+	 * @param side
+	 *            SIDE_BID for buys and covers, SIDE_ASK for sells and shorts
+	 * @param quantity
+	 *            always positive
+	 */
+	void onFill(long orderId, int side, int quantity, long price, int remaining, long time);
+
+	void onOrderAccepted(long orderId);
+
+	void onOrderRejected(long orderId);
+
+	/**
+	 * @param orderId
+	 *            the canceled order, also called once per order for a cancel all
+	 */
+	void onCancelAccepted(long orderId);
+
+	/**
+	 * @param cancelId
+	 *            the id returned by PrimitiveOrderHandle.cancel()
+	 */
+	void onCancelRejected(long cancelId);
+
+	void onReplaceAccepted(long orderId, long origOrderId);
+
+	void onReplaceRejected(long orderId);
+
+	/**
+	 * @param timerId
+	 *            the id returned by PrimitiveOrderHandle.scheduleTimerAt() or scheduleTimerAfter()
+	 */
+	void onTimer(long timerId, long time);
+
+	void onPlaybackEnd();
+}
@@ -0,0 +1,129 @@
+package backtester.strategy;
+
+import java.lang.reflect.InvocationTargetException;
+
+import backtester.quote.Ask;
+import backtester.quote.Bid;
+import backtester.quote.TradeTick;
+import backtester.simulation.SimulationClOrdId;
+import backtester.trade.ClOrdId;
+import backtester.trade.Fill;
+import backtester.trade.OrderSpecification;
+
+/**
+ * Runs a PrimitiveStrategy in the backtester.  The strategy class is named by the "primitiveStrategy" variable of the configuration
+ * and a new instance is created for every trading day.  Events reach the strategy as primitives, prices come from the cached
+ * FixedPoint price of each book entry, tick and fill.
+ */
+public class PrimitiveStrategyAdapter extends BaseStrategy {
+	private final PrimitiveStrategy strategy;
+
+	public PrimitiveStrategyAdapter(final PrimitiveStrategyAdapter primitiveStrategyAdapter, final StrategyConfiguration strategyConfiguration) {
+		this(primitiveStrategyAdapter, strategyConfiguration, createStrategy(strategyConfiguration.getVariable("primitiveStrategy")));
+	}
+
+	public PrimitiveStrategyAdapter(final PrimitiveStrategyAdapter primitiveStrategyAdapter, final StrategyConfiguration strategyConfiguration,
+			final PrimitiveStrategy strategy) {
+		super(primitiveStrategyAdapter, strategyConfiguration);
+		if (strategy == null) {
+			throw new IllegalArgumentException("Primitive strategy can't be null");
+		}
+		this.strategy = strategy;
+		strategy.init(new PrimitiveOrderHandle(this));
+	}
+
+	private static PrimitiveStrategy createStrategy(final String className) {
+		if (className == null) {
+			throw new IllegalArgumentException("No primitiveStrategy class configured");
+		}
+		try {
+			return Class.forName(className).asSubclass(PrimitiveStrategy.class).getConstructor().newInstance();
+		} catch (final ClassNotFoundException e) {
+			throw new IllegalArgumentException("Unknown primitive strategy class: " + className, e);
+		} catch (final NoSuchMethodException e) {
+			throw new IllegalArgumentException("Primitive strategy class has no public no argument constructor: " + className, e);
+		} catch (final InvocationTargetException e) {
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} catch (final InstantiationException e) {
+			throw new RuntimeException(e);
+		} catch (final IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static long orderId(final ClOrdId clOrdId) {
+		return clOrdId instanceof SimulationClOrdId ? ((SimulationClOrdId) clOrdId).getNumericId() : PrimitiveStrategy.UNKNOWN_ORDER_ID;
+	}
+
+	public PrimitiveStrategy getPrimitiveStrategy() {
+		return strategy;
+	}
+
+	@Override
+	void doOnBid(final Bid bid) {
+		strategy.onQuote(PrimitiveStrategy.SIDE_BID, bid.getFixedPointPrice(), bid.getRemainingQuantity(), bid.getTimestamp().getTime());
+	}
+
+	@Override
+	void doOnAsk(final Ask ask) {
+		strategy.onQuote(PrimitiveStrategy.SIDE_ASK, ask.getFixedPointPrice(), ask.getRemainingQuantity(), ask.getTimestamp().getTime());
+	}
+
+	@Override
+	void doOnTradeTick(final TradeTick tradeTick) {
+		strategy.onTradeTick(tradeTick.getFixedPointPrice(), tradeTick.getSize(), tradeTick.getTimestamp().getTime());
+	}
+
+	@Override
+	protected void doOnFill(final Fill fill) {
+		final int quantity = fill.getQuantity();
+		strategy.onFill(orderId(fill.getClOrdId()), quantity > 0 ? PrimitiveStrategy.SIDE_BID : PrimitiveStrategy.SIDE_ASK, Math.abs(quantity),
+				fill.getFixedPointPrice(), fill.getRemaining(), fill.getTimestamp().getTime());
+	}
+
+	@Override
+	void doOnNewOrderAccepted(final ClOrdId clOrdId, final OrderSpecification order) {
+		strategy.onOrderAccepted(orderId(clOrdId));
+	}
+
+	@Override
+	void doOnNewOrderRejected(final ClOrdId clOrdId) {
+		strategy.onOrderRejected(orderId(clOrdId));
+	}
+
+	@Override
+	void doOnCancelAccepted(final ClOrdId clOrdId, final ClOrdId origClOrdId) {
+		strategy.onCancelAccepted(orderId(origClOrdId));
+	}
+
+	@Override
+	void doOnCancelRejected(final ClOrdId clOrdId) {
+		strategy.onCancelRejected(orderId(clOrdId));
+	}
+
+	@Override
+	void doOnCancelReplaceAccepted(final ClOrdId clOrdId, final OrderSpecification order, final ClOrdId origClOrdId) {
+		strategy.onReplaceAccepted(orderId(clOrdId), orderId(origClOrdId));
+	}
+
+	@Override
+	void doOnCancelReplaceRejected(final ClOrdId clOrdId) {
+		strategy.onReplaceRejected(orderId(clOrdId));
+	}
+
+	@Override
+	protected void doOnTimer(final long timerId, final long timeMillis) {
+		strategy.onTimer(timerId, timeMillis);
+	}
+
+	@Override
+	void doOnPlaybackEnd() {
+		strategy.onPlaybackEnd();
+	}
+}
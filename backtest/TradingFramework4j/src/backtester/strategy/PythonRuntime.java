@@ -0,0 +1,158 @@
+package backtester.strategy;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jpy.PyLib;
+import org.jpy.PyModule;
+import org.jpy.PyObject;
+
+import backtester.common.SimpleLogger;
+
+/**
+ * The embedded Python interpreter shared by every PythonStrategy in the JVM.  The interpreter is started and sys.path extended once,
+ * strategy modules are imported once, and StrategyPlugin instances released by finished runs are handed to later runs of the same
+ * module after _reset(), so repeated runs in one JVM only pay for the run itself.
+ *
+ * With the backtester.pythonReload system property set to true a strategy module is reloaded when its file changed since it was
+ * imported, and plugins created from the old module are dropped.  Only the strategy module itself is reloaded.
+ *
+ * The bundled jpy does not take the GIL per call, so every call into the interpreter goes through a Plugin method and holds this
+ * runtime's lock.  Strategies run on several threads, e.g. by Backtester.testStrategies or BacktestServer workers, take turns in
+ * Python and only their Java side runs in parallel.
+ */
+public class PythonRuntime {
+	private static final SimpleLogger _log = SimpleLogger.getLogger(PythonRuntime.class);
+	private static final String DEFAULT_MODULE = "pyStrategy";
+	private static final PythonRuntime instance = new PythonRuntime(Boolean.getBoolean("backtester.pythonReload"));
+
+	private final boolean reloadChangedModules;
+	private final Map<String, StrategyModule> modules = new HashMap<String, StrategyModule>();
+	private boolean started;
+
+	PythonRuntime(final boolean reloadChangedModules) {
+		this.reloadChangedModules = reloadChangedModules;
+	}
+
+	public static PythonRuntime getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @param pyFile
+	 *            the strategy file, null for the default pyStrategy module
+	 * @return a plugin in its initial state, either new or released by an earlier run and reset
+	 */
+	public synchronized Plugin acquirePlugin(final String pyFile) {
+		final StrategyModule strategyModule = getModule(pyFile);
+		final Plugin plugin = strategyModule.idlePlugins.poll();
+		if (plugin == null) {
+			return new Plugin(this, strategyModule, strategyModule.module.call("StrategyPlugin"));
+		}
+		plugin.object.call("_reset");
+		return plugin;
+	}
+
+	/**
+	 * Makes the plugin available to later runs of the same strategy file.  The caller must not use it afterwards.
+	 */
+	public synchronized void releasePlugin(final Plugin plugin) {
+		// Plugins created before their module was reloaded are dropped
+		if (plugin.generation == plugin.strategyModule.generation) {
+			plugin.strategyModule.idlePlugins.push(plugin);
+		}
+	}
+
+	private StrategyModule getModule(final String pyFile) {
+		if (!started) {
+			if (!PyLib.isPythonRunning()) {
+				PyLib.startPython();
+			}
+			PyModule.extendSysPath(System.getProperty("user.dir"), true);
+			started = true;
+		}
+
+		final String moduleName = moduleName(pyFile);
+		final File file = new File(pyFile == null ? DEFAULT_MODULE + ".py" : pyFile);
+		StrategyModule strategyModule = modules.get(moduleName);
+		if (strategyModule == null) {
+			strategyModule = new StrategyModule(PyModule.importModule(moduleName), file);
+			modules.put(moduleName, strategyModule);
+		} else if (reloadChangedModules && strategyModule.isChanged()) {
+			_log.info("Reloading changed python strategy " + moduleName);
+			PyModule.importModule("__builtin__").call("reload", strategyModule.module);
+			strategyModule.reloaded();
+		}
+		return strategyModule;
+	}
+
+	private static String moduleName(final String pyFile) {
+		return pyFile == null ? DEFAULT_MODULE : new File(pyFile).getName().replace(".py", "");
+	}
+
+	/**
+	 * A StrategyPlugin instance and the module version it was created from.  Its methods hold the runtime's lock while they are in
+	 * Python.
+	 */
+	public static class Plugin {
+		private final PythonRuntime runtime;
+		private final StrategyModule strategyModule;
+		private final int generation;
+		private final PyObject object;
+
+		private Plugin(final PythonRuntime runtime, final StrategyModule strategyModule, final PyObject object) {
+			this.runtime = runtime;
+			this.strategyModule = strategyModule;
+			this.generation = strategyModule.generation;
+			this.object = object;
+		}
+
+		public PyObject call(final String name, final Object... args) {
+			synchronized (runtime) {
+				return object.call(name, args);
+			}
+		}
+
+		public <T> T getAttribute(final String name, final Class<T> valueType) {
+			synchronized (runtime) {
+				return object.getAttribute(name, valueType);
+			}
+		}
+
+		/**
+		 * Converts a value returned by {@link #call(String, Object...)} to Java.
+		 */
+		public Object getObjectValue(final PyObject value) {
+			synchronized (runtime) {
+				return value.getObjectValue();
+			}
+		}
+	}
+
+	private static class StrategyModule {
+		private final PyModule module;
+		private final File file;
+		private final Deque<Plugin> idlePlugins = new ArrayDeque<Plugin>();
+		private long lastModified;
+		private int generation;
+
+		public StrategyModule(final PyModule module, final File file) {
+			this.module = module;
+			this.file = file;
+			lastModified = file.lastModified();
+		}
+
+		public boolean isChanged() {
+			return file.lastModified() != lastModified;
+		}
+
+		public void reloaded() {
+			lastModified = file.lastModified();
+			generation++;
+			idlePlugins.clear();
+		}
+	}
+}
@@ -1,201 +1,503 @@
 package backtester.strategy;
 
-import java.io.File;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
-import org.jpy.PyLib;
-import org.jpy.PyModule;
 import org.jpy.PyObject;
 
+import backtester.common.FixedPoint;
 import backtester.quote.Ask;
 import backtester.quote.Bid;
+import backtester.quote.BookEntry;
+import backtester.quote.BookView;
 import backtester.quote.TradeTick;
 import backtester.simulation.SimulationClOrdId;
+import backtester.strategy.EventSubscription.EventType;
 import backtester.trade.ClOrdId;
 import backtester.trade.Fill;
 import backtester.trade.OrderSpecification;
 import backtester.trade.TradeType;
 
 public class PythonStrategy extends BaseStrategy {
+	// Action codes, must match basestrategy.py
+	static final int ACTION_NEW_ORDER = 1;
+	static final int ACTION_CANCEL = 2;
+	static final int ACTION_CANCEL_REPLACE = 3;
+	static final int ACTION_CANCEL_ALL = 4;
+	static final int ACTION_TIMER_AT = 5;
+	static final int ACTION_TIMER_CANCEL = 6;
+	static final int ACTION_FIELDS = 6;
+	// Client order id passed to the plugin for orders it did not place
+	static final long UNKNOWN_CLORDID = -1;
+	private static final TradeType[] TRADE_TYPES = TradeType.values();
 	
-	PyObject strategy = null;
+	/**
+	 * The plugin methods called for events, and the Java time spent handling the actions they return.
+	 */
+	static enum Callback {
+		BID("_bid"),
+		ASK("_ask"),
+		TRADE_TICK("_trade_tick"),
+		ON_BATCH("_on_batch"),
+		DRAIN("_drain"),
+		FILL("_fill"),
+		CANCEL_ACCEPTED("_cancel_accepted"),
+		CANCEL_ALL_ACCEPTED("_cancel_all_accepted"),
+		CANCEL_REJECTED("_cancel_rejected"),
+		CANCEL_REPLACE_ACCEPTED("_cancel_replace_accepted"),
+		CANCEL_REPLACE_REJECTED("_cancel_replace_rejected"),
+		NEW_ORDER_REJECTED("_new_order_rejected"),
+		NEW_ORDER_ACCEPTED("_new_order_accepted"),
+		TIMER("_timer"),
+		PLAYBACK_END("_playback_end"),
+		HANDLE_ACTIONS("handleActions");
+		
+		private final String methodName;
+		
+		private Callback(final String methodName) {
+			this.methodName = methodName;
+		}
+		
+		@Override
+		public String toString() {
+			return methodName;
+		}
+	}
+	
+	private final PythonRuntime.Plugin plugin;
+	// Time spent per callback, null unless the backtester.profilePython system property is true
+	private final CallbackProfiler<Callback> profiler = Boolean.getBoolean("backtester.profilePython") ? new CallbackProfiler<Callback>(
+			Callback.class) : null;
+	private boolean released;
+	
+	// Python times are milliseconds since midnight, timers are kept by the id Python gave them
+	private final long tradingDayStartMillis;
+	private final Map<Long, Long> timerIds = new HashMap<Long, Long>();
+	private final Map<Long, Long> pythonTimerIds = new HashMap<Long, Long>();
+	// Market events the plugin did not subscribe to are dropped here, before calling into Python
+	private final EventSubscription subscription;
+	// Market events waiting to be delivered in one _on_batch call, null when the plugin did not ask for batches
+	private final MarketEventBatch batch;
+	// Every event written to the buffer shared with the plugin, null when the plugin did not ask for it
+	private final SharedEventBuffer events;
 	
 	public PythonStrategy(final PythonStrategy pythonStrategy, final StrategyConfiguration strategyConfiguration) {
 		super(pythonStrategy, strategyConfiguration);
 		
-		PyLib.startPython();
-		PyModule.extendSysPath(System.getProperty("user.dir"), true);
+		final Calendar tradingDayStart = (Calendar) startOfTrading.clone();
+		tradingDayStart.set(Calendar.HOUR_OF_DAY, 0);
+		tradingDayStart.set(Calendar.MINUTE, 0);
+		tradingDayStartMillis = tradingDayStart.getTimeInMillis();
 		
-		String pyFile = strategyConfiguration.getVariable("pythonStrategy");
-		PyModule pluginModule;
-		if (pyFile != null) {
-			File f = new File(pyFile);
-			pluginModule = PyModule.importModule(f.getName().replace(".py", ""));
-		} else {
-			pluginModule = PyModule.importModule("pyStrategy");
+		// The interpreter, the module and possibly the plugin instance are reused from earlier runs in this JVM
+		plugin = PythonRuntime.getInstance().acquirePlugin(strategyConfiguration.getVariable("pythonStrategy"));
+		plugin.call("_attach_book", new BookView(quoteBook));
+		subscription = EventSubscription.parse(plugin.getAttribute("subscription", String.class));
+		// Order events are always delivered for the plugin's bookkeeping, it only skips the handlers of types it did not subscribe to
+		plugin.call("_subscribe", new Object[] { subscription.getEventTypeNames() });
+		final Integer eventBufferSize = plugin.getAttribute("event_buffer_size", Integer.class);
+		events = eventBufferSize == null || eventBufferSize <= 0 ? null : new SharedEventBuffer(eventBufferSize);
+		if (events != null) {
+			plugin.call("_attach_events", events.getRecords(), events.getIds());
 		}
+		// The shared buffer already delivers market events in runs
+		final Integer batchSize = plugin.getAttribute("batch_size", Integer.class);
+		batch = events != null || batchSize == null || batchSize <= 0 ? null : new MarketEventBatch(batchSize);
 		
-		strategy = pluginModule.call("StrategyPlugin");
-		
+		// Always configured, a reused plugin must not keep the previous run's configuration or signal log
 		String pythonConfig = strategyConfiguration.getVariable("pythonConfig");
-		if (pythonConfig != null) {
-			strategy.call("_config", pythonConfig);
-		}
+		plugin.call("_config", pythonConfig == null ? "" : pythonConfig);
+		plugin.call("_set_log_location", strategyConfiguration.getVariable("signalLog"));
 	}
 
-	public void handleActions(String[] actions) {
-		int numOrders = actions.length / 6;
-		for (int i = 0; i < numOrders; i++) {
-			String action = actions[6*i + 0];
-			String clOrdId = actions[6*i + 1];
-			String origClOrdId = actions[6*i + 2];
-			String price = actions[6*i + 3];
-			String qty = actions[6*i + 4];
-			String type = actions[6*i + 5];
-			
-			ClOrdId id, origId;
-			OrderSpecification order;
-			String symbol = getSymbol();
+	/**
+	 * Runs the actions returned by the plugin.  Every action is ACTION_FIELDS longs: action code, client order id (the plugin's timer id
+	 * for timer actions), original client order id, FixedPoint price (time of day for ACTION_TIMER_AT), quantity and TradeType ordinal
+	 * (-1 when the action has none).
+	 */
+	public void handleActions(final long[] actions) {
+		final String symbol = getSymbol();
+		for (int i = 0; i + ACTION_FIELDS <= actions.length; i += ACTION_FIELDS) {
+			final long clOrdId = actions[i + 1];
+			final long origClOrdId = actions[i + 2];
+			final long price = actions[i + 3];
+			final int qty = (int) actions[i + 4];
+			final int type = (int) actions[i + 5];
+			final TradeType tradeType = type < 0 ? null : TRADE_TYPES[type];
 			
-			TradeType t;
-			switch (type) {
-			case "buy":
-				t = TradeType.BUY;
+			switch ((int) actions[i]) {
+			case ACTION_NEW_ORDER:
+				placeOrder(new SimulationClOrdId(clOrdId), new OrderSpecification(symbol, FixedPoint.toBigDecimal(price), qty, tradeType));
 				break;
-			case "sell":
-				t = TradeType.SELL;
+			case ACTION_CANCEL:
+				cancelOrder(new SimulationClOrdId(clOrdId), new SimulationClOrdId(origClOrdId));
 				break;
-			case "cover":
-				t = TradeType.COVER;
+			case ACTION_CANCEL_REPLACE:
+				cancelReplaceOrder(new SimulationClOrdId(clOrdId), new SimulationClOrdId(origClOrdId),
+						new OrderSpecification(symbol, FixedPoint.toBigDecimal(price), qty, tradeType));
 				break;
-			case "short":
-				t = TradeType.SHORT;
+			case ACTION_CANCEL_ALL:
+				cancelAll(new SimulationClOrdId(clOrdId));
 				break;
-			default:
-				t = null;
-			}
-			
-			switch (action) {
-			case "NO": // New Order
-				order = new OrderSpecification(symbol, new BigDecimal(price), Integer.parseInt(qty), t);
-				id = new SimulationClOrdId(Long.parseLong(clOrdId));
-				placeOrder(id, order);
+			case ACTION_TIMER_AT:
+				final long timerId = scheduleTimerAt(tradingDayStartMillis + price);
+				timerIds.put(clOrdId, timerId);
+				pythonTimerIds.put(timerId, clOrdId);
 				break;
-			case "CO": // Cancel Order
-				id = new SimulationClOrdId(Long.parseLong(clOrdId));
-				origId = new SimulationClOrdId(Long.parseLong(origClOrdId));
-				cancelOrder(id, origId);
-				break;
-			case "CR": // Cancel Replace
-				order = new OrderSpecification(symbol, new BigDecimal(price), Integer.parseInt(qty), t);
-				id = new SimulationClOrdId(Long.parseLong(clOrdId));
-				origId = new SimulationClOrdId(Long.parseLong(origClOrdId));
-				cancelReplaceOrder(id, origId, order);
-				break;
-			case "CA": // Cancel All
-				id = new SimulationClOrdId(Long.parseLong(clOrdId));
-				cancelAll(id);
+			case ACTION_TIMER_CANCEL:
+				final Long canceledTimerId = timerIds.remove(origClOrdId);
+				if (canceledTimerId != null) {
+					pythonTimerIds.remove(canceledTimerId);
+					cancelTimer(canceledTimerId);
+				}
 				break;
 			default:
-				throw new IllegalArgumentException("Unknown action type");
+				throw new IllegalArgumentException("Unknown action type: " + actions[i]);
 			}
 		}
 	}
 	
-	private String cid(ClOrdId id) {
-		return id.toString().replace("clOrd-","");
+	/**
+	 * A callback that returns None, or nothing at all, has no actions.
+	 */
+	private void handleActions(final PyObject ret) {
+		final long[] actions = ret == null ? null : (long[]) plugin.getObjectValue(ret);
+		if (actions == null) {
+			return;
+		}
+		if (profiler == null) {
+			handleActions(actions);
+			return;
+		}
+		// Includes the callbacks the actions trigger synchronously, e.g. acks without latency
+		final long wallStart = profiler.startWall();
+		final long cpuStart = profiler.startCpu();
+		try {
+			handleActions(actions);
+		} finally {
+			profiler.record(Callback.HANDLE_ACTIONS, wallStart, cpuStart);
+		}
+	}
+	
+	private PyObject call(final Callback callback, final Object... args) {
+		if (profiler == null) {
+			return plugin.call(callback.methodName, args);
+		}
+		final long wallStart = profiler.startWall();
+		final long cpuStart = profiler.startCpu();
+		try {
+			return plugin.call(callback.methodName, args);
+		} finally {
+			profiler.record(callback, wallStart, cpuStart);
+		}
+	}
+	
+	private static long cid(final ClOrdId id) {
+		return id instanceof SimulationClOrdId ? ((SimulationClOrdId) id).getNumericId() : UNKNOWN_CLORDID;
+	}
+	
+	/**
+	 * Delivers the market events collected so far.  Called before every event the strategy's orders or timers could depend on, so the
+	 * plugin always sees the market in order up to that event.
+	 */
+	private void flushBatch() {
+		if (batch == null || batch.isEmpty()) {
+			return;
+		}
+		PyObject ret = call(Callback.ON_BATCH, getSymbol(), batch.size(), batch.getSides(), batch.getIds(), batch.getQuantities(),
+				batch.getPrices(), batch.getTimes());
+		// Cleared before the actions are handled, placing an order can call back into flushBatch()
+		batch.clear();
+		handleActions(ret);
+	}
+	
+	/**
+	 * Lets the plugin process the events written to the shared buffer so far.  Called when the buffer is full and after every order
+	 * event and timer.
+	 */
+	private void drainEvents() {
+		if (events == null || events.isEmpty()) {
+			return;
+		}
+		PyObject ret = call(Callback.DRAIN, getSymbol(), events.size());
+		// Cleared before the actions are handled, placing an order can call back into drainEvents()
+		events.clear();
+		handleActions(ret);
+	}
+	
+	/**
+	 * Delivers the bids, asks and trade ticks held back by the subscription's minimum interval whose interval ended by timeMillis.
+	 */
+	private void deliverExpiredQuotes(final long timeMillis) {
+		Object event;
+		while ((event = subscription.pollExpired(timeMillis)) != null) {
+			deliverQuote(event);
+		}
+	}
+	
+	private void deliverQuote(final Object event) {
+		if (event instanceof Bid) {
+			deliverBid((Bid) event);
+		} else if (event instanceof Ask) {
+			deliverAsk((Ask) event);
+		} else {
+			deliverTradeTick((TradeTick) event);
+		}
 	}
 	
 	@Override
 	void doOnBid(final Bid bid) {
+		final long timeMillis = bid.getTimestamp().getTime();
+		deliverExpiredQuotes(timeMillis);
+		if (subscription.wantsBookEntry(EventType.BID, bid, quoteBook, timeMillis)) {
+			deliverBid(bid);
+		}
+	}
+	
+	private void deliverBid(final Bid bid) {
+		if (events != null) {
+			if (events.addBookEntry(SharedEventBuffer.BID, bid)) {
+				drainEvents();
+			}
+			return;
+		}
+		if (batch != null) {
+			if (batch.addBid(bid)) {
+				flushBatch();
+			}
+			return;
+		}
 		String id = bid.getId().toString();
 		long qty = bid.getRemainingQuantity();
-		String price = bid.getPrice().setScale(4, RoundingMode.UNNECESSARY).toPlainString();
-		PyObject ret = strategy.call("_bid", bid.getSymbol(), id, qty, price, bid.getMilliTimestamp());
-		String[] actions = ret.getObjectArrayValue(String.class);
-		handleActions(actions);
+		PyObject ret = call(Callback.BID, bid.getSymbol(), id, qty, bid.getFixedPointPrice(), bid.getMilliTimestamp());
+		handleActions(ret);
 	}
 	
 	@Override
 	void doOnAsk(final Ask ask) {
+		final long timeMillis = ask.getTimestamp().getTime();
+		deliverExpiredQuotes(timeMillis);
+		if (subscription.wantsBookEntry(EventType.ASK, ask, quoteBook, timeMillis)) {
+			deliverAsk(ask);
+		}
+	}
+	
+	private void deliverAsk(final Ask ask) {
+		if (events != null) {
+			if (events.addBookEntry(SharedEventBuffer.ASK, ask)) {
+				drainEvents();
+			}
+			return;
+		}
+		if (batch != null) {
+			if (batch.addAsk(ask)) {
+				flushBatch();
+			}
+			return;
+		}
 		String id = ask.getId().toString();
 		long qty = ask.getRemainingQuantity();
-		String price = ask.getPrice().setScale(4, RoundingMode.UNNECESSARY).toPlainString();
-		PyObject ret = strategy.call("_ask", ask.getSymbol(), id, qty, price, ask.getMilliTimestamp());
-		String[] actions = ret.getObjectArrayValue(String.class);
-		handleActions(actions);
+		PyObject ret = call(Callback.ASK, ask.getSymbol(), id, qty, ask.getFixedPointPrice(), ask.getMilliTimestamp());
+		handleActions(ret);
 	}
 	
 	@Override
 	void doOnTradeTick(final TradeTick tradeTick) {
+		final long timeMillis = tradeTick.getTimestamp().getTime();
+		deliverExpiredQuotes(timeMillis);
+		if (subscription.wantsTradeTick(tradeTick, timeMillis)) {
+			deliverTradeTick(tradeTick);
+		}
+	}
+	
+	private void deliverTradeTick(final TradeTick tradeTick) {
+		if (events != null) {
+			if (events.addTradeTick(tradeTick)) {
+				drainEvents();
+			}
+			return;
+		}
+		if (batch != null) {
+			if (batch.addTradeTick(tradeTick)) {
+				flushBatch();
+			}
+			return;
+		}
 		long qty = tradeTick.getSize();
-		String price = tradeTick.getPrice().setScale(4, RoundingMode.DOWN).toPlainString();
-		PyObject ret = strategy.call("_trade_tick", tradeTick.getSymbol(), qty, price, tradeTick.getMilliTimestamp());
-		String[] actions = ret.getObjectArrayValue(String.class);
-		handleActions(actions);
-	};
+		PyObject ret = call(Callback.TRADE_TICK, tradeTick.getSymbol(), qty, tradeTick.getFixedPointPrice(), tradeTick.getMilliTimestamp());
+		handleActions(ret);
+	}
 	
 	@Override	
 	public void doOnFill(final Fill fill) {
+		flushBatch();
+		if (events != null) {
+			events.addFill(cid(fill.getClOrdId()), fill);
+			drainEvents();
+			return;
+		}
 		long qty = fill.getQuantity();
 		long remainingQty = fill.getRemaining();
-		String price = fill.getPrice().setScale(4, RoundingMode.UNNECESSARY).toPlainString();
-		PyObject ret = strategy.call("_fill", fill.getSymbol(), cid(fill.getClOrdId()), qty, remainingQty, price, fill.getMilliTimestamp());
-		String[] actions = ret.getObjectArrayValue(String.class);
-		handleActions(actions);
+		PyObject ret = call(Callback.FILL, fill.getSymbol(), cid(fill.getClOrdId()), qty, remainingQty, fill.getFixedPointPrice(),
+				fill.getMilliTimestamp());
+		handleActions(ret);
 	}
 	
 	@Override
 	void doOnCancelAccepted(final ClOrdId clOrdId, final ClOrdId origClOrdId) {
-		PyObject ret = strategy.call("_cancel_accepted", cid(clOrdId), cid(origClOrdId));
-		String[] actions = ret.getObjectArrayValue(String.class);
-		handleActions(actions);
+		flushBatch();
+		if (events != null) {
+			events.addOrderEvent(SharedEventBuffer.CANCEL_ACCEPTED, cid(clOrdId), cid(origClOrdId));
+			drainEvents();
+			return;
+		}
+		PyObject ret = call(Callback.CANCEL_ACCEPTED, cid(clOrdId), cid(origClOrdId));
+		handleActions(ret);
+	};
+	
+	@Override
+	void doOnCancelAllAccepted(final ClOrdId clOrdId, final List<BookEntry> canceledBookEntries) {
+		flushBatch();
+		if (events != null) {
+			for (final BookEntry entry : canceledBookEntries) {
+				if (events.addCanceledByCancelAll(cid(clOrdId), cid(entry.getClOrdId()), entry)) {
+					drainEvents();
+				}
+			}
+			drainEvents();
+			return;
+		}
+		// One call for the whole batch
+		final long[] origClOrdIds = new long[canceledBookEntries.size()];
+		for (int i = 0; i < origClOrdIds.length; i++) {
+			origClOrdIds[i] = cid(canceledBookEntries.get(i).getClOrdId());
+		}
+		PyObject ret = call(Callback.CANCEL_ALL_ACCEPTED, cid(clOrdId), origClOrdIds);
+		handleActions(ret);
 	};
 	
 	@Override
 	void doOnCancelRejected(final ClOrdId clOrdId) {
-		PyObject ret = strategy.call("_cancel_rejected", cid(clOrdId));
-		String[] actions = ret.getObjectArrayValue(String.class);
-		handleActions(actions);
+		flushBatch();
+		if (events != null) {
+			events.addOrderEvent(SharedEventBuffer.CANCEL_REJECTED, cid(clOrdId), 0);
+			drainEvents();
+			return;
+		}
+		PyObject ret = call(Callback.CANCEL_REJECTED, cid(clOrdId));
+		handleActions(ret);
 	};
 	
 	@Override
 	void doOnCancelReplaceAccepted(final ClOrdId clOrdId, final OrderSpecification order, final ClOrdId origClOrdId) {
-		PyObject ret = strategy.call("_cancel_replace_accepted", cid(clOrdId), cid(origClOrdId));
-		String[] actions = ret.getObjectArrayValue(String.class);
-		handleActions(actions);
+		flushBatch();
+		if (events != null) {
+			events.addOrderEvent(SharedEventBuffer.REPLACE_ACCEPTED, cid(clOrdId), cid(origClOrdId));
+			drainEvents();
+			return;
+		}
+		PyObject ret = call(Callback.CANCEL_REPLACE_ACCEPTED, cid(clOrdId), cid(origClOrdId));
+		handleActions(ret);
 	}
 	
 	@Override
 	void doOnCancelReplaceRejected(final ClOrdId clOrdId) {
-		PyObject ret = strategy.call("_cancel_replace_rejected", cid(clOrdId));
-		String[] actions = ret.getObjectArrayValue(String.class);
-		handleActions(actions);
+		flushBatch();
+		if (events != null) {
+			events.addOrderEvent(SharedEventBuffer.REPLACE_REJECTED, cid(clOrdId), 0);
+			drainEvents();
+			return;
+		}
+		PyObject ret = call(Callback.CANCEL_REPLACE_REJECTED, cid(clOrdId));
+		handleActions(ret);
 	};
 	
 	@Override
 	void doOnNewOrderRejected(final ClOrdId clOrdId) {
-		PyObject ret = strategy.call("_new_order_rejected", cid(clOrdId));
-		String[] actions = ret.getObjectArrayValue(String.class);
-		handleActions(actions);
+		flushBatch();
+		if (events != null) {
+			events.addOrderEvent(SharedEventBuffer.ORDER_REJECTED, cid(clOrdId), 0);
+			drainEvents();
+			return;
+		}
+		PyObject ret = call(Callback.NEW_ORDER_REJECTED, cid(clOrdId));
+		handleActions(ret);
 	};
 
 	@Override
 	void doOnNewOrderAccepted(final ClOrdId clOrdId, final OrderSpecification order) {
-		PyObject ret = strategy.call("_new_order_accepted", cid(clOrdId));
-		String[] actions = ret.getObjectArrayValue(String.class);
-		handleActions(actions);
+		flushBatch();
+		if (events != null) {
+			events.addOrderEvent(SharedEventBuffer.ORDER_ACCEPTED, cid(clOrdId), 0);
+			drainEvents();
+			return;
+		}
+		PyObject ret = call(Callback.NEW_ORDER_ACCEPTED, cid(clOrdId));
+		handleActions(ret);
+	}
+	
+	@Override
+	protected void doOnTimer(final long timerId, final long timeMillis) {
+		deliverExpiredQuotes(timeMillis);
+		flushBatch();
+		final Long pythonTimerId = pythonTimerIds.remove(timerId);
+		timerIds.remove(pythonTimerId);
+		if (events != null) {
+			events.addTimer(pythonTimerId, timeMillis - tradingDayStartMillis);
+			drainEvents();
+			return;
+		}
+		PyObject ret = call(Callback.TIMER, pythonTimerId, timeMillis - tradingDayStartMillis);
+		handleActions(ret);
 	}
 	
 	@Override
 	void doOnPlaybackEnd() {
-		strategy.call("_playback_end");
+		Object event;
+		while ((event = subscription.pollPending()) != null) {
+			deliverQuote(event);
+		}
+		flushBatch();
+		drainEvents();
+		call(Callback.PLAYBACK_END);
 	}
 
+	/**
+	 * Hands the plugin back to the PythonRuntime for later runs.
+	 */
+	@Override
+	public void close() {
+		if (!released) {
+			PythonRuntime.getInstance().releasePlugin(plugin);
+			released = true;
+		}
+	}
+
+	@Override
+	public String getStrategySpecificCustomEndOfDayReport() {
+		if (profiler == null) {
+			return "";
+		}
+		return NEW_LINE + "----- Python Callback Profile -----" + NEW_LINE + profiler.getReport(NEW_LINE);
+	}
+	
 	@Override
 	public void reset() {
 		super.reset();
-		strategy.call("_reset");
+		timerIds.clear();
+		pythonTimerIds.clear();
+		subscription.reset();
+		if (profiler != null) {
+			profiler.clear();
+		}
+		if (batch != null) {
+			batch.clear();
+		}
+		if (events != null) {
+			events.clear();
+		}
+		plugin.call("_reset");
 	}
 }
@@ -0,0 +1,153 @@
+package backtester.strategy;
+
+import backtester.quote.Bid;
+import backtester.quote.BookEntry;
+import backtester.quote.TradeTick;
+import backtester.trade.Fill;
+
+/**
+ * Market and order events written as fixed size records into one long[] that is handed to an embedded strategy once and reused for
+ * the whole run, so delivering a run of events only passes its length.  Record i starts at records[i * FIELDS]:
+ *
+ * TYPE - one of the event types below
+ * CLORDID - client order id of fills and order events, the strategy's own timer id for TIMER
+ * ORIG_CLORDID - original client order id of CANCEL_ACCEPTED, REPLACE_ACCEPTED and CANCEL_ALL_ACCEPTED
+ * SIDE - SIDE_BID or SIDE_ASK for bids, asks and CANCEL_ALL_ACCEPTED
+ * PRICE - FixedPoint price
+ * QUANTITY - remaining quantity of bids and asks, size of trade ticks, signed quantity of fills
+ * REMAINING - remaining quantity of fills
+ * TIME - milliseconds since midnight, 0 for order events
+ *
+ * Fields a type does not use are 0.  ids[i] is the book entry id of bids, asks and CANCEL_ALL_ACCEPTED and null otherwise.  A canceled
+ * order of a cancel all is one CANCEL_ALL_ACCEPTED record.  This class is not thread-safe.
+ */
+public class SharedEventBuffer {
+	public static final int TYPE = 0;
+	public static final int CLORDID = 1;
+	public static final int ORIG_CLORDID = 2;
+	public static final int SIDE = 3;
+	public static final int PRICE = 4;
+	public static final int QUANTITY = 5;
+	public static final int REMAINING = 6;
+	public static final int TIME = 7;
+	public static final int FIELDS = 8;
+
+	public static final int BID = 0;
+	public static final int ASK = 1;
+	public static final int TRADE = 2;
+	public static final int FILL = 3;
+	public static final int ORDER_ACCEPTED = 4;
+	public static final int ORDER_REJECTED = 5;
+	public static final int CANCEL_ACCEPTED = 6;
+	public static final int CANCEL_REJECTED = 7;
+	public static final int CANCEL_ALL_ACCEPTED = 8;
+	public static final int REPLACE_ACCEPTED = 9;
+	public static final int REPLACE_REJECTED = 10;
+	public static final int TIMER = 11;
+
+	public static final int SIDE_BID = PrimitiveStrategy.SIDE_BID;
+	public static final int SIDE_ASK = PrimitiveStrategy.SIDE_ASK;
+
+	private final long[] records;
+	private final String[] ids;
+	private int size;
+
+	public SharedEventBuffer(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Buffer capacity must be positive: " + capacity);
+		}
+		records = new long[capacity * FIELDS];
+		ids = new String[capacity];
+	}
+
+	/**
+	 * @param type
+	 *            BID or ASK
+	 * @return true if the buffer is full and has to be drained before the next event is added
+	 */
+	public boolean addBookEntry(final int type, final BookEntry bookEntry) {
+		final int side = type == BID ? SIDE_BID : SIDE_ASK;
+		return add(type, 0, 0, side, bookEntry.getFixedPointPrice(), bookEntry.getRemainingQuantity(), 0, bookEntry.getMilliTimestamp(),
+				String.valueOf(bookEntry.getId()));
+	}
+
+	/**
+	 * @return true if the buffer is full and has to be drained before the next event is added
+	 */
+	public boolean addTradeTick(final TradeTick tradeTick) {
+		return add(TRADE, 0, 0, 0, tradeTick.getFixedPointPrice(), tradeTick.getSize(), 0, tradeTick.getMilliTimestamp(), null);
+	}
+
+	/**
+	 * @return true if the buffer is full and has to be drained before the next event is added
+	 */
+	public boolean addFill(final long clOrdId, final Fill fill) {
+		return add(FILL, clOrdId, 0, 0, fill.getFixedPointPrice(), fill.getQuantity(), fill.getRemaining(), fill.getMilliTimestamp(), null);
+	}
+
+	/**
+	 * @param origClOrdId
+	 *            0 for events without an original order
+	 * @return true if the buffer is full and has to be drained before the next event is added
+	 */
+	public boolean addOrderEvent(final int type, final long clOrdId, final long origClOrdId) {
+		return add(type, clOrdId, origClOrdId, 0, 0, 0, 0, 0, null);
+	}
+
+	/**
+	 * @return true if the buffer is full and has to be drained before the next event is added
+	 */
+	public boolean addCanceledByCancelAll(final long clOrdId, final long origClOrdId, final BookEntry canceled) {
+		return add(CANCEL_ALL_ACCEPTED, clOrdId, origClOrdId, canceled instanceof Bid ? SIDE_BID : SIDE_ASK, 0, 0, 0, 0,
+				String.valueOf(canceled.getId()));
+	}
+
+	/**
+	 * @return true if the buffer is full and has to be drained before the next event is added
+	 */
+	public boolean addTimer(final long timerId, final long time) {
+		return add(TIMER, timerId, 0, 0, 0, 0, 0, time, null);
+	}
+
+	private boolean add(final int type, final long clOrdId, final long origClOrdId, final int side, final long price, final long quantity,
+			final long remaining, final long time, final String id) {
+		if (size == ids.length) {
+			throw new IllegalStateException("Buffer is full");
+		}
+		final int offset = size * FIELDS;
+		records[offset + TYPE] = type;
+		records[offset + CLORDID] = clOrdId;
+		records[offset + ORIG_CLORDID] = origClOrdId;
+		records[offset + SIDE] = side;
+		records[offset + PRICE] = price;
+		records[offset + QUANTITY] = quantity;
+		records[offset + REMAINING] = remaining;
+		records[offset + TIME] = time;
+		ids[size] = id;
+		size++;
+		return size == ids.length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			ids[i] = null;
+		}
+		size = 0;
+	}
+
+	public long[] getRecords() {
+		return records;
+	}
+
+	public String[] getIds() {
+		return ids;
+	}
+}
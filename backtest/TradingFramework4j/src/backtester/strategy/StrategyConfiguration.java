@@ -4,6 +4,8 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+import backtester.simulation.SimulationContext;
+import backtester.simulation.SimulationMarket;
 import backtester.trade.DoNothingTradeDestination;
 import backtester.trade.TradeDestination;
 
@@ -11,6 +13,7 @@ public class StrategyConfiguration {
     private final TradeDestination tradeDestination;
     private final Date tradingDate;
     private final Map<String, String> miscConfig;
+    private final SimulationContext simulationContext;
 
     /**
      * Create new strategy configuration using an existing configuration .
@@ -32,6 +35,7 @@ public class StrategyConfiguration {
         this.tradeDestination = tradeDestination;
         this.tradingDate = tradingDate;
         this.miscConfig = miscConfig;
+        this.simulationContext = createSimulationContext(tradeDestination);
     }
     
     public StrategyConfiguration(final TradeDestination tradeDestination,
@@ -39,6 +43,17 @@ public class StrategyConfiguration {
         this.tradeDestination = tradeDestination;
         this.tradingDate = tradingDate;
         this.miscConfig = new HashMap<String, String>();
+        this.simulationContext = createSimulationContext(tradeDestination);
+    }
+
+    /**
+     * Strategies trading against a simulation market share its context, anything else gets a context of its own.
+     */
+    private static SimulationContext createSimulationContext(final TradeDestination tradeDestination) {
+        if (tradeDestination instanceof SimulationMarket) {
+            return ((SimulationMarket) tradeDestination).getSimulationContext();
+        }
+        return new SimulationContext();
     }
 
     public TradeDestination getTradeDestination() {
@@ -48,6 +63,10 @@ public class StrategyConfiguration {
     public Date getTradingDate() {
         return tradingDate;
     }
+
+    public SimulationContext getSimulationContext() {
+        return simulationContext;
+    }
     
     public void setVariable(String key, String value) {
     	miscConfig.put(key, value);
@@ -3,7 +3,11 @@ package backtester.trade;
 import java.math.BigDecimal;
 import java.util.Date;
 
+import backtester.common.FixedPoint;
+
 public class Fill {
+	private static final long NO_FIXED_POINT_PRICE = Long.MIN_VALUE;
+
 	private final OrderId orderId;
 	private final String symbol;
 	private final int quantity; // negative quantity for sell/short, positive for buy/cover
@@ -12,6 +16,7 @@ public class Fill {
 	private final Date timestamp;
 	private final ClOrdId clOrdId;
 	private final LiquidityFlag liquidityFlag;
+	private long fixedPointPrice = NO_FIXED_POINT_PRICE;
 
 	public Fill(final ClOrdId clOrdId, final OrderId orderId, final String symbol, final int quantity, final BigDecimal price,
 			final int remaining, final Date timestamp, final LiquidityFlag liquidityFlag) {
@@ -47,6 +52,16 @@ public class Fill {
 		return price;
 	}
 
+	/**
+	 * @return the price in FixedPoint units, converted on the first call and cached
+	 */
+	public long getFixedPointPrice() {
+		if (fixedPointPrice == NO_FIXED_POINT_PRICE) {
+			fixedPointPrice = FixedPoint.fromBigDecimal(price);
+		}
+		return fixedPointPrice;
+	}
+
 	public int getRemaining() {
 		return remaining;
 	}
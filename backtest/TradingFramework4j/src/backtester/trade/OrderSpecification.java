@@ -5,15 +5,19 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
+import backtester.common.FixedPoint;
 import backtester.quote.Ask;
 import backtester.quote.Bid;
 import backtester.quote.BookEntry;
 
 public class OrderSpecification {
 
+    private static final long NO_FIXED_POINT_PRICE = Long.MIN_VALUE;
+
     private static AtomicLong uniqueId = new AtomicLong();
     private final Long id;
     private BigDecimal price;
+    private long fixedPointPrice = NO_FIXED_POINT_PRICE;
     private int quantity;
     private int amountFilled;
     private String symbol;
@@ -98,6 +102,17 @@ public class OrderSpecification {
 
     public void setPrice(final BigDecimal price) {
         this.price = price;
+        fixedPointPrice = NO_FIXED_POINT_PRICE;
+    }
+
+    /**
+     * @return the price in FixedPoint units, converted on the first call after the price was set and cached
+     */
+    public long getFixedPointPrice() {
+        if (fixedPointPrice == NO_FIXED_POINT_PRICE) {
+            fixedPointPrice = FixedPoint.fromBigDecimal(price);
+        }
+        return fixedPointPrice;
     }
 
     public int getQuantity() {
@@ -4,26 +4,34 @@ import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
 
+import backtester.common.FixedPoint;
+
+/**
+ * View of a PositionEngine with BigDecimal amounts.  Positions created with the copy constructor or from amounts get an engine of
+ * their own, positions created from an engine show its live state.
+ */
 public class Position {
 
 	private final String symbol;
-	private BigDecimal closedPL;
-	private BigDecimal totalCost;
-	private BigDecimal shares;
+	private final PositionEngine engine;
 	final static MathContext MATH_CONTEXT = new MathContext(16, RoundingMode.HALF_EVEN);
 
 	public Position() {
 		symbol = "";
-		closedPL = BigDecimal.ZERO;
-		totalCost = BigDecimal.ZERO;
-		shares = BigDecimal.ZERO;
+		engine = new PositionEngine();
 	}
 
 	public Position(final Position other) {
 		symbol = other.symbol;
-		closedPL = other.closedPL;
-		totalCost = other.totalCost;
-		shares = other.shares;
+		engine = new PositionEngine(other.engine);
+	}
+
+	public Position(final String symbol, final PositionEngine engine) {
+		if (symbol == null || engine == null) {
+			throw new IllegalArgumentException();
+		}
+		this.symbol = symbol;
+		this.engine = engine;
 	}
 
 	public Position(final String symbol, final BigDecimal shares, final BigDecimal totalCost, final BigDecimal closedPl) {
@@ -37,83 +45,55 @@ public class Position {
 		}
 
 		this.symbol = symbol;
-		this.closedPL = closedPl;
-		this.totalCost = totalCost;
-		this.shares = shares;
+		this.engine = new PositionEngine(shares.longValue(), FixedPoint.fromBigDecimal(totalCost), FixedPoint.fromBigDecimal(closedPl));
 	}
 
 	public String getSymbol() {
 		return symbol;
 	}
 
+	public PositionEngine getEngine() {
+		return engine;
+	}
+
 	public BigDecimal getClosedPL() {
-		return closedPL;
+		return FixedPoint.toBigDecimal(engine.getClosedPL());
+	}
+
+	/**
+	 * @return PnL of the open shares at the engine's mark price, zero if the position was never marked
+	 */
+	public BigDecimal getUnrealizedPL() {
+		return FixedPoint.toBigDecimal(engine.getUnrealizedPL());
 	}
 
 	public BigDecimal getTotalCost() {
-		return totalCost;
+		return FixedPoint.toBigDecimal(engine.getTotalCost());
 	}
 
 	public BigDecimal getShares() {
-		return shares;
+		return BigDecimal.valueOf(engine.getShares());
 	}
 
 	public BigDecimal getAveragePrice() {
-		if (shares.compareTo(BigDecimal.ZERO) != 0) {
-			return totalCost.divide(shares, MATH_CONTEXT);
+		if (engine.getShares() != 0) {
+			return getTotalCost().divide(getShares(), MATH_CONTEXT);
 		} else {
 			return BigDecimal.ZERO;
 		}
 	}
 
-	private BigDecimal getAmountClosed(final BigDecimal fillQty) {
-
-		if (fillQty.signum() == shares.signum()) {
-			return BigDecimal.ZERO;
-		}
-
-		if (shares.abs().compareTo(fillQty.abs()) == -1) {
-			return shares.abs();
-		} else {
-			return fillQty.abs();
-		}
-	}
-
 	public void applyFill(final Fill fill) {
-		final BigDecimal fillQty = new BigDecimal(fill.getQuantity()); //positive for buy/negative for sells
-		final BigDecimal fillSign = new BigDecimal(fillQty.signum());
-
-		final BigDecimal amountClosed = getAmountClosed(fillQty); //always positive
-		final BigDecimal amountOpened = fillQty.abs().subtract(amountClosed); //always positive
-
-		// update profit
-		final BigDecimal rateDifferential = fill.getPrice().subtract(getAveragePrice());
-		final BigDecimal additionalProfitOrLoss = amountClosed.multiply(rateDifferential);
-
-		closedPL = closedPL.add(additionalProfitOrLoss.multiply(new BigDecimal(shares.signum())));
-
-		// update cost
-		if (amountOpened.compareTo(BigDecimal.ZERO) > 0 && amountClosed.compareTo(BigDecimal.ZERO) > 0 || shares.compareTo(BigDecimal.ZERO) == 0) {
-			totalCost = fill.getPrice().multiply(amountOpened).multiply(fillSign);
-		} else if (amountOpened.compareTo(BigDecimal.ZERO) > 0) {
-			totalCost = totalCost.add(fill.getPrice().multiply(amountOpened).multiply(fillSign));
-		} else if (amountClosed.compareTo(BigDecimal.ZERO) > 0) {
-			final BigDecimal avgPrice = getAveragePrice();
-			final BigDecimal costOfSoldShares = avgPrice.multiply(amountClosed).multiply(fillSign).negate();
-
-			totalCost = totalCost.subtract(costOfSoldShares);
-		}
-
-		shares = shares.add(fillQty);
+		engine.applyFill(fill.getQuantity(), fill.getFixedPointPrice());
 	}
 
 	public boolean isFlat() {
-		return shares.compareTo(BigDecimal.ZERO) == 0;
+		return engine.getShares() == 0;
 	}
 
 	@Override
 	public int hashCode() {
-		return 3 * closedPL.hashCode() + 31 * shares.hashCode() + 11 * totalCost.hashCode();
+		return (int) (3 * engine.getClosedPL() + 31 * engine.getShares() + 11 * engine.getTotalCost());
 	}
 
 	@Override
@@ -123,10 +103,8 @@ public class Position {
 		}
 		final Position other = (Position) obj;
 
-		// Using compareTo() instead of equals() since we want bigDecimals of difference scale to be equal (ie '2.0' == '2.00')
-		// for the purposes of this method
-		return symbol.equals(other.symbol) && closedPL.compareTo(other.closedPL) == 0 && shares.compareTo(other.shares) == 0
-				&& totalCost.compareTo(other.totalCost) == 0;
+		return symbol.equals(other.symbol) && engine.getClosedPL() == other.engine.getClosedPL()
+				&& engine.getShares() == other.engine.getShares() && engine.getTotalCost() == other.engine.getTotalCost();
 
 	}
 
@@ -135,10 +113,10 @@ public class Position {
 		final StringBuilder sb = new StringBuilder();
 
 		sb.append("\n**Position for: " + symbol + "\n");
-		sb.append("**Total cost: " + totalCost + "\n");
+		sb.append("**Total cost: " + getTotalCost() + "\n");
 		sb.append("**Average Price: " + getAveragePrice() + "\n");
-		sb.append("**Total shares: " + shares + "\n");
-		sb.append("**Closed PL: " + closedPL + "\n");
+		sb.append("**Total shares: " + getShares() + "\n");
+		sb.append("**Closed PL: " + getClosedPL() + "\n");
 		sb.append("**End Position**\n");
 
 		return sb.toString();
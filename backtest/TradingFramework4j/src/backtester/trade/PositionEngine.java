@@ -0,0 +1,101 @@
+package backtester.trade;
+
+import backtester.common.FixedPoint;
+
+/**
+ * Position accounting in FixedPoint longs: shares held, cost basis and closed PnL, plus unrealized PnL against a mark price.  Applying
+ * a fill does not allocate.  The cost of shares closed out is the cost basis times the fraction of the position closed, rounded half
+ * even to FixedPoint, so closing a whole position always removes its whole cost.
+ */
+public class PositionEngine {
+	private long shares;
+	private long totalCost;
+	private long closedPL;
+	private long markPrice;
+	private boolean marked;
+
+	public PositionEngine() {
+	}
+
+	public PositionEngine(final long shares, final long totalCost, final long closedPL) {
+		this.shares = shares;
+		this.totalCost = totalCost;
+		this.closedPL = closedPL;
+	}
+
+	public PositionEngine(final PositionEngine other) {
+		shares = other.shares;
+		totalCost = other.totalCost;
+		closedPL = other.closedPL;
+		markPrice = other.markPrice;
+		marked = other.marked;
+	}
+
+	/**
+	 * @param quantity
+	 *            positive for buy/cover, negative for sell/short
+	 * @param price
+	 *            FixedPoint fill price
+	 */
+	public void applyFill(final long quantity, final long price) {
+		final long fillSign = Long.signum(quantity);
+		final long positionSign = Long.signum(shares);
+		final long amountClosed = fillSign == positionSign ? 0 : Math.min(Math.abs(shares), Math.abs(quantity));
+		final long amountOpened = Math.abs(quantity) - amountClosed;
+
+		if (amountClosed > 0) {
+			final long closedCost = FixedPoint.multiplyDivide(totalCost, amountClosed, Math.abs(shares));
+			closedPL += positionSign * amountClosed * price - closedCost;
+			totalCost -= closedCost;
+		}
+		if (amountOpened > 0) {
+			// Flipping from long to short or back leaves only the newly opened shares in the cost basis
+			totalCost = (amountClosed > 0 || shares == 0 ? 0 : totalCost) + fillSign * amountOpened * price;
+		}
+
+		shares += quantity;
+	}
+
+	/**
+	 * Sets the price open shares are valued at for unrealized PnL, usually the midpoint.
+	 */
+	public void mark(final long price) {
+		markPrice = price;
+		marked = true;
+	}
+
+	public boolean isMarked() {
+		return marked;
+	}
+
+	public long getMarkPrice() {
+		return markPrice;
+	}
+
+	/**
+	 * @return FixedPoint PnL of the open shares at the mark price, zero before the first mark
+	 */
+	public long getUnrealizedPL() {
+		return marked ? shares * markPrice - totalCost : 0;
+	}
+
+	public long getShares() {
+		return shares;
+	}
+
+	public long getTotalCost() {
+		return totalCost;
+	}
+
+	public long getClosedPL() {
+		return closedPL;
+	}
+
+	public void reset() {
+		shares = 0;
+		totalCost = 0;
+		closedPL = 0;
+		markPrice = 0;
+		marked = false;
+	}
+}
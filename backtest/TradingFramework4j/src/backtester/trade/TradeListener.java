@@ -1,5 +1,8 @@
 package backtester.trade;
 
+import java.util.List;
+
+import backtester.quote.BookEntry;
 
 public interface TradeListener {
 
@@ -15,6 +18,12 @@ public interface TradeListener {
 
 	void onCancelRejected(ClOrdId clOrdId);
 
+	/**
+	 * Acknowledges a cancelAll request.  Every order in canceledBookEntries has been removed from the market, the list is empty if
+	 * there were no open orders.
+	 */
+	void onCancelAllAccepted(ClOrdId clOrdId, List<BookEntry> canceledBookEntries);
+
 	void onNewOrderAccepted(ClOrdId clOrdId, OrderSpecification order);
 
 	void onNewOrderRejected(ClOrdId clOrdId);
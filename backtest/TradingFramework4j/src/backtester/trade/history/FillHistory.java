@@ -0,0 +1,110 @@
+package backtester.trade.history;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import backtester.common.FixedPoint;
+import backtester.simulation.SimulationClOrdId;
+import backtester.simulation.SimulationOrderId;
+import backtester.trade.ClOrdId;
+import backtester.trade.Fill;
+import backtester.trade.LiquidityFlag;
+
+/**
+ * Fills stored column by column.  Prices are FixedPoint values and ids are the numeric simulation ids, so fills are rebuilt when they
+ * are read back.
+ */
+public class FillHistory extends HistoryStore {
+	private static final long NO_ID = Long.MIN_VALUE;
+	private static final LiquidityFlag[] LIQUIDITY_FLAGS = LiquidityFlag.values();
+
+	private long[] clOrdIds = new long[0];
+	private long[] orderIds = new long[0];
+	private String[] symbols = new String[0];
+	private int[] quantities = new int[0];
+	private long[] prices = new long[0];
+	private int[] remaining = new int[0];
+	private long[] timestamps = new long[0];
+	private byte[] liquidityFlags = new byte[0];
+
+	public FillHistory(final HistoryRetention retention) {
+		super(retention);
+	}
+
+	@Override
+	protected void resize(final int newCapacity) {
+		clOrdIds = Arrays.copyOf(clOrdIds, newCapacity);
+		orderIds = Arrays.copyOf(orderIds, newCapacity);
+		symbols = Arrays.copyOf(symbols, newCapacity);
+		quantities = Arrays.copyOf(quantities, newCapacity);
+		prices = Arrays.copyOf(prices, newCapacity);
+		remaining = Arrays.copyOf(remaining, newCapacity);
+		timestamps = Arrays.copyOf(timestamps, newCapacity);
+		liquidityFlags = Arrays.copyOf(liquidityFlags, newCapacity);
+	}
+
+	public void add(final Fill fill) {
+		final int slot = nextSlot();
+		if (slot < 0) {
+			return;
+		}
+		clOrdIds[slot] = fill.getClOrdId() instanceof SimulationClOrdId ? ((SimulationClOrdId) fill.getClOrdId()).getNumericId() : NO_ID;
+		orderIds[slot] = fill.getOrderId() instanceof SimulationOrderId ? ((SimulationOrderId) fill.getOrderId()).getNumericId() : NO_ID;
+		symbols[slot] = fill.getSymbol();
+		quantities[slot] = fill.getQuantity();
+		prices[slot] = fill.getFixedPointPrice();
+		remaining[slot] = fill.getRemaining();
+		timestamps[slot] = fill.getTimestamp().getTime();
+		liquidityFlags[slot] = (byte) (fill.getLiquidityFlag() == null ? -1 : fill.getLiquidityFlag().ordinal());
+	}
+
+	public int getQuantity(final int index) {
+		return quantities[slot(index)];
+	}
+
+	/**
+	 * @return the fill price as a FixedPoint value
+	 */
+	public long getPrice(final int index) {
+		return prices[slot(index)];
+	}
+
+	public long getTimestamp(final int index) {
+		return timestamps[slot(index)];
+	}
+
+	public LiquidityFlag getLiquidityFlag(final int index) {
+		final byte liquidityFlag = liquidityFlags[slot(index)];
+		return liquidityFlag < 0 ? null : LIQUIDITY_FLAGS[liquidityFlag];
+	}
+
+	/**
+	 * @param index
+	 *            0 for the oldest fill kept
+	 */
+	public Fill get(final int index) {
+		final int slot = slot(index);
+		final ClOrdId clOrdId = clOrdIds[slot] == NO_ID ? ClOrdId.getUnknownClOrdId() : new SimulationClOrdId(clOrdIds[slot]);
+		return new Fill(clOrdId, orderIds[slot] == NO_ID ? null : new SimulationOrderId(orderIds[slot]), symbols[slot], quantities[slot],
+				FixedPoint.toBigDecimal(prices[slot]), remaining[slot], new Date(timestamps[slot]), getLiquidityFlag(index));
+	}
+
+	/**
+	 * @return the fills kept, oldest first
+	 */
+	public List<Fill> toList() {
+		final List<Fill> fills = new ArrayList<Fill>(size());
+		for (int i = 0; i < size(); i++) {
+			fills.add(get(i));
+		}
+		return fills;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		Arrays.fill(symbols, null);
+	}
+}
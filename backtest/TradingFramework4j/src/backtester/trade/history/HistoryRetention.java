@@ -0,0 +1,55 @@
+package backtester.trade.history;
+
+/**
+ * How many entries a history store keeps: none, only the most recent ones, or everything.
+ */
+public class HistoryRetention {
+	public static final HistoryRetention NONE = new HistoryRetention(0);
+	public static final HistoryRetention FULL = new HistoryRetention(Integer.MAX_VALUE);
+
+	private final int limit;
+
+	private HistoryRetention(final int limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Keeps the most recent entries only, so memory use stays flat however long the run is.
+	 */
+	public static HistoryRetention lastN(final int n) {
+		if (n <= 0) {
+			throw new IllegalArgumentException("History size must be positive: " + n);
+		}
+		return new HistoryRetention(n);
+	}
+
+	/**
+	 * Parses "none", "full" or the number of entries to keep.  A null value means full retention.
+	 */
+	public static HistoryRetention parse(final String value) {
+		if (value == null || value.trim().equalsIgnoreCase("full")) {
+			return FULL;
+		}
+		if (value.trim().equalsIgnoreCase("none")) {
+			return NONE;
+		}
+		try {
+			return lastN(Integer.parseInt(value.trim()));
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("History retention must be none, full or a number: " + value);
+		}
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public boolean isFull() {
+		return limit == Integer.MAX_VALUE;
+	}
+
+	@Override
+	public String toString() {
+		return limit == 0 ? "none" : (isFull() ? "full" : String.valueOf(limit));
+	}
+}
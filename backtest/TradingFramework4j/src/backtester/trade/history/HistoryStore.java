@@ -0,0 +1,84 @@
+package backtester.trade.history;
+
+/**
+ * Keeps track of the slots of a history stored in parallel arrays.  Subclasses own the arrays and resize them when asked.  Arrays grow
+ * by doubling up to the retention limit, and once the limit is reached the oldest entry is overwritten, so a bounded history never
+ * allocates after it fills up.  Not thread-safe.
+ */
+public abstract class HistoryStore {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final HistoryRetention retention;
+	private int capacity;
+	private int start;
+	private int size;
+	private long appendedCount;
+
+	protected HistoryStore(final HistoryRetention retention) {
+		this.retention = retention;
+	}
+
+	/**
+	 * Resizes every column to the new capacity, keeping the entries in the first slots.
+	 */
+	protected abstract void resize(int newCapacity);
+
+	/**
+	 * @return the slot to write the next entry to, or -1 if the retention does not keep any entries
+	 */
+	protected int nextSlot() {
+		appendedCount++;
+		final int limit = retention.getLimit();
+		if (limit == 0) {
+			return -1;
+		}
+		if (size < capacity) {
+			return (start + size++) % capacity;
+		}
+		if (capacity < limit) {
+			// Only reached before the history wraps, so start is still zero
+			final int newCapacity = (int) Math.min(limit, Math.max(INITIAL_CAPACITY, 2L * capacity));
+			resize(newCapacity);
+			capacity = newCapacity;
+			return size++;
+		}
+		final int slot = start;
+		start = (start + 1) % capacity;
+		return slot;
+	}
+
+	/**
+	 * @param index
+	 *            0 for the oldest entry kept
+	 */
+	protected int slot(final int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		return (start + index) % capacity;
+	}
+
+	/**
+	 * @return the number of entries kept
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of entries ever added, including the ones no longer kept
+	 */
+	public long getAppendedCount() {
+		return appendedCount;
+	}
+
+	public HistoryRetention getRetention() {
+		return retention;
+	}
+
+	public void clear() {
+		start = 0;
+		size = 0;
+		appendedCount = 0;
+	}
+}
@@ -0,0 +1,72 @@
+package backtester.trade.history;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import backtester.common.FixedPoint;
+import backtester.trade.Position;
+
+/**
+ * Snapshots of a position stored column by column, with the total cost and closed PnL as FixedPoint values.
+ */
+public class PositionHistory extends HistoryStore {
+	private String[] symbols = new String[0];
+	private long[] shares = new long[0];
+	private long[] totalCosts = new long[0];
+	private long[] closedPLs = new long[0];
+
+	public PositionHistory(final HistoryRetention retention) {
+		super(retention);
+	}
+
+	@Override
+	protected void resize(final int newCapacity) {
+		symbols = Arrays.copyOf(symbols, newCapacity);
+		shares = Arrays.copyOf(shares, newCapacity);
+		totalCosts = Arrays.copyOf(totalCosts, newCapacity);
+		closedPLs = Arrays.copyOf(closedPLs, newCapacity);
+	}
+
+	/**
+	 * Stores a snapshot of the position, later changes to the position are not seen by the history.
+	 */
+	public void add(final Position position) {
+		final int slot = nextSlot();
+		if (slot < 0) {
+			return;
+		}
+		symbols[slot] = position.getSymbol();
+		shares[slot] = position.getEngine().getShares();
+		totalCosts[slot] = position.getEngine().getTotalCost();
+		closedPLs[slot] = position.getEngine().getClosedPL();
+	}
+
+	/**
+	 * @param index
+	 *            0 for the oldest position kept
+	 */
+	public Position get(final int index) {
+		final int slot = slot(index);
+		return new Position(symbols[slot], BigDecimal.valueOf(shares[slot]), FixedPoint.toBigDecimal(totalCosts[slot]),
+				FixedPoint.toBigDecimal(closedPLs[slot]));
+	}
+
+	/**
+	 * @return the positions kept, oldest first
+	 */
+	public List<Position> toList() {
+		final List<Position> positions = new ArrayList<Position>(size());
+		for (int i = 0; i < size(); i++) {
+			positions.add(get(i));
+		}
+		return positions;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		Arrays.fill(symbols, null);
+	}
+}
@@ -0,0 +1,49 @@
+package backtester.trade.history;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import backtester.common.FixedPoint;
+import backtester.trade.TransactionCost;
+
+/**
+ * Transaction costs stored as FixedPoint values.
+ */
+public class TransactionCostHistory extends HistoryStore {
+	private long[] costs = new long[0];
+
+	public TransactionCostHistory(final HistoryRetention retention) {
+		super(retention);
+	}
+
+	@Override
+	protected void resize(final int newCapacity) {
+		costs = Arrays.copyOf(costs, newCapacity);
+	}
+
+	public void add(final TransactionCost transactionCost) {
+		final int slot = nextSlot();
+		if (slot >= 0) {
+			costs[slot] = FixedPoint.fromBigDecimal(transactionCost.getCost());
+		}
+	}
+
+	/**
+	 * @return the cost as a FixedPoint value, 0 for the oldest cost kept
+	 */
+	public long getCost(final int index) {
+		return costs[slot(index)];
+	}
+
+	/**
+	 * @return the costs kept, oldest first
+	 */
+	public List<TransactionCost> toList() {
+		final List<TransactionCost> transactionCosts = new ArrayList<TransactionCost>(size());
+		for (int i = 0; i < size(); i++) {
+			transactionCosts.add(new TransactionCost(FixedPoint.toBigDecimal(getCost(i))));
+		}
+		return transactionCosts;
+	}
+}
@@ -0,0 +1,88 @@
+package backtester.update;
+
+import java.util.Arrays;
+import java.util.Observable;
+import java.util.Observer;
+
+/**
+ * Delivers UI updates to observers without the synchronization and changed flag of Observable.  Senders check hasObservers()
+ * before building an update, so nothing is computed when nobody is listening.
+ *
+ * Stats updates are coalesced: markStatDirty() only records which statistics changed, and publishStats() sends one update per
+ * changed statistic at the end of an event.  Not thread-safe, observers are expected to be added before the simulation starts.
+ */
+public class UpdateBus {
+	private static final STATS_UPDATE_TYPE[] STATS_UPDATE_TYPES = STATS_UPDATE_TYPE.values();
+
+	/**
+	 * Looks up the current value of a statistic when its update is published.
+	 */
+	public interface StatisticSource {
+		Object getStatisticValue(STATS_UPDATE_TYPE type);
+	}
+
+	private final Observable source;
+	private Observer[] observers = new Observer[0];
+	private long dirtyStats;
+
+	/**
+	 * @param source
+	 *            passed to Observer.update() as the observable
+	 */
+	public UpdateBus(final Observable source) {
+		this.source = source;
+	}
+
+	public void addObserver(final Observer o) {
+		if (o == null) {
+			throw new IllegalArgumentException("Observer can't be null");
+		}
+		observers = Arrays.copyOf(observers, observers.length + 1);
+		observers[observers.length - 1] = o;
+	}
+
+	public void deleteObserver(final Observer o) {
+		for (int i = 0; i < observers.length; i++) {
+			if (observers[i] == o) {
+				final Observer[] remaining = new Observer[observers.length - 1];
+				System.arraycopy(observers, 0, remaining, 0, i);
+				System.arraycopy(observers, i + 1, remaining, i, remaining.length - i);
+				observers = remaining;
+				return;
+			}
+		}
+	}
+
+	public boolean hasObservers() {
+		return observers.length != 0;
+	}
+
+	public void publish(final Object update) {
+		for (final Observer o : observers) {
+			o.update(source, update);
+		}
+	}
+
+	public void markStatDirty(final STATS_UPDATE_TYPE type) {
+		dirtyStats |= 1L << type.ordinal();
+	}
+
+	/**
+	 * Sends one StatsUpdate for every statistic marked dirty since the last call, with its value at the time of this call.
+	 */
+	public void publishStats(final StatisticSource statisticSource) {
+		final long dirty = dirtyStats;
+		if (dirty == 0) {
+			return;
+		}
+		dirtyStats = 0;
+		if (observers.length == 0) {
+			return;
+		}
+		for (final STATS_UPDATE_TYPE type : STATS_UPDATE_TYPES) {
+			if ((dirty & (1L << type.ordinal())) != 0) {
+				publish(new StatsUpdate(statisticSource.getStatisticValue(type), type));
+			}
+		}
+	}
+}
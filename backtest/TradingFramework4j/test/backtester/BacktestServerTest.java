@@ -0,0 +1,133 @@
+package backtester;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import backtester.strategy.PrimitiveOrderHandle;
+import backtester.strategy.PrimitiveStrategy;
+import backtester.strategy.PrimitiveStrategyAdapter;
+
+public class BacktestServerTest {
+	private File quoteFile;
+	private BacktestServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		quoteFile = new File(System.getProperty("java.io.tmpdir"), "SPY_BATS_2010-07-16.csv");
+		final FileWriter writer = new FileWriter(quoteFile);
+		try {
+			writer.write("B,SPY,X,1,100,150.00,34200000\n");
+			writer.write("A,SPY,X,2,100,150.01,34200001\n");
+			writer.write("T,SPY,X,3,100,150.00,34200002\n");
+			writer.write("B,SPY,X,4,100,150.02,34201000\n");
+		} finally {
+			writer.close();
+		}
+		System.setProperty("backtester.primitiveStrategy", BuyingStrategy.class.getName());
+		server = new BacktestServer(new Backtester(null, PrimitiveStrategyAdapter.class, null), 1);
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty("backtester.primitiveStrategy");
+		quoteFile.delete();
+	}
+
+	@Test
+	public void jobAnsweredWithTodaysStatistics() {
+		final String reply = server.runJob(quoteFile.getPath());
+		Assert.assertTrue(reply, reply.startsWith("OK\t"));
+		Assert.assertTrue(reply, reply.contains("\tCLOSED_PL="));
+		Assert.assertTrue(reply, reply.contains("\tTOTAL_TRANSACTION_COST="));
+		Assert.assertTrue(reply, reply.contains("\tORDER_COUNT=1"));
+		final String[] fields = reply.split("\t", -1);
+		for (int i = 1; i < fields.length; i++) {
+			Assert.assertTrue(fields[i], fields[i].matches("[A-Z_]+=\\S+"));
+		}
+
+		// The cached quotes give the same answer
+		Assert.assertEquals(reply, server.runJob(quoteFile.getPath() + "\t\t"));
+	}
+
+	@Test
+	public void missingQuoteFileIsAnError() {
+		final String reply = server.runJob(new File(quoteFile.getParentFile(), "MISSING_BATS_2010-07-16.csv").getPath());
+		Assert.assertTrue(reply, reply.startsWith("ERROR\t"));
+		Assert.assertTrue(reply, reply.contains("No such quote file"));
+		Assert.assertEquals(-1, reply.indexOf('\n'));
+	}
+
+	@Test
+	public void wrongFieldCountIsAnError() {
+		Assert.assertTrue(server.runJob(quoteFile.getPath() + "\tstrategy.py\tvar1=1.0\textra").startsWith("ERROR\t"));
+		Assert.assertTrue(server.runJob("").startsWith("ERROR\t"));
+	}
+
+	/**
+	 * Buys 100 shares at the first ask.
+	 */
+	public static class BuyingStrategy implements PrimitiveStrategy {
+		private PrimitiveOrderHandle orders;
+		private boolean bought;
+
+		@Override
+		public void init(final PrimitiveOrderHandle orders) {
+			this.orders = orders;
+		}
+
+		@Override
+		public void onQuote(final int side, final long price, final int quantity, final long time) {
+			if (side == SIDE_ASK && !bought) {
+				bought = true;
+				orders.set(PrimitiveOrderHandle.BUY, price, 100).place();
+			}
+		}
+
+		@Override
+		public void onTradeTick(final long price, final int quantity, final long time) {
+		}
+
+		@Override
+		public void onFill(final long orderId, final int side, final int quantity, final long price, final int remaining, final long time) {
+		}
+
+		@Override
+		public void onOrderAccepted(final long orderId) {
+		}
+
+		@Override
+		public void onOrderRejected(final long orderId) {
+		}
+
+		@Override
+		public void onCancelAccepted(final long orderId) {
+		}
+
+		@Override
+		public void onCancelRejected(final long cancelId) {
+		}
+
+		@Override
+		public void onReplaceAccepted(final long orderId, final long origOrderId) {
+		}
+
+		@Override
+		public void onReplaceRejected(final long orderId) {
+		}
+
+		@Override
+		public void onTimer(final long timerId, final long time) {
+		}
+
+		@Override
+		public void onPlaybackEnd() {
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package backtester.common;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void totalsAndPercentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 99; i++) {
+			histogram.record(1000);
+		}
+		histogram.record(1000000);
+
+		Assert.assertEquals(100, histogram.getCount());
+		Assert.assertEquals(99000 + 1000000, histogram.getTotalNanos());
+		Assert.assertEquals(1000000, histogram.getMaxNanos());
+		Assert.assertEquals(10990, histogram.getMeanNanos());
+		// 1000ns falls in the bucket below 1024ns
+		Assert.assertEquals(1023, histogram.getPercentileNanos(50));
+		Assert.assertEquals(1023, histogram.getPercentileNanos(99));
+		// Bucket bounds are capped by the largest duration
+		Assert.assertEquals(1000000, histogram.getPercentileNanos(100));
+	}
+
+	@Test
+	public void zeroAndNegativeDurationsInFirstBucket() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(0);
+		histogram.record(-5);
+		Assert.assertEquals(2, histogram.getCount());
+		Assert.assertEquals(0, histogram.getPercentileNanos(100));
+		Assert.assertEquals(0, histogram.getTotalNanos());
+	}
+
+	@Test
+	public void largestDurationRecorded() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(Long.MAX_VALUE);
+		Assert.assertEquals(Long.MAX_VALUE, histogram.getPercentileNanos(50));
+
+		histogram.clear();
+		Assert.assertEquals(0, histogram.getCount());
+		Assert.assertEquals(0, histogram.getPercentileNanos(50));
+	}
+}
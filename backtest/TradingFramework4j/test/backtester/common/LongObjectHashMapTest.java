@@ -0,0 +1,65 @@
+package backtester.common;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LongObjectHashMapTest {
+	private LongObjectHashMap<String> map;
+
+	@Before
+	public void runFirst() {
+		map = new LongObjectHashMap<String>(4);
+	}
+
+	@Test
+	public void putGetRemove() {
+		Assert.assertNull(map.get(7));
+		Assert.assertNull(map.put(7, "a"));
+		Assert.assertEquals("a", map.get(7));
+		Assert.assertEquals("a", map.put(7, "b"));
+		Assert.assertEquals(1, map.size());
+
+		Assert.assertEquals("b", map.remove(7));
+		Assert.assertNull(map.remove(7));
+		Assert.assertFalse(map.containsKey(7));
+		Assert.assertTrue(map.isEmpty());
+	}
+
+	@Test
+	public void minValueKey() {
+		map.put(Long.MIN_VALUE, "a");
+		Assert.assertTrue(map.containsKey(Long.MIN_VALUE));
+		Assert.assertEquals("a", map.get(Long.MIN_VALUE));
+		Assert.assertEquals("a", map.remove(Long.MIN_VALUE));
+		Assert.assertNull(map.get(Long.MIN_VALUE));
+		Assert.assertEquals(0, map.size());
+	}
+
+	@Test
+	public void growAndRemoveInterleaved() {
+		for (long i = 0; i < 1000; i++) {
+			map.put(i, String.valueOf(i));
+		}
+		Assert.assertEquals(1000, map.size());
+
+		for (long i = 0; i < 1000; i += 2) {
+			Assert.assertEquals(String.valueOf(i), map.remove(i));
+		}
+		Assert.assertEquals(500, map.size());
+
+		for (long i = 0; i < 1000; i++) {
+			Assert.assertEquals(i % 2 == 0 ? null : String.valueOf(i), map.get(i));
+		}
+
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.get(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nullValueNotAllowed() {
+		map.put(1, null);
+	}
+}
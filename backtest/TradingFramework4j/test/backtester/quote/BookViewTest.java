@@ -0,0 +1,59 @@
+package backtester.quote;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class BookViewTest {
+
+	@Test
+	public void emptyBookReturnsZeros() {
+		final BookView bookView = new BookView(new QuoteBook());
+		Assert.assertEquals(0, bookView.getBestBidPrice());
+		Assert.assertEquals(0, bookView.getBestAskQuantity());
+		Assert.assertEquals(0, bookView.getMidpointPrice());
+		Assert.assertEquals(0, bookView.getBidLevels(5).length);
+		Assert.assertEquals(0, bookView.getRecentTrades(5).length);
+	}
+
+	@Test
+	public void levelsAggregatedBestFirst() {
+		final QuoteBook quoteBook = new QuoteBook();
+		quoteBook.addBid(new Bid(1, "SPY", 100, new BigDecimal("10.01"), new Date(1), false, 100));
+		quoteBook.addBid(new Bid(2, "SPY", 200, new BigDecimal("10.02"), new Date(2), false, 200));
+		quoteBook.addBid(new Bid(3, "SPY", 300, new BigDecimal("10.02"), new Date(3), false, 300));
+		quoteBook.addBid(new Bid(4, "SPY", 400, new BigDecimal("10.00"), new Date(4), false, 400));
+		quoteBook.addAsk(new Ask(5, "SPY", 500, new BigDecimal("10.05"), new Date(5), false, 500));
+		final BookView bookView = new BookView(quoteBook);
+
+		final long[] levels = bookView.getBidLevels(2);
+		Assert.assertEquals(2 * BookView.LEVEL_FIELDS, levels.length);
+		Assert.assertEquals(100200, levels[BookView.LEVEL_PRICE]);
+		Assert.assertEquals(500, levels[BookView.LEVEL_VOLUME]);
+		Assert.assertEquals(2, levels[BookView.LEVEL_ORDER_COUNT]);
+		Assert.assertEquals(100100, levels[BookView.LEVEL_FIELDS + BookView.LEVEL_PRICE]);
+		Assert.assertEquals(100, levels[BookView.LEVEL_FIELDS + BookView.LEVEL_VOLUME]);
+
+		Assert.assertEquals(500, bookView.getBestBidQuantity());
+		Assert.assertEquals(100500, bookView.getBestAskPrice());
+		Assert.assertEquals(1000, bookView.getBidVolume());
+		// Half of the three tick spread rounds up like QuoteBook.getMidpoint()
+		Assert.assertEquals(quoteBook.getMidpoint().movePointRight(4).longValueExact(), bookView.getMidpointPrice());
+		Assert.assertEquals(100350, bookView.getMidpointPrice());
+	}
+
+	@Test
+	public void recentTradesOldestFirst() {
+		final QuoteBook quoteBook = new QuoteBook();
+		for (int i = 1; i <= 3; i++) {
+			quoteBook.addTradeTick(new TradeTick("SPY", i * 100, new BigDecimal("10.0" + i), new Date(i)));
+		}
+		final long[] trades = new BookView(quoteBook).getRecentTrades(2);
+		Assert.assertEquals(2 * BookView.TRADE_FIELDS, trades.length);
+		Assert.assertEquals(100200, trades[BookView.TRADE_PRICE]);
+		Assert.assertEquals(300, trades[BookView.TRADE_FIELDS + BookView.TRADE_SIZE]);
+	}
+}
@@ -0,0 +1,88 @@
+package backtester.quote;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class FanOutQuoteListenerTest {
+
+	@Test
+	public void everyListenerGetsItsOwnCopy() {
+		final RecordingQuoteListener first = new RecordingQuoteListener();
+		final RecordingQuoteListener second = new RecordingQuoteListener();
+		final FanOutQuoteListener fanOut = new FanOutQuoteListener(Arrays.asList(first, second));
+
+		final Bid bid = new Bid(1, "SPY", 100, new BigDecimal("150.00"), new Date(1000), false, 100);
+		fanOut.onBid(bid);
+
+		Assert.assertEquals(1, first.events.size());
+		Assert.assertNotSame(bid, first.events.get(0));
+		Assert.assertNotSame(first.events.get(0), second.events.get(0));
+
+		// A market changing its copy does not affect the other runs
+		((Bid) first.events.get(0)).setRemainingQuantity(0);
+		Assert.assertEquals(100, ((Bid) second.events.get(0)).getRemainingQuantity());
+		Assert.assertEquals(100, bid.getRemainingQuantity());
+	}
+
+	@Test
+	public void batchesReplayedInOrderOnEveryListener() throws Exception {
+		final List<RecordingQuoteListener> listeners = new ArrayList<RecordingQuoteListener>();
+		for (int i = 0; i < 4; i++) {
+			listeners.add(new RecordingQuoteListener());
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			final FanOutQuoteListener fanOut = new FanOutQuoteListener(listeners, executor, 3);
+			for (int i = 0; i < 7; i++) {
+				if (i % 2 == 0) {
+					fanOut.onAsk(new Ask(i, "SPY", 100, new BigDecimal("150.01"), new Date(i), false, 100));
+				} else {
+					fanOut.onTradeTick(new TradeTick("SPY", 100, new BigDecimal("150.00"), new Date(i)));
+				}
+			}
+
+			// Two full batches were replayed, the last event waits for flush()
+			Assert.assertEquals(6, listeners.get(3).events.size());
+			fanOut.flush();
+		} finally {
+			executor.shutdown();
+		}
+
+		for (final RecordingQuoteListener listener : listeners) {
+			Assert.assertEquals(7, listener.events.size());
+			for (int i = 0; i < 7; i++) {
+				final Object event = listener.events.get(i);
+				final Date timestamp = event instanceof Ask ? ((Ask) event).getTimestamp() : ((TradeTick) event).getTimestamp();
+				Assert.assertEquals(i, timestamp.getTime());
+			}
+		}
+	}
+
+	private static class RecordingQuoteListener implements QuoteListener {
+		private final List<Object> events = new ArrayList<Object>();
+
+		@Override
+		public void onBid(final Bid bid) {
+			events.add(bid);
+		}
+
+		@Override
+		public void onAsk(final Ask ask) {
+			events.add(ask);
+		}
+
+		@Override
+		public void onTradeTick(final TradeTick tradeTick) {
+			events.add(tradeTick);
+		}
+	}
+}
@@ -2,6 +2,7 @@ package backtester.quote;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.List;
 
 import junit.framework.Assert;
 
@@ -12,6 +13,8 @@ import backtester.quote.Ask;
 import backtester.quote.Bid;
 import backtester.quote.BookEntryFactory;
 import backtester.quote.QuoteBook;
+import backtester.simulation.SimulationClOrdId;
+import backtester.simulation.SimulationOrderId;
 
 
 public class QuoteBookTest {
@@ -80,6 +83,24 @@ public class QuoteBookTest {
 		Assert.assertEquals(book.getTopOfBook().getAsk().getPrice(), new BigDecimal(24));
 	}
 
+	@Test
+	public void testRemoveAllSimulatedBookEntries() {
+		book.addBid(new Bid(0, TEST_SYMBOL, 100, new BigDecimal(15), new Date(), false, 100));
+		book.addBid(BookEntryFactory.createSimulatedBid(new SimulationClOrdId(0), new SimulationOrderId(0), TEST_SYMBOL, 10, new BigDecimal(14), new Date(), 10));
+		book.addAsk(BookEntryFactory.createSimulatedAsk(new SimulationClOrdId(1), new SimulationOrderId(1), TEST_SYMBOL, 20, new BigDecimal(16), new Date(), 20));
+		book.addAsk(new Ask(1, TEST_SYMBOL, 100, new BigDecimal(17), new Date(), false, 100));
+
+		final List<BookEntry> removed = book.removeAllSimulatedBookEntries();
+		Assert.assertEquals(2, removed.size());
+		Assert.assertTrue(book.getSimulatedBids().isEmpty());
+		Assert.assertTrue(book.getSimulatedAsks().isEmpty());
+		Assert.assertEquals(1, book.getBids().size());
+		Assert.assertEquals(1, book.getAsks().size());
+		Assert.assertEquals(100, book.getBidVolume());
+		Assert.assertEquals(100, book.getAskVolume());
+		Assert.assertTrue(book.removeAllSimulatedBookEntries().isEmpty());
+	}
+
 	@Test
 	public void testBidChanging() {
 		final int size = 100;
@@ -0,0 +1,64 @@
+package backtester.quote;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class RecordedQuotesTest {
+
+	@Test
+	public void everyReplayGetsItsOwnCopy() {
+		final Bid bid = new Bid(1, "SPY", 100, new BigDecimal("150.00"), new Date(1), false, 100);
+		final Ask ask = new Ask(2, "SPY", 100, new BigDecimal("150.01"), new Date(2), false, 100);
+		final TradeTick tradeTick = new TradeTick("SPY", 100, new BigDecimal("150.00"), new Date(3));
+		final RecordedQuotes quotes = RecordedQuotes.of(new Date(0), Arrays.asList(bid, ask, tradeTick));
+		Assert.assertEquals(3, quotes.size());
+
+		final RecordingQuoteListener first = new RecordingQuoteListener();
+		final RecordingQuoteListener second = new RecordingQuoteListener();
+		quotes.replay(first);
+		quotes.replay(second);
+
+		Assert.assertEquals(3, first.events.size());
+		Assert.assertNotSame(bid, first.events.get(0));
+		Assert.assertNotSame(first.events.get(1), second.events.get(1));
+		Assert.assertSame(tradeTick, first.events.get(2));
+
+		// A market changing its copy does not affect later replays
+		((Ask) first.events.get(1)).setRemainingQuantity(0);
+		quotes.replay(second);
+		Assert.assertEquals(100, ((Ask) second.events.get(4)).getRemainingQuantity());
+		Assert.assertEquals(1, ((Bid) second.events.get(3)).getTimestamp().getTime());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void finishedRecordingCannotBeExtended() {
+		final RecordedQuotes quotes = RecordedQuotes.of(new Date(0), new ArrayList<Object>());
+		quotes.onTradeTick(new TradeTick("SPY", 100, new BigDecimal("150.00"), new Date(3)));
+	}
+
+	private static class RecordingQuoteListener implements QuoteListener {
+		private final List<Object> events = new ArrayList<Object>();
+
+		@Override
+		public void onBid(final Bid bid) {
+			events.add(bid);
+		}
+
+		@Override
+		public void onAsk(final Ask ask) {
+			events.add(ask);
+		}
+
+		@Override
+		public void onTradeTick(final TradeTick tradeTick) {
+			events.add(tradeTick);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package backtester.simulation;
+
+import java.util.Calendar;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import backtester.common.AliasTable;
+import backtester.simulation.latency.LatencyDistribution;
+import backtester.simulation.latency.LatencyEventType;
+import backtester.simulation.latency.LatencyTarget;
+
+public class EmpiricalLatencyProfileTest {
+	private static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+
+	@Test
+	public void aliasTableMatchesWeights() {
+		final AliasTable aliasTable = new AliasTable(new double[] { 1, 0, 3 });
+		final Random random = new Random(42);
+		final int[] counts = new int[3];
+		final int samples = 100000;
+		for (int i = 0; i < samples; i++) {
+			counts[aliasTable.sample(random)]++;
+		}
+
+		Assert.assertEquals(0, counts[1]);
+		Assert.assertEquals(0.25, counts[0] / (double) samples, 0.01);
+		Assert.assertEquals(0.75, counts[2] / (double) samples, 0.01);
+	}
+
+	@Test
+	public void sameSeedSameLatencies() {
+		final EmpiricalLatencyProfile first = createProfile(7);
+		final EmpiricalLatencyProfile second = createProfile(7);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(first.getLatency(LatencyTarget.MARKET, LatencyEventType.PLACE_ORDER, i),
+					second.getLatency(LatencyTarget.MARKET, LatencyEventType.PLACE_ORDER, i));
+		}
+	}
+
+	@Test
+	public void timeOfDayBuckets() {
+		final EmpiricalLatencyProfile profile = createProfile(1);
+		profile.setDistribution(LatencyTarget.TRADE_LISTENER, LatencyEventType.ON_FILL, LatencyDistribution.fixed(4));
+		profile.setDistribution(LatencyTarget.TRADE_LISTENER, LatencyEventType.ON_FILL, 9 * MILLIS_PER_HOUR, 10 * MILLIS_PER_HOUR,
+				LatencyDistribution.fixed(20));
+
+		Assert.assertEquals(4, profile.getLatency(LatencyTarget.TRADE_LISTENER, LatencyEventType.ON_FILL, timeOfDay(8, 59)));
+		Assert.assertEquals(20, profile.getLatency(LatencyTarget.TRADE_LISTENER, LatencyEventType.ON_FILL, timeOfDay(9, 30)));
+		Assert.assertEquals(4, profile.getLatency(LatencyTarget.TRADE_LISTENER, LatencyEventType.ON_FILL, timeOfDay(10, 0)));
+		Assert.assertEquals(0, profile.getLatency(LatencyTarget.QUOTE_LISTENER, LatencyEventType.ON_FILL, timeOfDay(9, 30)));
+	}
+
+	@Test
+	public void parametricDistributionsStayInRange() {
+		final Random random = new Random(3);
+		final LatencyDistribution logNormal = LatencyDistribution.logNormal(4, 0.5, 50);
+		final LatencyDistribution normal = LatencyDistribution.normal(5, 1, 10);
+		for (int i = 0; i < 1000; i++) {
+			final long logNormalLatency = logNormal.sample(random);
+			Assert.assertTrue(logNormalLatency >= 0 && logNormalLatency <= 50);
+			final long normalLatency = normal.sample(random);
+			Assert.assertTrue(normalLatency >= 0 && normalLatency <= 10);
+		}
+	}
+
+	private static EmpiricalLatencyProfile createProfile(final long seed) {
+		final EmpiricalLatencyProfile profile = new EmpiricalLatencyProfile(new SimulationContext(seed), 15 * 60 * 1000L);
+		profile.setDistribution(LatencyTarget.MARKET, LatencyEventType.PLACE_ORDER, new LatencyDistribution(new long[] { 3, 5, 9 },
+				new double[] { 0.2, 0.7, 0.1 }));
+		return profile;
+	}
+
+	private static long timeOfDay(final int hour, final int minute) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(2014, Calendar.MARCH, 3, hour, minute);
+		return calendar.getTimeInMillis();
+	}
+}
@@ -0,0 +1,47 @@
+package backtester.simulation;
+
+import java.util.Properties;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import backtester.quote.DummyQuoteListener;
+import backtester.simulation.latency.LatencyEventType;
+import backtester.simulation.latency.LatencyTarget;
+
+public class LatencyTableTest {
+
+	@Test
+	public void defaultProfileMatchesStringLookup() {
+		final LatencyProfile profile = new DefaultLatencyProfile();
+		final DefaultSimulationMarket market = new DefaultSimulationMarket(null);
+
+		Assert.assertEquals(5, profile.getLatency(market, "placeOrder"));
+		Assert.assertEquals(5, profile.getLatency(LatencyTarget.MARKET, LatencyEventType.PLACE_ORDER, 0));
+		Assert.assertEquals(0, profile.getLatency(market, "onBid"));
+		Assert.assertEquals(0, profile.getLatency(LatencyTarget.MARKET, LatencyEventType.ON_BID, 0));
+		Assert.assertEquals(4, profile.getLatency(new DummyQuoteListener(), "onBid"));
+		Assert.assertEquals(4, profile.getLatency(LatencyTarget.TRADE_LISTENER, LatencyEventType.ON_FILL, 0));
+		Assert.assertEquals(0, profile.getLatency(market, "reset"));
+	}
+
+	@Test
+	public void loadFromProperties() {
+		final Properties properties = new Properties();
+		properties.setProperty("market.cancelAll", "7");
+		properties.setProperty("tradeListener.onFill", " 3 ");
+
+		final LatencyTable table = LatencyTable.fromProperties(properties);
+		Assert.assertEquals(7, table.getLatency(LatencyTarget.MARKET, LatencyEventType.CANCEL_ALL, 0));
+		Assert.assertEquals(3, table.getLatency(LatencyTarget.TRADE_LISTENER, LatencyEventType.ON_FILL, 0));
+		Assert.assertEquals(0, table.getLatency(LatencyTarget.QUOTE_LISTENER, LatencyEventType.ON_FILL, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownLatencyRejected() {
+		final Properties properties = new Properties();
+		properties.setProperty("market.onFlip", "1");
+		LatencyTable.fromProperties(properties);
+	}
+}
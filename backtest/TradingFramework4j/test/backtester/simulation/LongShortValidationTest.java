@@ -1,6 +1,7 @@
 package backtester.simulation;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 import junit.framework.Assert;
 
@@ -8,6 +9,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import backtester.quote.BookEntry;
 import backtester.simulation.DefaultSimulationMarket;
 import backtester.simulation.SimulationClOrdId;
 import backtester.trade.ClOrdId;
@@ -331,6 +333,10 @@ public class LongShortValidationTest implements TradeListener {
 	public void onCancelRejected(final ClOrdId clOrdId) {
 	}
 
+	@Override
+	public void onCancelAllAccepted(final ClOrdId clOrdId, final List<BookEntry> canceledBookEntries) {
+	}
+
 	@Override
 	public void onFill(final Fill fill) {
 	}
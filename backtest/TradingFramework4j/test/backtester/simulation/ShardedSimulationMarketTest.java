@@ -0,0 +1,222 @@
+package backtester.simulation;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import backtester.quote.BookEntry;
+import backtester.quote.BookEntryFactory;
+import backtester.trade.ClOrdId;
+import backtester.trade.Fill;
+import backtester.trade.OrderSpecification;
+import backtester.trade.TradeListener;
+import backtester.trade.TradeType;
+import backtester.trade.TransactionCost;
+
+public class ShardedSimulationMarketTest implements TradeListener {
+	private static final String FIRST_SYMBOL = "AAA";
+	private static final String SECOND_SYMBOL = "BBB";
+
+	private ShardedSimulationMarket market;
+	private List<Fill> fills;
+	private int cancelAcceptedCount;
+	private int cancelRejectedCount;
+	private int cancelAllAckCount;
+	private static long nextClOrdId = 0;
+
+	@Before
+	public void runFirst() {
+		market = new ShardedSimulationMarket();
+		market.setLongSaleValidationEnabled(false);
+		market.setTradeListener(this);
+		fills = new ArrayList<Fill>();
+		cancelAcceptedCount = 0;
+		cancelRejectedCount = 0;
+		cancelAllAckCount = 0;
+	}
+
+	@After
+	public void runLast() {
+		market.reset();
+	}
+
+	private SimulationClOrdId getNextClOrdId() {
+		return new SimulationClOrdId(nextClOrdId++);
+	}
+
+	@Test
+	public void fillsOnlyFromOwnSymbol() {
+		final SimulationClOrdId clOrdId = getNextClOrdId();
+		market.placeOrder(clOrdId, new OrderSpecification(FIRST_SYMBOL, new BigDecimal(10), 10, TradeType.BUY));
+
+		market.onAsk(BookEntryFactory.createActualAsk("OtherSymbolAsk", SECOND_SYMBOL, 10, new BigDecimal(9), new Date(1)));
+		Assert.assertTrue(fills.isEmpty());
+
+		market.onAsk(BookEntryFactory.createActualAsk("OwnSymbolAsk", FIRST_SYMBOL, 10, new BigDecimal(9), new Date(2)));
+		Assert.assertEquals(1, fills.size());
+		Assert.assertEquals(clOrdId, fills.get(0).getClOrdId());
+
+		Assert.assertEquals(10, market.getPosition(FIRST_SYMBOL));
+		Assert.assertEquals(0, market.getPosition(SECOND_SYMBOL));
+	}
+
+	@Test
+	public void orderIdsUniqueAcrossShards() {
+		market.placeOrder(getNextClOrdId(), new OrderSpecification(FIRST_SYMBOL, new BigDecimal(10), 10, TradeType.BUY));
+		market.placeOrder(getNextClOrdId(), new OrderSpecification(SECOND_SYMBOL, new BigDecimal(10), 10, TradeType.BUY));
+
+		market.onAsk(BookEntryFactory.createActualAsk("FirstAsk", FIRST_SYMBOL, 10, new BigDecimal(9), new Date(1)));
+		market.onAsk(BookEntryFactory.createActualAsk("SecondAsk", SECOND_SYMBOL, 10, new BigDecimal(9), new Date(2)));
+		Assert.assertEquals(2, fills.size());
+		Assert.assertFalse(fills.get(0).getOrderId().equals(fills.get(1).getOrderId()));
+	}
+
+	@Test
+	public void positionOfUnknownSymbolCreatesNoShard() {
+		Assert.assertEquals(0, market.getPosition(FIRST_SYMBOL));
+		Assert.assertTrue(market.getSymbols().isEmpty());
+	}
+
+	@Test
+	public void cancelRoutedToOwningShard() {
+		final SimulationClOrdId clOrdId = getNextClOrdId();
+		market.placeOrder(clOrdId, new OrderSpecification(SECOND_SYMBOL, new BigDecimal(10), 10, TradeType.BUY));
+
+		market.cancelOrder(getNextClOrdId(), clOrdId);
+		Assert.assertEquals(1, cancelAcceptedCount);
+
+		market.cancelOrder(getNextClOrdId(), clOrdId);
+		Assert.assertEquals(1, cancelRejectedCount);
+	}
+
+	@Test
+	public void cancelAllCancelsEveryShard() {
+		final SimulationClOrdId firstClOrdId = getNextClOrdId();
+		market.placeOrder(firstClOrdId, new OrderSpecification(FIRST_SYMBOL, new BigDecimal(10), 10, TradeType.BUY));
+		market.placeOrder(getNextClOrdId(), new OrderSpecification(SECOND_SYMBOL, new BigDecimal(20), 5, TradeType.SELL));
+
+		// A shard without resting orders
+		market.onBid(BookEntryFactory.createActualBid("ThirdBid", "CCC", 10, new BigDecimal(5), new Date(1)));
+
+		market.cancelAll(getNextClOrdId());
+		Assert.assertEquals(2, cancelAcceptedCount);
+		Assert.assertEquals(1, cancelAllAckCount);
+
+		// Order ownership is dropped along with the orders
+		market.cancelOrder(getNextClOrdId(), firstClOrdId);
+		Assert.assertEquals(1, cancelRejectedCount);
+	}
+
+	@Test
+	public void cancelAllWithoutOrdersAcksOnce() {
+		market.onBid(BookEntryFactory.createActualBid("FirstBid", FIRST_SYMBOL, 10, new BigDecimal(5), new Date(1)));
+		market.onBid(BookEntryFactory.createActualBid("SecondBid", SECOND_SYMBOL, 10, new BigDecimal(5), new Date(1)));
+
+		market.cancelAll(getNextClOrdId());
+		Assert.assertEquals(1, cancelAllAckCount);
+		Assert.assertEquals(0, cancelAcceptedCount);
+	}
+
+	@Test
+	public void parallelBatchStampsFillsWithEventTime() {
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			market.placeOrder(getNextClOrdId(), new OrderSpecification(FIRST_SYMBOL, new BigDecimal(10), 20, TradeType.BUY));
+			market.placeOrder(getNextClOrdId(), new OrderSpecification(SECOND_SYMBOL, new BigDecimal(20), 20, TradeType.SELL));
+
+			final List<Object> batch = new ArrayList<Object>();
+			batch.add(BookEntryFactory.createActualAsk("FirstAsk1", FIRST_SYMBOL, 10, new BigDecimal(9), new Date(1000)));
+			batch.add(BookEntryFactory.createActualBid("SecondBid1", SECOND_SYMBOL, 10, new BigDecimal(21), new Date(1500)));
+			batch.add(BookEntryFactory.createActualAsk("FirstAsk2", FIRST_SYMBOL, 10, new BigDecimal(9), new Date(2000)));
+			batch.add(BookEntryFactory.createActualBid("SecondBid2", SECOND_SYMBOL, 10, new BigDecimal(21), new Date(2500)));
+			market.onEventBatch(batch, executor);
+		} finally {
+			executor.shutdown();
+		}
+
+		Assert.assertEquals(4, fills.size());
+		final List<Long> firstTimes = new ArrayList<Long>();
+		final List<Long> secondTimes = new ArrayList<Long>();
+		for (final Fill fill : fills) {
+			if (FIRST_SYMBOL.equals(fill.getSymbol())) {
+				firstTimes.add(fill.getTimestamp().getTime());
+			} else {
+				secondTimes.add(fill.getTimestamp().getTime());
+			}
+		}
+		Assert.assertEquals(Arrays.asList(1000L, 2000L), firstTimes);
+		Assert.assertEquals(Arrays.asList(1500L, 2500L), secondTimes);
+		// Worker threads never write the shared clock
+		Assert.assertEquals(0, market.getSimulationContext().getMarketTime().getTimeMillis());
+	}
+
+	@Test
+	public void parallelBatchKeepsShardsIndependent() {
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			market.placeOrder(getNextClOrdId(), new OrderSpecification(FIRST_SYMBOL, new BigDecimal(10), 10, TradeType.BUY));
+			market.placeOrder(getNextClOrdId(), new OrderSpecification(SECOND_SYMBOL, new BigDecimal(20), 5, TradeType.SELL));
+
+			final List<Object> batch = new ArrayList<Object>();
+			batch.add(BookEntryFactory.createActualAsk("FirstAsk", FIRST_SYMBOL, 10, new BigDecimal(9), new Date(1)));
+			batch.add(BookEntryFactory.createActualBid("SecondBid", SECOND_SYMBOL, 5, new BigDecimal(21), new Date(1)));
+			market.onEventBatch(batch, executor);
+		} finally {
+			executor.shutdown();
+		}
+
+		Assert.assertEquals(10, market.getPosition(FIRST_SYMBOL));
+		Assert.assertEquals(-5, market.getPosition(SECOND_SYMBOL));
+	}
+
+	@Override
+	public synchronized void onFill(final Fill fill) {
+		fills.add(fill);
+	}
+
+	@Override
+	public void onTransactionCost(final TransactionCost cost) {
+	}
+
+	@Override
+	public void onCancelReplaceAccepted(final ClOrdId clOrdId, final OrderSpecification order, final ClOrdId origClOrdId) {
+	}
+
+	@Override
+	public void onCancelReplaceRejected(final ClOrdId clOrdId) {
+	}
+
+	@Override
+	public void onCancelAccepted(final ClOrdId clOrdId, final ClOrdId origClOrdId) {
+		cancelAcceptedCount++;
+	}
+
+	@Override
+	public void onCancelRejected(final ClOrdId clOrdId) {
+		cancelRejectedCount++;
+	}
+
+	@Override
+	public synchronized void onCancelAllAccepted(final ClOrdId clOrdId, final List<BookEntry> canceledBookEntries) {
+		cancelAllAckCount++;
+		cancelAcceptedCount += canceledBookEntries.size();
+	}
+
+	@Override
+	public void onNewOrderAccepted(final ClOrdId clOrdId, final OrderSpecification order) {
+	}
+
+	@Override
+	public void onNewOrderRejected(final ClOrdId clOrdId) {
+	}
+}
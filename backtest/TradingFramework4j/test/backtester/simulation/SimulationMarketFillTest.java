@@ -4,6 +4,8 @@ import java.math.BigDecimal;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
 
 import junit.framework.Assert;
 
@@ -11,6 +13,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import backtester.quote.BookEntry;
 import backtester.quote.BookEntryFactory;
 import backtester.quote.TradeTick;
 import backtester.simulation.DefaultLatencyProfile;
@@ -38,6 +41,7 @@ public class SimulationMarketFillTest implements TradeListener {
     private int acceptedCounterLatch;
     private int cancelReplaceRejectedLatch;
     private int newOrderRejectedLatch;
+    private List<BookEntry> canceledBookEntries;
     private List<Fill> fills;
     private long dateCounter;
     private static long nextClOrdId = 0;
@@ -54,6 +58,7 @@ public class SimulationMarketFillTest implements TradeListener {
         acceptedCounterLatch = 0;
         fillCounterLatch = 0;
         cancelReplaceRejectedLatch = 0;
+        canceledBookEntries = null;
     }
 
     @After
@@ -458,6 +463,61 @@ public class SimulationMarketFillTest implements TradeListener {
         Assert.assertEquals(0, innerMarket.getPosition());
     }
 
+    @Test
+    public void testCancelAllMakeSureNoFills() throws TradingException, InterruptedException {
+        fillCounterLatch = 0;
+        acceptedCounterLatch = 2;
+
+        final ClOrdId bidClOrdId = getNextClOrdId();
+        simulationMarket.placeOrder(bidClOrdId, new OrderSpecification(SYMBOL, new BigDecimal(9), 50, TradeType.BUY));
+        final ClOrdId askClOrdId = getNextClOrdId();
+        simulationMarket.placeOrder(askClOrdId, new OrderSpecification(SYMBOL, new BigDecimal(11), 50, TradeType.SELL));
+
+        simulationMarket.cancelAll(getNextClOrdId());
+
+        simulationMarket.onAsk(BookEntryFactory.createActualAsk("Ask1", SYMBOL, 50, new BigDecimal(8), getNextDate()));
+        simulationMarket.onBid(BookEntryFactory.createActualBid("Bid1", SYMBOL, 50, new BigDecimal(12), getNextDate()));
+
+        endSimulation();
+        Assert.assertEquals(2, canceledBookEntries.size());
+        Assert.assertEquals(bidClOrdId, canceledBookEntries.get(0).getClOrdId());
+        Assert.assertEquals(askClOrdId, canceledBookEntries.get(1).getClOrdId());
+        Assert.assertEquals(0, innerMarket.getPosition());
+    }
+
+    @Test
+    public void testCancelAllNotifiesObserversAndPassesCopies() throws TradingException, InterruptedException {
+        acceptedCounterLatch = 2;
+        final List<BookEntry> published = new LinkedList<BookEntry>();
+        innerMarket.addObserver(new Observer() {
+            @Override
+            public void update(final Observable o, final Object arg) {
+                if (arg instanceof BookEntry) {
+                    published.add((BookEntry) arg);
+                }
+            }
+        });
+
+        final ClOrdId bidClOrdId = getNextClOrdId();
+        simulationMarket.placeOrder(bidClOrdId, new OrderSpecification(SYMBOL, new BigDecimal(9), 50, TradeType.BUY));
+        final ClOrdId askClOrdId = getNextClOrdId();
+        simulationMarket.placeOrder(askClOrdId, new OrderSpecification(SYMBOL, new BigDecimal(11), 50, TradeType.SELL));
+        simulationMarket.cancelAll(getNextClOrdId());
+
+        endSimulation();
+        Assert.assertEquals(4, published.size());
+        Assert.assertEquals(bidClOrdId, published.get(2).getClOrdId());
+        Assert.assertEquals(0, published.get(2).getRemainingQuantity());
+        Assert.assertEquals(askClOrdId, published.get(3).getClOrdId());
+        Assert.assertEquals(0, published.get(3).getRemainingQuantity());
+
+        Assert.assertEquals(2, canceledBookEntries.size());
+        Assert.assertNotSame(published.get(0), canceledBookEntries.get(0));
+        Assert.assertEquals(published.get(0).getId(), canceledBookEntries.get(0).getId());
+        Assert.assertEquals(50, canceledBookEntries.get(0).getRemainingQuantity());
+        Assert.assertNotSame(published.get(1), canceledBookEntries.get(1));
+    }
+
     @Test
     public void testReplacePartiallyFilledBidThenCompletelyFilling() throws TradingException, InterruptedException {
         fillCounterLatch = 2;
@@ -1090,4 +1150,9 @@ public class SimulationMarketFillTest implements TradeListener {
     public void onCancelRejected(final ClOrdId clOrdId) {
         
     }
+
+    @Override
+    public void onCancelAllAccepted(final ClOrdId clOrdId, final List<BookEntry> canceledBookEntries) {
+        this.canceledBookEntries = canceledBookEntries;
+    }
 }
@@ -1,8 +1,18 @@
 package backtester.simulation;
 
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Random;
+
+import junit.framework.Assert;
+
 import org.junit.Test;
 
+import backtester.quote.Bid;
 import backtester.simulation.DefaultSimulationMarket;
+import backtester.strategy.DoNothingStrategy;
+import backtester.strategy.StrategyConfiguration;
+import backtester.update.STATS_UPDATE_TYPE;
 
 
 public class SimulationMarketTest {
@@ -18,4 +28,39 @@ public class SimulationMarketTest {
 		final DefaultSimulationMarket market = new DefaultSimulationMarket(null);
 		market.setTradeListener(null);
 	}
+
+	@Test
+	public void simulationsHaveIndependentClocksAndStatistics() {
+		final DefaultSimulationMarket firstMarket = new DefaultSimulationMarket(null, new SimulationContext(1));
+		final DefaultSimulationMarket secondMarket = new DefaultSimulationMarket(null, new SimulationContext(1));
+		firstMarket.getSimulationContext().getMarketTime().setTime(new Date(1000));
+		Assert.assertEquals(1000, firstMarket.getSimulationContext().getMarketTime().getTimeMillis());
+		Assert.assertEquals(0, secondMarket.getSimulationContext().getMarketTime().getTimeMillis());
+
+		new DoNothingStrategy(null, new StrategyConfiguration(firstMarket, new Date(0)));
+		Assert.assertNotNull(firstMarket.getSimulationContext().getStatisticsRegistry().getValueForStatistic(STATS_UPDATE_TYPE.ORDER_COUNT));
+		Assert.assertNull(secondMarket.getSimulationContext().getStatisticsRegistry().getValueForStatistic(STATS_UPDATE_TYPE.ORDER_COUNT));
+
+		// Same seed, same random sequence whatever the other simulation draws
+		secondMarket.getSimulationContext().getRandom().nextDouble();
+		Assert.assertEquals(new Random(1).nextDouble(), firstMarket.getSimulationContext().getRandom().nextDouble());
+
+		final SimulationContext child = firstMarket.getSimulationContext().createChildContext();
+		Assert.assertSame(firstMarket.getSimulationContext().getMarketTime(), child.getMarketTime());
+		Assert.assertSame(firstMarket.getSimulationContext().getStatisticsRegistry(), child.getStatisticsRegistry());
+	}
+
+	@Test
+	public void zeroLatencyBypassesProxy() {
+		final DefaultSimulationMarket market = new DefaultSimulationMarket(null);
+		Assert.assertSame(market, SimulationMarketLatencyProxy.createSimulationMarketLatencyProxy(market, new ZeroLatencyProfile()));
+
+		// Without a proxy the market keeps the time itself
+		market.onBid(new Bid(1, "SPY", 100, new BigDecimal("150.00"), new Date(5000), false, 100));
+		Assert.assertEquals(5000, market.getSimulationContext().getMarketTime().getTimeMillis());
+
+		final DefaultSimulationMarket latentMarket = new DefaultSimulationMarket(null);
+		Assert.assertNotSame(latentMarket,
+				SimulationMarketLatencyProxy.createSimulationMarketLatencyProxy(latentMarket, new DefaultLatencyProfile()));
+	}
 }
@@ -0,0 +1,109 @@
+package backtester.simulation;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import backtester.quote.Bid;
+import backtester.strategy.DoNothingStrategy;
+import backtester.strategy.StrategyConfiguration;
+
+public class TimerServiceTest {
+
+	@Test
+	public void timersFireInDeadlineOrderAtTheirDeadline() {
+		final MarketTime marketTime = new MarketTime();
+		final TimerService timerService = new TimerService(marketTime);
+		final RecordingTimerListener listener = new RecordingTimerListener();
+
+		final long late = timerService.scheduleAt(300, listener);
+		final long early = timerService.scheduleAt(100, listener);
+		final long canceled = timerService.scheduleAt(200, listener);
+		Assert.assertTrue(timerService.cancel(canceled));
+		Assert.assertFalse(timerService.cancel(canceled));
+
+		timerService.advanceTo(250);
+		Assert.assertEquals(1, listener.timerIds.size());
+		Assert.assertEquals(early, listener.timerIds.get(0).longValue());
+		Assert.assertEquals(100, listener.times.get(0).longValue());
+		Assert.assertEquals(100, marketTime.getTimeMillis());
+
+		timerService.advanceTo(300);
+		Assert.assertEquals(late, listener.timerIds.get(1).longValue());
+		Assert.assertTrue(timerService.isEmpty());
+	}
+
+	@Test
+	public void cancelKeepsOrderAndRejectsIdsOfReusedSlots() {
+		final MarketTime marketTime = new MarketTime();
+		final TimerService timerService = new TimerService(marketTime);
+		final RecordingTimerListener listener = new RecordingTimerListener();
+
+		// More timers than the initial capacity, every other one canceled
+		final List<Long> kept = new ArrayList<Long>();
+		for (int i = 0; i < 200; i++) {
+			final long timerId = timerService.scheduleAt(1000 - i, listener);
+			if (i % 2 == 0) {
+				kept.add(0, timerId);
+			} else {
+				Assert.assertTrue(timerService.cancel(timerId));
+			}
+		}
+		timerService.advanceTo(1000);
+		Assert.assertEquals(kept, listener.timerIds);
+		for (int i = 1; i < listener.times.size(); i++) {
+			Assert.assertTrue(listener.times.get(i - 1) <= listener.times.get(i));
+		}
+
+		// A fired timer's id does not cancel the timer that reuses its slot
+		final long fired = kept.get(kept.size() - 1);
+		final long reusing = timerService.scheduleAt(2000, listener);
+		Assert.assertFalse(fired == reusing);
+		Assert.assertFalse(timerService.cancel(fired));
+		Assert.assertFalse(timerService.cancel(-1));
+		Assert.assertTrue(timerService.cancel(reusing));
+		Assert.assertTrue(timerService.isEmpty());
+	}
+
+	@Test
+	public void strategyTimerFiresBeforeTheQuoteThatPassesIt() {
+		final DefaultSimulationMarket market = new DefaultSimulationMarket(null);
+		final SimulationMarket simulationMarket = SimulationMarketLatencyProxy.createSimulationMarketLatencyProxy(market,
+				new DefaultLatencyProfile());
+		final List<Long> firedTimes = new ArrayList<Long>();
+		final DoNothingStrategy strategy = new DoNothingStrategy(null, new StrategyConfiguration(simulationMarket, new Date(0))) {
+			@Override
+			protected void doOnTimer(final long timerId, final long timeMillis) {
+				firedTimes.add(timeMillis);
+			}
+		};
+		simulationMarket.setQuoteListener(strategy);
+		simulationMarket.setTradeListener(strategy);
+
+		simulationMarket.onBid(new Bid(1, "SPY", 100, new BigDecimal("150.00"), new Date(1000), false, 100));
+		strategy.scheduleTimerAfter(500);
+		simulationMarket.onBid(new Bid(2, "SPY", 100, new BigDecimal("150.01"), new Date(1400), false, 100));
+		Assert.assertTrue(firedTimes.isEmpty());
+
+		simulationMarket.onBid(new Bid(3, "SPY", 100, new BigDecimal("150.02"), new Date(2000), false, 100));
+		Assert.assertEquals(1, firedTimes.size());
+		Assert.assertEquals(1500, firedTimes.get(0).longValue());
+		Assert.assertEquals(2000, market.getSimulationContext().getMarketTime().getTimeMillis());
+	}
+
+	private static class RecordingTimerListener implements TimerListener {
+		private final List<Long> timerIds = new ArrayList<Long>();
+		private final List<Long> times = new ArrayList<Long>();
+
+		@Override
+		public void onTimer(final long timerId, final long timeMillis) {
+			timerIds.add(timerId);
+			times.add(timeMillis);
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package backtester.simulation.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import backtester.quote.Ask;
+import backtester.quote.Bid;
+import backtester.quote.BookEntry;
+import backtester.quote.BookEntryFactory;
+import backtester.quote.QuoteListener;
+import backtester.quote.TradeTick;
+import backtester.simulation.DefaultSimulationMarket;
+import backtester.simulation.MarketTime;
+import backtester.simulation.SimulationClOrdId;
+import backtester.simulation.SimulationContext;
+import backtester.simulation.SimulationMarket;
+import backtester.simulation.SimulationMarketLatencyProxy;
+import backtester.simulation.ZeroLatencyProfile;
+import backtester.strategy.DoNothingStrategy;
+import backtester.strategy.StrategyConfiguration;
+import backtester.trade.ClOrdId;
+import backtester.trade.Fill;
+import backtester.trade.OrderSpecification;
+import backtester.trade.TradeDestination;
+import backtester.trade.TradeListener;
+import backtester.trade.TradeType;
+import backtester.trade.TransactionCost;
+
+public class EventJournalTest {
+	private static final String SYMBOL = "SPY";
+
+	@Test
+	public void replayMatchesRecording() throws Exception {
+		final DefaultSimulationMarket market = new DefaultSimulationMarket(null);
+		SimulationMarketLatencyProxy.createSimulationMarketLatencyProxy(market, new ZeroLatencyProfile());
+		final MarketTime marketTime = market.getSimulationContext().getMarketTime();
+
+		final CallbackLog recorded = new CallbackLog(marketTime);
+		final ByteArrayOutputStream journal = new ByteArrayOutputStream();
+		final EventJournalRecorder recorder = new EventJournalRecorder(journal, marketTime, recorded, recorded);
+		market.setQuoteListener(recorder);
+		market.setTradeListener(recorder);
+
+		market.onBid(BookEntryFactory.createActualBid("Bid1", SYMBOL, 100, new BigDecimal("9.99"), new Date(1000)));
+		market.placeOrder(new SimulationClOrdId(1), new OrderSpecification(SYMBOL, new BigDecimal("10.00"), 50, TradeType.BUY));
+		market.onAsk(BookEntryFactory.createActualAsk("Ask1", SYMBOL, 30, new BigDecimal("9.98"), new Date(2000)));
+		market.onTradeTick(new TradeTick(SYMBOL, 30, new BigDecimal("9.98"), new Date(2001)));
+		market.placeOrder(new SimulationClOrdId(2), new OrderSpecification(SYMBOL, new BigDecimal("10.50"), 10, TradeType.SELL));
+		market.cancelOrder(new SimulationClOrdId(3), new SimulationClOrdId(1));
+		market.cancelOrder(new SimulationClOrdId(4), new SimulationClOrdId(1));
+		market.cancelAll(new SimulationClOrdId(5));
+		recorder.close();
+		Assert.assertTrue(recorded.calls.toString().contains("onFill clOrd-1"));
+		Assert.assertTrue(recorded.calls.toString().contains("onCancelAllAccepted"));
+
+		final SimulationContext replayContext = new SimulationContext();
+		final CallbackLog replayed = new CallbackLog(replayContext.getMarketTime());
+		final EventJournalReplayer replayer = new EventJournalReplayer(new ByteArrayInputStream(journal.toByteArray()), replayContext);
+		Assert.assertEquals(recorded.calls.size(), replayer.replayAll(replayed, replayed));
+		Assert.assertEquals(recorded.calls, replayed.calls);
+	}
+
+	@Test
+	public void recordsOrdersOfTheStrategy() throws Exception {
+		final DefaultSimulationMarket market = new DefaultSimulationMarket(null);
+		SimulationMarketLatencyProxy.createSimulationMarketLatencyProxy(market, new ZeroLatencyProfile());
+		final MarketTime marketTime = market.getSimulationContext().getMarketTime();
+
+		final CallbackLog recorded = new CallbackLog(marketTime);
+		final ByteArrayOutputStream journal = new ByteArrayOutputStream();
+		final EventJournalRecorder recorder = new EventJournalRecorder(journal, marketTime);
+		final SimulationMarket strategyMarket = recorder.recordOrders(market);
+		Assert.assertSame(market.getSimulationContext(), strategyMarket.getSimulationContext());
+		recorder.setQuoteListener(recorded);
+		recorder.setTradeListener(recorded);
+		market.setQuoteListener(recorder);
+		market.setTradeListener(recorder);
+		recorded.orderDestination = strategyMarket;
+
+		recorded.placeOrder(new SimulationClOrdId(1), new OrderSpecification(SYMBOL, new BigDecimal("10.00"), 50, TradeType.BUY));
+		recorded.cancelReplaceOrder(new SimulationClOrdId(2), new SimulationClOrdId(1), new OrderSpecification(SYMBOL, new BigDecimal(
+				"10.01"), 40, TradeType.BUY));
+		recorded.cancelOrder(new SimulationClOrdId(3), new SimulationClOrdId(2));
+		recorded.cancelAll(new SimulationClOrdId(4));
+		recorder.close();
+		Assert.assertTrue(recorded.calls.toString().contains("onCancelAccepted clOrd-3"));
+
+		final SimulationContext replayContext = new SimulationContext();
+		final CallbackLog replayed = new CallbackLog(replayContext.getMarketTime());
+		final EventJournalReplayer replayer = new EventJournalReplayer(new ByteArrayInputStream(journal.toByteArray()), replayContext);
+		Assert.assertEquals(recorded.calls.size(), replayer.replayAll(replayed, replayed, replayed));
+		Assert.assertEquals(recorded.calls, replayed.calls);
+	}
+
+	@Test
+	public void replayFiresTimersOfTheStrategy() throws Exception {
+		final DefaultSimulationMarket market = new DefaultSimulationMarket(null);
+		final SimulationMarket simulationMarket = SimulationMarketLatencyProxy.createSimulationMarketLatencyProxy(market,
+				new ZeroLatencyProfile());
+		final MarketTime marketTime = market.getSimulationContext().getMarketTime();
+
+		final List<String> recorded = new ArrayList<String>();
+		final ByteArrayOutputStream journal = new ByteArrayOutputStream();
+		final EventJournalRecorder recorder = new EventJournalRecorder(journal, marketTime);
+		final DoNothingStrategy strategy = createTimerStrategy(recorder.recordOrders(simulationMarket), marketTime, recorded);
+		recorder.setQuoteListener(strategy);
+		recorder.setTradeListener(strategy);
+		simulationMarket.setQuoteListener(recorder);
+		simulationMarket.setTradeListener(recorder);
+
+		simulationMarket.onBid(BookEntryFactory.createActualBid("Bid1", SYMBOL, 100, new BigDecimal("9.99"), new Date(1000)));
+		simulationMarket.onBid(BookEntryFactory.createActualBid("Bid2", SYMBOL, 100, new BigDecimal("9.98"), new Date(1400)));
+		simulationMarket.onBid(BookEntryFactory.createActualBid("Bid3", SYMBOL, 100, new BigDecimal("9.97"), new Date(2000)));
+		recorder.close();
+		Assert.assertTrue(recorded.contains("1500 timer"));
+
+		final DefaultSimulationMarket replayMarket = new DefaultSimulationMarket(null);
+		final SimulationContext replayContext = replayMarket.getSimulationContext();
+		final List<String> replayed = new ArrayList<String>();
+		final DoNothingStrategy replayStrategy = createTimerStrategy(replayMarket, replayContext.getMarketTime(), replayed);
+		final EventJournalReplayer replayer = new EventJournalReplayer(new ByteArrayInputStream(journal.toByteArray()), replayContext);
+		replayer.replayAll(replayStrategy, replayStrategy);
+		Assert.assertEquals(recorded, replayed);
+	}
+
+	@Test(expected = java.io.IOException.class)
+	public void rejectsOtherFiles() throws Exception {
+		new EventJournalReplayer(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }), new SimulationContext());
+	}
+
+	/**
+	 * A strategy that schedules a timer 500ms after its first quote and logs its quotes and timers with the market time.
+	 */
+	private static DoNothingStrategy createTimerStrategy(final SimulationMarket simulationMarket, final MarketTime marketTime,
+			final List<String> calls) {
+		return new DoNothingStrategy(null, new StrategyConfiguration(simulationMarket, new Date(0))) {
+			@Override
+			protected void onFirstMarketAction() {
+				scheduleTimerAfter(500);
+			}
+
+			@Override
+			protected void onMarketAction() {
+				calls.add(marketTime.getTimeMillis() + " quote");
+			}
+
+			@Override
+			protected void doOnTimer(final long timerId, final long timeMillis) {
+				calls.add(timeMillis + " timer");
+			}
+		};
+	}
+
+	/**
+	 * Describes every callback and order with the market time it was received at.  Orders are passed on to the order destination,
+	 * if there is one.
+	 */
+	private static class CallbackLog implements QuoteListener, TradeListener, TradeDestination {
+		private final MarketTime marketTime;
+		private final List<String> calls = new ArrayList<String>();
+		private TradeDestination orderDestination;
+
+		CallbackLog(final MarketTime marketTime) {
+			this.marketTime = marketTime;
+		}
+
+		private void log(final String call) {
+			calls.add(marketTime.getTimeMillis() + " " + call);
+		}
+
+		private static String describe(final BookEntry bookEntry) {
+			return bookEntry.getClass().getSimpleName() + "[" + bookEntry.getClOrdId() + "," + bookEntry.getId() + ","
+					+ bookEntry.getSymbol() + "," + bookEntry.getRemainingQuantity() + "," + bookEntry.getPrice() + ","
+					+ bookEntry.getTimestamp().getTime() + "," + bookEntry.isSimulated() + "," + bookEntry.getOriginalQuantity() + "]";
+		}
+
+		private static String describe(final OrderSpecification order) {
+			return order.getSymbol() + "," + order.getPrice() + "," + order.getQuantity() + "," + order.getTradeType() + ","
+					+ order.getAmountFilled();
+		}
+
+		@Override
+		public void onBid(final Bid bid) {
+			log("onBid " + describe(bid));
+		}
+
+		@Override
+		public void onAsk(final Ask ask) {
+			log("onAsk " + describe(ask));
+		}
+
+		@Override
+		public void onTradeTick(final TradeTick tradeTick) {
+			log("onTradeTick " + tradeTick.getSymbol() + "," + tradeTick.getSize() + "," + tradeTick.getPrice() + ","
+					+ tradeTick.getTimestamp().getTime());
+		}
+
+		@Override
+		public void onFill(final Fill fill) {
+			log("onFill " + fill.getClOrdId() + "," + fill.getOrderId() + "," + fill.getSymbol() + "," + fill.getQuantity() + ","
+					+ fill.getPrice() + "," + fill.getRemaining() + "," + fill.getTimestamp().getTime() + "," + fill.getLiquidityFlag());
+		}
+
+		@Override
+		public void onTransactionCost(final TransactionCost transactionCost) {
+			log("onTransactionCost " + transactionCost.getCost());
+		}
+
+		@Override
+		public void onCancelReplaceAccepted(final ClOrdId clOrdId, final OrderSpecification order, final ClOrdId origClOrdId) {
+			log("onCancelReplaceAccepted " + clOrdId + "," + describe(order) + "," + origClOrdId);
+		}
+
+		@Override
+		public void onCancelReplaceRejected(final ClOrdId clOrdId) {
+			log("onCancelReplaceRejected " + clOrdId);
+		}
+
+		@Override
+		public void onCancelAccepted(final ClOrdId clOrdId, final ClOrdId origClOrdId) {
+			log("onCancelAccepted " + clOrdId + "," + origClOrdId);
+		}
+
+		@Override
+		public void onCancelRejected(final ClOrdId clOrdId) {
+			log("onCancelRejected " + clOrdId);
+		}
+
+		@Override
+		public void onCancelAllAccepted(final ClOrdId clOrdId, final List<BookEntry> canceledBookEntries) {
+			final StringBuilder sb = new StringBuilder("onCancelAllAccepted " + clOrdId);
+			for (final BookEntry bookEntry : canceledBookEntries) {
+				sb.append(",").append(describe(bookEntry));
+			}
+			log(sb.toString());
+		}
+
+		@Override
+		public void onNewOrderAccepted(final ClOrdId clOrdId, final OrderSpecification order) {
+			log("onNewOrderAccepted " + clOrdId + "," + describe(order));
+		}
+
+		@Override
+		public void onNewOrderRejected(final ClOrdId clOrdId) {
+			log("onNewOrderRejected " + clOrdId);
+		}
+
+		@Override
+		public void placeOrder(final ClOrdId clOrdId, final OrderSpecification newOrder) {
+			log("placeOrder " + clOrdId + "," + describe(newOrder));
+			if (orderDestination != null) {
+				orderDestination.placeOrder(clOrdId, newOrder);
+			}
+		}
+
+		@Override
+		public void cancelOrder(final ClOrdId clOrdId, final ClOrdId origClOrdId) {
+			log("cancelOrder " + clOrdId + "," + origClOrdId);
+			if (orderDestination != null) {
+				orderDestination.cancelOrder(clOrdId, origClOrdId);
+			}
+		}
+
+		@Override
+		public void cancelReplaceOrder(final ClOrdId clOrdId, final ClOrdId origClOrdId, final OrderSpecification newOrder) {
+			log("cancelReplaceOrder " + clOrdId + "," + origClOrdId + "," + describe(newOrder));
+			if (orderDestination != null) {
+				orderDestination.cancelReplaceOrder(clOrdId, origClOrdId, newOrder);
+			}
+		}
+
+		@Override
+		public void cancelAll(final ClOrdId clOrdId) {
+			log("cancelAll " + clOrdId);
+			if (orderDestination != null) {
+				orderDestination.cancelAll(clOrdId);
+			}
+		}
+
+		@Override
+		public void setTradeListener(final TradeListener tradeListener) {
+		}
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void stop() {
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package backtester.simulation.latency;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import backtester.quote.Ask;
+import backtester.quote.Bid;
+import backtester.quote.BookEntryFactory;
+import backtester.quote.QuoteListener;
+import backtester.quote.TradeTick;
+
+public class DelayedEventQueueTest implements QuoteListener {
+	private DelayedEventQueue queue;
+	private List<Object> received;
+
+	@Before
+	public void runFirst() {
+		queue = new DelayedEventQueue(2);
+		received = new ArrayList<Object>();
+	}
+
+	@Test
+	public void ordersByTimeThenInsertion() {
+		final Bid late = createBid("Late");
+		final Bid firstAtTen = createBid("FirstAtTen");
+		final Bid secondAtTen = createBid("SecondAtTen");
+		final Bid early = createBid("Early");
+
+		queue.add(20, LatencyEventType.ON_BID, this, late, null, null);
+		queue.add(10, LatencyEventType.ON_BID, this, firstAtTen, null, null);
+		queue.add(10, LatencyEventType.ON_BID, this, secondAtTen, null, null);
+		queue.add(5, LatencyEventType.ON_BID, this, early, null, null);
+		Assert.assertEquals(4, queue.size());
+
+		Assert.assertEquals(5, queue.peekExecutionTime());
+		while (!queue.isEmpty()) {
+			queue.dispatchNext();
+		}
+
+		Assert.assertEquals(4, received.size());
+		Assert.assertSame(early, received.get(0));
+		Assert.assertSame(firstAtTen, received.get(1));
+		Assert.assertSame(secondAtTen, received.get(2));
+		Assert.assertSame(late, received.get(3));
+	}
+
+	@Test
+	public void slotsReusedAfterDispatchAndClear() {
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 10; i++) {
+				queue.add(100 - i, LatencyEventType.ON_BID, this, createBid("Bid" + i), null, null);
+			}
+			queue.dispatchNext();
+			queue.clear();
+			Assert.assertTrue(queue.isEmpty());
+		}
+		Assert.assertEquals(3, received.size());
+	}
+
+	private static Bid createBid(final String id) {
+		return BookEntryFactory.createActualBid(id, "TEST", 10, new BigDecimal(10), new Date(0));
+	}
+
+	@Override
+	public void onBid(final Bid bid) {
+		received.add(bid);
+	}
+
+	@Override
+	public void onAsk(final Ask ask) {
+		received.add(ask);
+	}
+
+	@Override
+	public void onTradeTick(final TradeTick tradeTick) {
+		received.add(tradeTick);
+	}
+}
@@ -0,0 +1,131 @@
+package backtester.strategy;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import backtester.quote.Ask;
+import backtester.quote.Bid;
+import backtester.quote.QuoteBook;
+import backtester.quote.TradeTick;
+import backtester.strategy.EventSubscription.EventType;
+
+public class EventSubscriptionTest {
+
+	@Test
+	public void emptySubscriptionWantsEverything() {
+		final EventSubscription subscription = EventSubscription.parse("");
+		for (final EventType eventType : EventType.values()) {
+			Assert.assertTrue(subscription.wants(eventType));
+		}
+		Assert.assertTrue(subscription.wantsTradeTick(trade(0), 0));
+		Assert.assertTrue(subscription.wantsTradeTick(trade(0), 0));
+		Assert.assertEquals(EventType.values().length, subscription.getEventTypeNames().length);
+	}
+
+	@Test
+	public void onlyListedEventTypes() {
+		final EventSubscription subscription = EventSubscription.parse("events=bid, fill");
+		Assert.assertTrue(subscription.wants(EventType.FILL));
+		Assert.assertFalse(subscription.wants(EventType.ASK));
+		Assert.assertFalse(subscription.wants(EventType.ORDER));
+		Assert.assertFalse(subscription.wantsTradeTick(trade(0), 0));
+		Assert.assertEquals("bid", subscription.getEventTypeNames()[0]);
+		Assert.assertEquals("fill", subscription.getEventTypeNames()[1]);
+	}
+
+	@Test
+	public void bookEntriesOutsideTopLevelsDropped() {
+		final EventSubscription subscription = EventSubscription.parse("levels=2");
+		final QuoteBook quoteBook = new QuoteBook();
+		final Bid best = addBid(quoteBook, 1, "10.02");
+		final Bid secondAtSamePrice = addBid(quoteBook, 2, "10.02");
+		final Bid secondLevel = addBid(quoteBook, 3, "10.01");
+		final Bid thirdLevel = addBid(quoteBook, 4, "10.00");
+
+		Assert.assertTrue(subscription.wantsBookEntry(EventType.BID, best, quoteBook, 0));
+		Assert.assertTrue(subscription.wantsBookEntry(EventType.BID, secondAtSamePrice, quoteBook, 0));
+		Assert.assertTrue(subscription.wantsBookEntry(EventType.BID, secondLevel, quoteBook, 0));
+		Assert.assertFalse(subscription.wantsBookEntry(EventType.BID, thirdLevel, quoteBook, 0));
+	}
+
+	@Test
+	public void quotesThrottledByMinimumInterval() {
+		final EventSubscription subscription = EventSubscription.parse("events=trade;min_interval=100");
+		Assert.assertTrue(subscription.wantsTradeTick(trade(1000), 1000));
+		Assert.assertFalse(subscription.wantsTradeTick(trade(1099), 1099));
+		Assert.assertTrue(subscription.wantsTradeTick(trade(1100), 1100));
+
+		subscription.reset();
+		Assert.assertTrue(subscription.wantsTradeTick(trade(1101), 1101));
+	}
+
+	@Test
+	public void everyMarketEventTypeHasItsOwnInterval() {
+		final EventSubscription subscription = EventSubscription.parse("min_interval=100");
+		final QuoteBook quoteBook = new QuoteBook();
+		Assert.assertTrue(subscription.wantsBookEntry(EventType.BID, addBid(quoteBook, 1, "10.00"), quoteBook, 1000));
+		Assert.assertTrue(subscription.wantsBookEntry(EventType.ASK, addAsk(quoteBook, 2, "10.01"), quoteBook, 1010));
+		Assert.assertTrue(subscription.wantsTradeTick(trade(1020), 1020));
+		Assert.assertFalse(subscription.wantsBookEntry(EventType.BID, addBid(quoteBook, 3, "10.00"), quoteBook, 1050));
+	}
+
+	@Test
+	public void latestThrottledEventDeliveredOnceIntervalEnded() {
+		final EventSubscription subscription = EventSubscription.parse("min_interval=100");
+		final QuoteBook quoteBook = new QuoteBook();
+		Assert.assertTrue(subscription.wantsBookEntry(EventType.BID, addBid(quoteBook, 1, "10.00"), quoteBook, 1000));
+		Assert.assertTrue(subscription.wantsTradeTick(trade(1010), 1010));
+		Assert.assertFalse(subscription.wantsBookEntry(EventType.BID, addBid(quoteBook, 2, "10.00"), quoteBook, 1020));
+		final Bid latestBid = addBid(quoteBook, 3, "10.00");
+		Assert.assertFalse(subscription.wantsBookEntry(EventType.BID, latestBid, quoteBook, 1030));
+		final TradeTick latestTrade = trade(1040);
+		Assert.assertFalse(subscription.wantsTradeTick(latestTrade, 1040));
+
+		Assert.assertNull(subscription.pollExpired(1099));
+		// The bid's interval ended first
+		Assert.assertSame(latestBid, subscription.pollExpired(1200));
+		Assert.assertSame(latestTrade, subscription.pollExpired(1200));
+		Assert.assertNull(subscription.pollExpired(1200));
+
+		// The next interval started where the delivered one ended
+		Assert.assertFalse(subscription.wantsBookEntry(EventType.BID, addBid(quoteBook, 4, "10.00"), quoteBook, 1150));
+		Assert.assertTrue(subscription.wantsBookEntry(EventType.BID, addBid(quoteBook, 5, "10.00"), quoteBook, 1200));
+	}
+
+	@Test
+	public void pendingEventsLeftAtPlaybackEnd() {
+		final EventSubscription subscription = EventSubscription.parse("events=trade;min_interval=100");
+		Assert.assertTrue(subscription.wantsTradeTick(trade(1000), 1000));
+		final TradeTick throttled = trade(1050);
+		Assert.assertFalse(subscription.wantsTradeTick(throttled, 1050));
+
+		Assert.assertNull(subscription.pollExpired(1060));
+		Assert.assertSame(throttled, subscription.pollPending());
+		Assert.assertNull(subscription.pollPending());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownSettingNotAllowed() {
+		EventSubscription.parse("levels=1;depth=2");
+	}
+
+	private static Bid addBid(final QuoteBook quoteBook, final int id, final String price) {
+		final Bid bid = new Bid(id, "SPY", 100, new BigDecimal(price), new Date(id), false, 100);
+		quoteBook.addBid(bid);
+		return bid;
+	}
+
+	private static Ask addAsk(final QuoteBook quoteBook, final int id, final String price) {
+		final Ask ask = new Ask(id, "SPY", 100, new BigDecimal(price), new Date(id), false, 100);
+		quoteBook.addAsk(ask);
+		return ask;
+	}
+
+	private static TradeTick trade(final long time) {
+		return new TradeTick("SPY", 100, new BigDecimal("10.00"), new Date(time));
+	}
+}
@@ -0,0 +1,73 @@
+package backtester.strategy;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import backtester.quote.Ask;
+import backtester.quote.Bid;
+import backtester.quote.TradeTick;
+
+public class MarketEventBatchTest {
+
+	@Test
+	public void fillsParallelArraysInOrder() {
+		final MarketEventBatch batch = new MarketEventBatch(4);
+		final Bid bid = new Bid("B1", "SPY", 100, new BigDecimal("150.00"), new Date(1000), false, 100);
+		final Ask ask = new Ask("A1", "SPY", 300, new BigDecimal("150.01"), new Date(2000), false, 300);
+		final TradeTick tradeTick = new TradeTick("SPY", 200, new BigDecimal("150.005"), new Date(3000));
+		Assert.assertTrue(batch.isEmpty());
+		Assert.assertFalse(batch.addBid(bid));
+		Assert.assertFalse(batch.addAsk(ask));
+		Assert.assertFalse(batch.addTradeTick(tradeTick));
+
+		Assert.assertEquals(3, batch.size());
+		Assert.assertFalse(batch.isEmpty());
+		Assert.assertEquals(MarketEventBatch.SIDE_BID, batch.getSides()[0]);
+		Assert.assertEquals(MarketEventBatch.SIDE_ASK, batch.getSides()[1]);
+		Assert.assertEquals(MarketEventBatch.TRADE, batch.getSides()[2]);
+		Assert.assertEquals("B1", batch.getIds()[0]);
+		Assert.assertEquals("A1", batch.getIds()[1]);
+		Assert.assertNull(batch.getIds()[2]);
+		Assert.assertEquals(100, batch.getQuantities()[0]);
+		Assert.assertEquals(300, batch.getQuantities()[1]);
+		Assert.assertEquals(200, batch.getQuantities()[2]);
+		Assert.assertEquals(1500000, batch.getPrices()[0]);
+		Assert.assertEquals(1500100, batch.getPrices()[1]);
+		Assert.assertEquals(1500050, batch.getPrices()[2]);
+		Assert.assertEquals(bid.getMilliTimestamp(), batch.getTimes()[0]);
+		Assert.assertEquals(ask.getMilliTimestamp(), batch.getTimes()[1]);
+		Assert.assertEquals(tradeTick.getMilliTimestamp(), batch.getTimes()[2]);
+	}
+
+	@Test
+	public void fullBatchReportedAndReusedAfterClear() {
+		final MarketEventBatch batch = new MarketEventBatch(2);
+		final Bid bid = new Bid("B1", "SPY", 100, new BigDecimal("150.00"), new Date(1000), false, 100);
+		Assert.assertFalse(batch.addBid(bid));
+		Assert.assertTrue(batch.addBid(bid));
+		try {
+			batch.addTradeTick(new TradeTick("SPY", 200, new BigDecimal("150.00"), new Date(3000)));
+			Assert.fail("Added to a full batch");
+		} catch (final IllegalStateException e) {
+			// expected
+		}
+
+		batch.clear();
+		Assert.assertTrue(batch.isEmpty());
+		Assert.assertNull(batch.getIds()[0]);
+		Assert.assertNull(batch.getIds()[1]);
+		Assert.assertFalse(batch.addTradeTick(new TradeTick("SPY", 200, new BigDecimal("150.00"), new Date(3000))));
+		Assert.assertEquals(1, batch.size());
+		Assert.assertEquals(MarketEventBatch.TRADE, batch.getSides()[0]);
+		Assert.assertNull(batch.getIds()[0]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyCapacity() {
+		new MarketEventBatch(0);
+	}
+}
@@ -0,0 +1,121 @@
+package backtester.strategy;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import backtester.common.FixedPoint;
+import backtester.quote.Ask;
+import backtester.quote.Bid;
+import backtester.simulation.DefaultSimulationMarket;
+
+public class PrimitiveStrategyTest {
+
+	@Test
+	public void ordersPlacedThroughHandleAreFilled() {
+		final DefaultSimulationMarket market = new DefaultSimulationMarket(null);
+		final RecordingStrategy recordingStrategy = new RecordingStrategy();
+		final PrimitiveStrategyAdapter adapter = new PrimitiveStrategyAdapter(null, new StrategyConfiguration(market, new Date(0)),
+				recordingStrategy);
+		market.setQuoteListener(adapter);
+		market.setTradeListener(adapter);
+
+		market.onBid(new Bid(1, "SPY", 100, new BigDecimal("149.99"), new Date(4000), false, 100));
+		Assert.assertEquals(PrimitiveStrategy.SIDE_BID, recordingStrategy.lastQuoteSide);
+		Assert.assertEquals(1499900, recordingStrategy.lastQuotePrice);
+		Assert.assertEquals(4000, recordingStrategy.lastQuoteTime);
+
+		// The strategy buys at the ask as soon as one arrives
+		market.onAsk(new Ask(2, "SPY", 100, new BigDecimal("150.00"), new Date(5000), false, 100));
+		Assert.assertEquals(0, recordingStrategy.placedOrderId);
+		Assert.assertEquals(0, recordingStrategy.acceptedOrderId);
+		Assert.assertEquals(0, recordingStrategy.filledOrderId);
+		Assert.assertEquals(PrimitiveStrategy.SIDE_BID, recordingStrategy.fillSide);
+		Assert.assertEquals(100, recordingStrategy.filledQuantity);
+		Assert.assertEquals(150 * FixedPoint.ONE, recordingStrategy.fillPrice);
+		Assert.assertEquals(100, adapter.getCurrentPosition().getShares().intValue());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownStrategyClassNotAllowed() {
+		final StrategyConfiguration strategyConfiguration = StrategyConfiguration.emptyStrategyConfiguration();
+		strategyConfiguration.setVariable("primitiveStrategy", "backtester.strategy.NoSuchStrategy");
+		new PrimitiveStrategyAdapter(null, strategyConfiguration);
+	}
+
+	private static class RecordingStrategy implements PrimitiveStrategy {
+		private PrimitiveOrderHandle orders;
+		private int lastQuoteSide = -1;
+		private long lastQuotePrice;
+		private long lastQuoteTime;
+		private long placedOrderId = UNKNOWN_ORDER_ID;
+		private long acceptedOrderId = UNKNOWN_ORDER_ID;
+		private long filledOrderId = UNKNOWN_ORDER_ID;
+		private int fillSide = -1;
+		private int filledQuantity;
+		private long fillPrice;
+
+		@Override
+		public void init(final PrimitiveOrderHandle orders) {
+			this.orders = orders;
+		}
+
+		@Override
+		public void onQuote(final int side, final long price, final int quantity, final long time) {
+			lastQuoteSide = side;
+			lastQuotePrice = price;
+			lastQuoteTime = time;
+			if (side == SIDE_ASK && placedOrderId == UNKNOWN_ORDER_ID) {
+				placedOrderId = orders.set(PrimitiveOrderHandle.BUY, price, quantity).place();
+			}
+		}
+
+		@Override
+		public void onTradeTick(final long price, final int quantity, final long time) {
+		}
+
+		@Override
+		public void onFill(final long orderId, final int side, final int quantity, final long price, final int remaining, final long time) {
+			filledOrderId = orderId;
+			fillSide = side;
+			filledQuantity += quantity;
+			fillPrice = price;
+		}
+
+		@Override
+		public void onOrderAccepted(final long orderId) {
+			acceptedOrderId = orderId;
+		}
+
+		@Override
+		public void onOrderRejected(final long orderId) {
+		}
+
+		@Override
+		public void onCancelAccepted(final long orderId) {
+		}
+
+		@Override
+		public void onCancelRejected(final long cancelId) {
+		}
+
+		@Override
+		public void onReplaceAccepted(final long orderId, final long origOrderId) {
+		}
+
+		@Override
+		public void onReplaceRejected(final long orderId) {
+		}
+
+		@Override
+		public void onTimer(final long timerId, final long time) {
+		}
+
+		@Override
+		public void onPlaybackEnd() {
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package backtester.strategy;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import backtester.quote.Ask;
+import backtester.quote.Bid;
+import backtester.simulation.SimulationClOrdId;
+import backtester.simulation.SimulationOrderId;
+import backtester.trade.Fill;
+import backtester.trade.LiquidityFlag;
+
+public class SharedEventBufferTest {
+
+	@Test
+	public void recordsFollowDocumentedLayout() {
+		final SharedEventBuffer buffer = new SharedEventBuffer(4);
+		final Ask ask = new Ask("A1", "SPY", 300, new BigDecimal("150.01"), new Date(5000), false, 300);
+		final Fill fill = new Fill(new SimulationClOrdId(7), new SimulationOrderId(7), "SPY", -100, new BigDecimal("150.01"), 50,
+				new Date(6000), LiquidityFlag.ADDED);
+		buffer.addBookEntry(SharedEventBuffer.ASK, ask);
+		buffer.addFill(7, fill);
+		buffer.addOrderEvent(SharedEventBuffer.CANCEL_ACCEPTED, 9, 7);
+
+		final long[] records = buffer.getRecords();
+		Assert.assertEquals(3, buffer.size());
+		Assert.assertEquals(SharedEventBuffer.ASK, records[SharedEventBuffer.TYPE]);
+		Assert.assertEquals(SharedEventBuffer.SIDE_ASK, records[SharedEventBuffer.SIDE]);
+		Assert.assertEquals(1500100, records[SharedEventBuffer.PRICE]);
+		Assert.assertEquals(300, records[SharedEventBuffer.QUANTITY]);
+		Assert.assertEquals(ask.getMilliTimestamp(), records[SharedEventBuffer.TIME]);
+		Assert.assertEquals("A1", buffer.getIds()[0]);
+
+		final int fillOffset = SharedEventBuffer.FIELDS;
+		Assert.assertEquals(SharedEventBuffer.FILL, records[fillOffset + SharedEventBuffer.TYPE]);
+		Assert.assertEquals(7, records[fillOffset + SharedEventBuffer.CLORDID]);
+		Assert.assertEquals(-100, records[fillOffset + SharedEventBuffer.QUANTITY]);
+		Assert.assertEquals(50, records[fillOffset + SharedEventBuffer.REMAINING]);
+		Assert.assertNull(buffer.getIds()[1]);
+
+		final int cancelOffset = 2 * SharedEventBuffer.FIELDS;
+		Assert.assertEquals(9, records[cancelOffset + SharedEventBuffer.CLORDID]);
+		Assert.assertEquals(7, records[cancelOffset + SharedEventBuffer.ORIG_CLORDID]);
+		Assert.assertEquals(0, records[cancelOffset + SharedEventBuffer.TIME]);
+	}
+
+	@Test
+	public void fullBufferReportedAndReusedAfterClear() {
+		final SharedEventBuffer buffer = new SharedEventBuffer(2);
+		final Bid bid = new Bid("B1", "SPY", 100, new BigDecimal("150.00"), new Date(1000), false, 100);
+		Assert.assertFalse(buffer.addBookEntry(SharedEventBuffer.BID, bid));
+		Assert.assertTrue(buffer.addTimer(3, 1000));
+
+		buffer.clear();
+		Assert.assertTrue(buffer.isEmpty());
+		Assert.assertNull(buffer.getIds()[0]);
+		Assert.assertFalse(buffer.addTimer(4, 2000));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void addingToFullBufferNotAllowed() {
+		final SharedEventBuffer buffer = new SharedEventBuffer(1);
+		buffer.addTimer(1, 1000);
+		buffer.addTimer(2, 2000);
+	}
+}
@@ -37,4 +37,32 @@ public class PositionTest {
 
 		Assert.assertEquals(new BigDecimal("111112345.6789"), position.getAveragePrice());
 	}
+
+	@Test
+	public void closingPartOfPositionRoundsHalfEven() {
+		final PositionEngine engine = new PositionEngine();
+		engine.applyFill(3, 100000); // 3 @ 10.0000
+		engine.applyFill(3, 100001); // 3 @ 10.0001, cost basis 60.0003 for 6 shares
+		engine.applyFill(-1, 100000);
+
+		// 60.0003 / 6 = 10.00005 rounds half even to 10.0000
+		Assert.assertEquals(500003, engine.getTotalCost());
+		Assert.assertEquals(0, engine.getClosedPL());
+
+		engine.applyFill(-5, 100000);
+		Assert.assertEquals(0, engine.getShares());
+		Assert.assertEquals(0, engine.getTotalCost());
+		Assert.assertEquals(-3, engine.getClosedPL());
+	}
+
+	@Test
+	public void unrealizedPLAtMark() {
+		final Position position = new Position("", new PositionEngine());
+		Assert.assertEquals(0, BigDecimal.ZERO.compareTo(position.getUnrealizedPL()));
+
+		position.getEngine().applyFill(-10, 200000);
+		position.getEngine().mark(195000);
+		Assert.assertEquals(0, new BigDecimal("5").compareTo(position.getUnrealizedPL()));
+		Assert.assertEquals(0, new BigDecimal("-10").compareTo(position.getShares()));
+	}
 }
@@ -1,7 +1,11 @@
 package backtester.trade;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
 
 import junit.framework.Assert;
 
@@ -15,6 +19,12 @@ import backtester.strategy.DoNothingStrategy;
 import backtester.strategy.StrategyConfiguration;
 import backtester.trade.Fill;
 import backtester.trade.LiquidityFlag;
+import backtester.trade.OrderSpecification;
+import backtester.trade.TradeType;
+import backtester.trade.TransactionCost;
+import backtester.update.OrderUpdate;
+import backtester.update.STATS_UPDATE_TYPE;
+import backtester.update.StatsUpdate;
 
 
 
@@ -56,4 +66,74 @@ public class StrategyTest {
 		Assert.assertEquals(20, strategy.getSharesTraded());
 	}
 
+	@Test
+	public void runningOrderStatistics() {
+		strategy.onNewOrderAccepted(new SimulationClOrdId(1L), new OrderSpecification(TEST_SYMBOL, new BigDecimal("10.25"), 100, TradeType.BUY));
+		strategy.onNewOrderAccepted(new SimulationClOrdId(2L), new OrderSpecification(TEST_SYMBOL, new BigDecimal("10.75"), 100, TradeType.SELL));
+		Assert.assertEquals(0, new BigDecimal("2100").compareTo(strategy.getOpenOrderValue()));
+		Assert.assertEquals(0, new BigDecimal("2100").compareTo(strategy.getMaximumExposure()));
+
+		strategy.onCancelAccepted(new SimulationClOrdId(3L), new SimulationClOrdId(2L));
+		Assert.assertEquals(0, new BigDecimal("1025").compareTo(strategy.getOpenOrderValue()));
+
+		strategy.onFill(new Fill(new SimulationClOrdId(1L), new SimulationOrderId(1L), TEST_SYMBOL, 40, new BigDecimal("10.25"), 60, new Date(1),
+				LiquidityFlag.ADDED));
+		Assert.assertEquals(0, new BigDecimal("1025").compareTo(strategy.getOpenOrderValue()));
+		strategy.onFill(new Fill(new SimulationClOrdId(1L), new SimulationOrderId(1L), TEST_SYMBOL, 60, new BigDecimal("10.25"), 0, new Date(2),
+				LiquidityFlag.ADDED));
+		Assert.assertEquals(0, BigDecimal.ZERO.compareTo(strategy.getOpenOrderValue()));
+		Assert.assertEquals(0, new BigDecimal("2100").compareTo(strategy.getMaximumExposure()));
+		Assert.assertEquals(2, strategy.getFillCount().intValue());
+		Assert.assertEquals(100, strategy.getSharesTraded());
+	}
+
+	@Test
+	public void sharesTradedBeyondIntRange() {
+		strategy.onFill(new Fill(new SimulationClOrdId(1L), new SimulationOrderId(1L), TEST_SYMBOL, Integer.MAX_VALUE, new BigDecimal("1.00"), 0,
+				new Date(1), LiquidityFlag.ADDED));
+		strategy.onFill(new Fill(new SimulationClOrdId(2L), new SimulationOrderId(2L), TEST_SYMBOL, -Integer.MAX_VALUE, new BigDecimal("1.00"), 0,
+				new Date(2), LiquidityFlag.ADDED));
+		Assert.assertEquals(2L * Integer.MAX_VALUE, strategy.getSharesTraded());
+	}
+
+	@Test
+	public void totalTransactionCost() {
+		strategy.onTransactionCost(new TransactionCost(new BigDecimal("0.2800")));
+		strategy.onTransactionCost(new TransactionCost(new BigDecimal("-0.1350")));
+		Assert.assertEquals(0, new BigDecimal("0.145").compareTo(strategy.getTotalTransactionCost()));
+	}
+
+	@Test
+	public void drawDownFromClosedLosses() {
+		strategy.onFill(new Fill(new SimulationClOrdId(1L), new SimulationOrderId(1L), TEST_SYMBOL, 10, new BigDecimal("10.00"), 0, new Date(1),
+				LiquidityFlag.ADDED));
+		strategy.onFill(new Fill(new SimulationClOrdId(2L), new SimulationOrderId(2L), TEST_SYMBOL, -10, new BigDecimal("9.50"), 0, new Date(2),
+				LiquidityFlag.ADDED));
+		Assert.assertEquals(0, new BigDecimal("5").compareTo(strategy.getMaxDrawDown()));
+	}
+
+	@Test
+	public void statsUpdatesCoalescedPerCallback() {
+		final List<Object> updates = new ArrayList<Object>();
+		strategy.addObserver(new Observer() {
+			@Override
+			public void update(final Observable o, final Object arg) {
+				updates.add(arg);
+			}
+		});
+
+		strategy.onNewOrderAccepted(new SimulationClOrdId(1L), new OrderSpecification(TEST_SYMBOL, new BigDecimal("10.25"), 100, TradeType.BUY));
+
+		Assert.assertEquals(5, updates.size());
+		Assert.assertTrue(updates.get(0) instanceof OrderUpdate);
+		// Stats follow in enum order, once each
+		Assert.assertEquals(STATS_UPDATE_TYPE.OPEN_ORDER_COUNT, ((StatsUpdate) updates.get(1)).getType());
+		final StatsUpdate openOrderValue = (StatsUpdate) updates.get(2);
+		Assert.assertEquals(STATS_UPDATE_TYPE.OPEN_ORDER_VALUE, openOrderValue.getType());
+		Assert.assertEquals(0, new BigDecimal("1025").compareTo((BigDecimal) openOrderValue.getValue()));
+		final StatsUpdate orderCount = (StatsUpdate) updates.get(3);
+		Assert.assertEquals(STATS_UPDATE_TYPE.ORDER_COUNT, orderCount.getType());
+		Assert.assertEquals(1, orderCount.getValue());
+		Assert.assertEquals(STATS_UPDATE_TYPE.MAXIMUM_EXPOSURE, ((StatsUpdate) updates.get(4)).getType());
+	}
 }
@@ -0,0 +1,75 @@
+package backtester.trade.history;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import backtester.simulation.SimulationClOrdId;
+import backtester.simulation.SimulationOrderId;
+import backtester.trade.Fill;
+import backtester.trade.LiquidityFlag;
+
+public class FillHistoryTest {
+	private static final String TEST_SYMBOL = "SPY";
+
+	private static Fill createFill(final int i) {
+		return new Fill(new SimulationClOrdId(i), new SimulationOrderId(i), TEST_SYMBOL, i, new BigDecimal("10.125"), 0, new Date(i),
+				i % 2 == 0 ? LiquidityFlag.ADDED : LiquidityFlag.REMOVED);
+	}
+
+	@Test
+	public void fullRetentionKeepsEverything() {
+		final FillHistory history = new FillHistory(HistoryRetention.FULL);
+		for (int i = 0; i < 1000; i++) {
+			history.add(createFill(i));
+		}
+
+		Assert.assertEquals(1000, history.size());
+		final List<Fill> fills = history.toList();
+		Assert.assertEquals(new SimulationClOrdId(0), fills.get(0).getClOrdId());
+		Assert.assertEquals(new SimulationClOrdId(999), fills.get(999).getClOrdId());
+		Assert.assertEquals(0, new BigDecimal("10.125").compareTo(fills.get(999).getPrice()));
+		Assert.assertEquals(LiquidityFlag.REMOVED, fills.get(999).getLiquidityFlag());
+		Assert.assertEquals(999, fills.get(999).getTimestamp().getTime());
+	}
+
+	@Test
+	public void lastNKeepsMostRecent() {
+		final FillHistory history = new FillHistory(HistoryRetention.lastN(100));
+		for (int i = 0; i < 1000; i++) {
+			history.add(createFill(i));
+		}
+
+		Assert.assertEquals(100, history.size());
+		Assert.assertEquals(1000, history.getAppendedCount());
+		Assert.assertEquals(900, history.getQuantity(0));
+		Assert.assertEquals(999, history.getQuantity(99));
+		Assert.assertEquals(new SimulationClOrdId(950), history.get(50).getClOrdId());
+	}
+
+	@Test
+	public void noRetentionKeepsNothing() {
+		final FillHistory history = new FillHistory(HistoryRetention.NONE);
+		history.add(createFill(1));
+
+		Assert.assertEquals(0, history.size());
+		Assert.assertEquals(1, history.getAppendedCount());
+		Assert.assertTrue(history.toList().isEmpty());
+	}
+
+	@Test
+	public void parseRetention() {
+		Assert.assertSame(HistoryRetention.FULL, HistoryRetention.parse(null));
+		Assert.assertSame(HistoryRetention.NONE, HistoryRetention.parse("none"));
+		Assert.assertEquals(250, HistoryRetention.parse("250").getLimit());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidRetention() {
+		HistoryRetention.parse("some");
+	}
+}
@@ -0,0 +1,10 @@
+#!/bin/bash
+set -e
+
+if [ "$#" -lt 1 ] || [ "$#" -gt 2 ]; then
+  echo "Usage: $0 port [workers]" >&2
+  exit 1
+fi
+
+cd ./strategy
+java -cp "../backtest/TradingFramework4j/lib/*:../backtest/TradingFramework4j/bin/" backtester.BacktestServer $1 $2
@@ -1,4 +1,4 @@
-import os, sys, re
+import os, sys, re, socket
 import optunity
 from fabric.api import env, local, lcd
 
@@ -6,6 +6,7 @@ base_path = os.path.dirname(os.path.realpath(__file__))
 quote_file = ""
 strategy_file = ""
 NUM_EVALS = 0
+server_port = None
 
 def convert_dollars(dollars):
     score = dollars.replace("$","")
@@ -15,7 +16,30 @@ def convert_dollars(dollars):
         score = float(score)
     return score
 
+def run_server_test(print_output, my_configs):
+    # Paths are relative to ./strategy, where bin/backtest_server.sh starts the server
+    sock = socket.create_connection(("127.0.0.1", server_port))
+    try:
+        sock.sendall("../quotes/%s\t%s\t%s\n" % (quote_file, strategy_file, my_configs))
+        reply = sock.makefile("r").readline().rstrip("\n")
+    finally:
+        sock.close()
+
+    if print_output:
+        print reply
+
+    fields = reply.split("\t")
+    if fields[0] != "OK":
+        print "Backtest server error: %s" % " ".join(fields[1:])
+        sys.exit(1)
+
+    results = dict(field.split("=", 1) for field in fields[1:])
+    return float(results["CLOSED_PL"]) - float(results["TOTAL_TRANSACTION_COST"])
+
 def run_test(print_output, my_configs):
+    if server_port is not None:
+        return run_server_test(print_output, my_configs)
+
     lcd(base_path)
     with lcd('./strategy'):
         java_cmd = 'java -cp "../backtest/TradingFramework4j/lib/*:../backtest/TradingFramework4j/bin/" backtester.Backtester '
@@ -55,13 +79,15 @@ def evaluate(**kwargs):
     return run_test(False, my_configs)
 
 if __name__ == '__main__':
-    if len(sys.argv) != 4:
-        print "usage: %s quotes.csv strategy.py num_iterations" % sys.argv[0]
+    if len(sys.argv) not in (4, 5):
+        print "usage: %s quotes.csv strategy.py num_iterations [backtest_server_port]" % sys.argv[0]
         sys.exit(0)
 
     quote_file = os.path.basename(sys.argv[1])
     strategy_file = os.path.basename(sys.argv[2])
     NUM_EVALS = int(sys.argv[3])
+    if len(sys.argv) == 5:
+        server_port = int(sys.argv[4])
     print "Starting %i evaluations..." % NUM_EVALS
 
     my_configs = {}
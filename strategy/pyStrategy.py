@@ -67,6 +67,10 @@ class StrategyPlugin(BaseStrategy):
             # Don't place orders until the market open
             return
 
+        if self.book.top_bid_price is None or self.book.top_ask_price is None:
+            # No limit price to quote against while a side of the book is empty
+            return
+
         if self.unrealized_pnl > self.max_pnl_gain:
             # Realize gains
             self.closeout_position()